@@ -0,0 +1,25 @@
+package com.innowise.microservice.cache;
+
+import org.springframework.cache.Cache;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache that can read and write several entries in one round trip.
+ */
+public interface BatchCache extends Cache {
+
+    /**
+     * Reads several entries at once.
+     * @param keys keys of the entries
+     * @return found entries by key, missing keys are absent from the map
+     */
+    Map<Object, Object> getAll(List<?> keys);
+
+    /**
+     * Stores several loaded entries at once.
+     * @param values entries to store
+     */
+    void putAll(Map<?, ?> values);
+}
@@ -0,0 +1,113 @@
+package com.innowise.microservice.cache;
+
+import org.springframework.cache.Cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Cache-aside loading of several entries at once.
+ * <p>
+ *     Reads all keys from the cache in one go, loads only the missing ones with a single call to the loader and
+ *     stores them back. Works with any {@link Cache}, but only a {@link BatchCache} does it in one round trip.
+ *     Single entries are loaded with {@link #load(Cache, Object, Supplier)}.
+ * </p>
+ */
+public final class BatchCacheLoader {
+
+    private BatchCacheLoader() {
+    }
+
+    /**
+     * Loads values for the given keys, using the cache where possible.
+     * @param cache cache to read from and write to, may be {@code null}
+     * @param keys requested keys, duplicates are ignored
+     * @param loader loads values for the keys that are missing in the cache
+     * @param keyExtractor extracts the key from a loaded value
+     * @return found values in the order of the requested keys, keys with no value are skipped
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> List<V> loadAll(Cache cache, Iterable<K> keys, Function<List<K>, List<V>> loader,
+                                         Function<V, K> keyExtractor) {
+        List<K> uniqueKeys = new ArrayList<>(toOrderedSet(keys));
+        Map<Object, Object> found = cache == null ? new HashMap<>() : new HashMap<>(getAll(cache, uniqueKeys));
+
+        List<K> missingKeys = uniqueKeys.stream()
+                .filter(key -> !found.containsKey(key))
+                .toList();
+        if (!missingKeys.isEmpty()) {
+            Map<K, V> loaded = new HashMap<>();
+            for (V value : loader.apply(missingKeys)) {
+                loaded.put(keyExtractor.apply(value), value);
+            }
+            if (cache != null) {
+                putAll(cache, loaded);
+            }
+            found.putAll(loaded);
+        }
+
+        List<V> result = new ArrayList<>(uniqueKeys.size());
+        for (K key : uniqueKeys) {
+            V value = (V) found.get(key);
+            if (value != null) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Loads the value for one key through the cache, the way {@code @Cacheable(sync = true)} does. The loader is
+     * handed to the cache, so a two-level cache can reload hot entries in the background before they expire.
+     * @param cache cache to read from and write to
+     * @param key requested key
+     * @param loader loads the value if it is not cached, exceptions it throws are passed on as they are
+     * @return cached or loaded value
+     */
+    public static <V> V load(Cache cache, Object key, Supplier<V> loader) {
+        try {
+            return cache.get(key, loader::get);
+        } catch (Cache.ValueRetrievalException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static Map<Object, Object> getAll(Cache cache, List<?> keys) {
+        if (cache instanceof BatchCache batchCache) {
+            return batchCache.getAll(keys);
+        }
+        Map<Object, Object> found = new HashMap<>();
+        for (Object key : keys) {
+            Cache.ValueWrapper value = cache.get(key);
+            if (value != null && value.get() != null) {
+                found.put(key, value.get());
+            }
+        }
+        return found;
+    }
+
+    private static void putAll(Cache cache, Map<?, ?> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        if (cache instanceof BatchCache batchCache) {
+            batchCache.putAll(values);
+        } else {
+            values.forEach(cache::put);
+        }
+    }
+
+    private static <K> LinkedHashSet<K> toOrderedSet(Iterable<K> keys) {
+        LinkedHashSet<K> set = new LinkedHashSet<>();
+        keys.forEach(set::add);
+        return set;
+    }
+}
@@ -0,0 +1,266 @@
+package com.innowise.microservice.cache;
+
+import com.innowise.microservice.dto.CardInfoCacheEntry;
+import com.innowise.microservice.dto.UserResponseDto;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact, versioned binary format for cached values.
+ * <p>
+ *     Every entry starts with a magic byte, a format version and a type tag, followed by the fields of the value
+ *     without any names. Bodies longer than the compression threshold are deflated. Values of other types are
+ *     written by the fallback serializer as is, and entries that do not start with the magic byte are read by it,
+ *     so JSON entries written before the switch stay readable until they expire.
+ * </p>
+ */
+public class BinaryDtoRedisSerializer implements RedisSerializer<Object> {
+
+    static final byte MAGIC = (byte) 0xCA;
+    static final byte VERSION = 1;
+
+    private static final byte FLAG_COMPRESSED = (byte) 0x80;
+    private static final byte TYPE_USER = 1;
+    /**
+     * Card with the whole owner embedded, as cards were cached before. Still read, the owner's id is kept.
+     */
+    private static final byte TYPE_LEGACY_CARD = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_BOOLEAN = 4;
+    private static final byte TYPE_CARD = 5;
+    private static final byte TYPE_LONG_ARRAY = 6;
+    private static final int HEADER_LENGTH = 3;
+
+    private final RedisSerializer<Object> fallback;
+    private final int compressionThreshold;
+
+    /**
+     * @param fallback serializer for other types and for entries in the old format
+     * @param compressionThreshold body length in bytes from which bodies are deflated, 0 or less disables it
+     */
+    public BinaryDtoRedisSerializer(RedisSerializer<Object> fallback, int compressionThreshold) {
+        this.fallback = fallback;
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        byte type = typeOf(value);
+        if (type == 0) {
+            return fallback.serialize(value);
+        }
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(body);
+            writeBody(out, type, value);
+            byte[] bodyBytes = body.toByteArray();
+            boolean compress = compressionThreshold > 0 && bodyBytes.length >= compressionThreshold;
+            if (compress) {
+                bodyBytes = deflate(bodyBytes);
+            }
+            byte[] result = new byte[HEADER_LENGTH + bodyBytes.length];
+            result[0] = MAGIC;
+            result[1] = compress ? (byte) (VERSION | FLAG_COMPRESSED) : VERSION;
+            result[2] = type;
+            System.arraycopy(bodyBytes, 0, result, HEADER_LENGTH, bodyBytes.length);
+            return result;
+        } catch (IOException e) {
+            throw new SerializationException("Could not write cached value", e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != MAGIC) {
+            return fallback.deserialize(bytes);
+        }
+        if (bytes.length < HEADER_LENGTH || (bytes[1] & ~FLAG_COMPRESSED) != VERSION) {
+            throw new SerializationException("Unsupported cached value format");
+        }
+        boolean compressed = (bytes[1] & FLAG_COMPRESSED) != 0;
+        try {
+            byte[] body = compressed ? inflate(bytes, HEADER_LENGTH) : bytes;
+            int offset = compressed ? 0 : HEADER_LENGTH;
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(body, offset, body.length - offset));
+            return readBody(in, bytes[2]);
+        } catch (IOException | DataFormatException e) {
+            throw new SerializationException("Could not read cached value", e);
+        }
+    }
+
+    private static byte typeOf(Object value) {
+        if (value instanceof UserResponseDto) {
+            return TYPE_USER;
+        }
+        if (value instanceof CardInfoCacheEntry) {
+            return TYPE_CARD;
+        }
+        if (value instanceof Long) {
+            return TYPE_LONG;
+        }
+        if (value instanceof Boolean) {
+            return TYPE_BOOLEAN;
+        }
+        if (value instanceof long[]) {
+            return TYPE_LONG_ARRAY;
+        }
+        return 0;
+    }
+
+    private static void writeBody(DataOutputStream out, byte type, Object value) throws IOException {
+        switch (type) {
+            case TYPE_USER -> {
+                UserResponseDto user = (UserResponseDto) value;
+                writeLong(out, user.getId());
+                writeString(out, user.getName());
+                writeString(out, user.getSurname());
+                writeDate(out, user.getBirthDate());
+                writeString(out, user.getEmail());
+            }
+            case TYPE_CARD -> {
+                CardInfoCacheEntry card = (CardInfoCacheEntry) value;
+                writeLong(out, card.getId());
+                writeLong(out, card.getOwnerId());
+                writeString(out, card.getNumber());
+                writeString(out, card.getHolder());
+                writeDate(out, card.getExpirationDate());
+            }
+            case TYPE_LONG -> out.writeLong((Long) value);
+            case TYPE_BOOLEAN -> out.writeBoolean((Boolean) value);
+            case TYPE_LONG_ARRAY -> {
+                long[] values = (long[]) value;
+                out.writeInt(values.length);
+                for (long element : values) {
+                    out.writeLong(element);
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown type " + type);
+        }
+    }
+
+    private static Object readBody(DataInputStream in, byte type) throws IOException {
+        switch (type) {
+            case TYPE_USER -> {
+                UserResponseDto user = new UserResponseDto();
+                user.setId(readLong(in));
+                user.setName(readString(in));
+                user.setSurname(readString(in));
+                user.setBirthDate(readDate(in));
+                user.setEmail(readString(in));
+                return user;
+            }
+            case TYPE_CARD, TYPE_LEGACY_CARD -> {
+                CardInfoCacheEntry card = new CardInfoCacheEntry();
+                card.setId(readLong(in));
+                if (type == TYPE_CARD) {
+                    card.setOwnerId(readLong(in));
+                } else if (in.readBoolean()) {
+                    card.setOwnerId(readLong(in));
+                    readString(in);
+                    readString(in);
+                    readDate(in);
+                    readString(in);
+                }
+                card.setNumber(readString(in));
+                card.setHolder(readString(in));
+                card.setExpirationDate(readDate(in));
+                return card;
+            }
+            case TYPE_LONG -> {
+                return in.readLong();
+            }
+            case TYPE_BOOLEAN -> {
+                return in.readBoolean();
+            }
+            case TYPE_LONG_ARRAY -> {
+                long[] values = new long[in.readInt()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = in.readLong();
+                }
+                return values;
+            }
+            default -> throw new SerializationException("Unknown cached value type " + type);
+        }
+    }
+
+    private static void writeLong(DataOutputStream out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    private static Long readLong(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeDate(DataOutputStream out, LocalDate value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt((int) value.toEpochDay());
+        }
+    }
+
+    private static LocalDate readDate(DataInputStream in) throws IOException {
+        return in.readBoolean() ? LocalDate.ofEpochDay(in.readInt()) : null;
+    }
+
+    private static byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length);
+            byte[] buffer = new byte[512];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] bytes, int offset) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes, offset, bytes.length - offset);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 2);
+            byte[] buffer = new byte[512];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Truncated compressed value");
+                }
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+}
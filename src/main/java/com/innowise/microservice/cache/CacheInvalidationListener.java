@@ -0,0 +1,56 @@
+package com.innowise.microservice.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Drops local cache entries when another node reports that they changed.
+ * <p>
+ *     Changed ids are also added to the local {@link KnownIds} filter, so entities created on another node are not
+ *     reported as missing here.
+ * </p>
+ */
+public class CacheInvalidationListener implements MessageListener {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheInvalidationListener.class);
+
+    private final TwoLevelCacheManager cacheManager;
+    private final KnownIds knownIds;
+    private final String nodeId;
+
+    public CacheInvalidationListener(TwoLevelCacheManager cacheManager, KnownIds knownIds, String nodeId) {
+        this.cacheManager = cacheManager;
+        this.knownIds = knownIds;
+        this.nodeId = nodeId;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        CacheInvalidationMessage invalidation;
+        try {
+            invalidation = CacheInvalidationMessage.decode(new String(message.getBody(), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            log.warn("Skipping cache invalidation: {}", e.getMessage());
+            return;
+        }
+        if (nodeId.equals(invalidation.origin())) {
+            return;
+        }
+        if (!invalidation.isClear()) {
+            knownIds.onRemoteChange(invalidation.cacheName(), invalidation.key());
+        }
+        TwoLevelCache cache = cacheManager.getLocalCache(invalidation.cacheName());
+        if (cache == null) {
+            return;
+        }
+        if (invalidation.isClear()) {
+            cache.clearLocal();
+        } else {
+            cache.evictLocal(invalidation.key());
+        }
+    }
+}
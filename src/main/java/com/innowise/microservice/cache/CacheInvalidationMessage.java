@@ -0,0 +1,45 @@
+package com.innowise.microservice.cache;
+
+/**
+ * Message sent between nodes when a local cache entry becomes stale.
+ * <p>
+ *     Encoded as {@code origin \n cacheName \n key}. A missing key means that the whole cache was cleared.
+ * </p>
+ * @param origin id of the node that sent the message
+ * @param cacheName name of the cache
+ * @param key key of the entry, {@code null} if the whole cache should be cleared
+ */
+public record CacheInvalidationMessage(String origin, String cacheName, String key) {
+
+    private static final char SEPARATOR = '\n';
+
+    public static CacheInvalidationMessage evict(String origin, String cacheName, String key) {
+        return new CacheInvalidationMessage(origin, cacheName, key);
+    }
+
+    public static CacheInvalidationMessage clear(String origin, String cacheName) {
+        return new CacheInvalidationMessage(origin, cacheName, null);
+    }
+
+    public boolean isClear() {
+        return key == null;
+    }
+
+    public String encode() {
+        return origin + SEPARATOR + cacheName + (key == null ? "" : SEPARATOR + key);
+    }
+
+    /**
+     * Parses an encoded message.
+     * @param body encoded message
+     * @return parsed message
+     * @throws IllegalArgumentException if the message is malformed
+     */
+    public static CacheInvalidationMessage decode(String body) {
+        String[] parts = body.split(String.valueOf(SEPARATOR), 3);
+        if (parts.length < 2) {
+            throw new IllegalArgumentException("Malformed cache invalidation message: " + body);
+        }
+        return new CacheInvalidationMessage(parts[0], parts[1], parts.length == 3 ? parts[2] : null);
+    }
+}
@@ -0,0 +1,65 @@
+package com.innowise.microservice.cache;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.UUID;
+
+/**
+ * Broadcasts local cache invalidations to the other service replicas over Redis pub/sub.
+ * <p>
+ *     Every message carries the id of the node that sent it, so the sender can skip its own messages. Messages
+ *     are dropped while Redis is unhealthy, the other nodes then drop their copies when their local level expires.
+ * </p>
+ */
+public class CacheInvalidationPublisher {
+
+    private final StringRedisTemplate redisTemplate;
+    private final String channel;
+    private final String nodeId;
+    private final RedisCircuitBreaker breaker;
+
+    public CacheInvalidationPublisher(StringRedisTemplate redisTemplate, String channel, RedisCircuitBreaker breaker) {
+        this.redisTemplate = redisTemplate;
+        this.channel = channel;
+        this.nodeId = UUID.randomUUID().toString();
+        this.breaker = breaker;
+    }
+
+    /**
+     * Tells the other nodes to drop one entry from their local cache.
+     * @param cacheName name of the cache
+     * @param key key of the entry
+     */
+    public void publishEvict(String cacheName, String key) {
+        publish(CacheInvalidationMessage.evict(nodeId, cacheName, key));
+    }
+
+    /**
+     * Tells the other nodes to drop all entries from their local cache.
+     * @param cacheName name of the cache
+     */
+    public void publishClear(String cacheName) {
+        publish(CacheInvalidationMessage.clear(nodeId, cacheName));
+    }
+
+    private void publish(CacheInvalidationMessage message) {
+        if (breaker.isOpen()) {
+            return;
+        }
+        try {
+            redisTemplate.convertAndSend(channel, message.encode());
+            breaker.recordSuccess();
+        } catch (DataAccessException e) {
+            breaker.recordFailure(e);
+        }
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+}
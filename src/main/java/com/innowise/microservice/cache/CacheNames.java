@@ -0,0 +1,17 @@
+package com.innowise.microservice.cache;
+
+/**
+ * Names of the caches used by the service.
+ */
+public final class CacheNames {
+
+    public static final String USER_CACHE = "USER_CACHE";
+    public static final String USER_EMAIL_CACHE = "USER_EMAIL_CACHE";
+    public static final String CARD_CACHE = "CARD_CACHE";
+    public static final String CARD_NUMBER_CACHE = "CARD_NUMBER_CACHE";
+    public static final String OWNER_CARDS_CACHE = "OWNER_CARDS_CACHE";
+    public static final String MISSING_ID_CACHE = "MISSING_ID_CACHE";
+
+    private CacheNames() {
+    }
+}
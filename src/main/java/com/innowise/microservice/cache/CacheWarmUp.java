@@ -0,0 +1,96 @@
+package com.innowise.microservice.cache;
+
+import com.innowise.microservice.exception.EmptyCardListException;
+import com.innowise.microservice.exception.EmptyUserListException;
+import com.innowise.microservice.service.CardInfoService;
+import com.innowise.microservice.service.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Fills USER_CACHE and CARD_CACHE with the hottest entries before the application reports ready.
+ * <p>
+ *     The ids come from the hot-key sets persisted by {@link HotKeyTracker}. They are loaded in batches through
+ *     the services, so entries already in Redis are read with one MGET into the local level and the rest are
+ *     loaded with one query per batch and written to Redis in one pipeline. The warm-up stops at
+ *     {@code cache.warmup.timeout}, and any failure only leaves the caches colder, it never stops the start.
+ *     The time spent per cache is recorded in the {@code cache.warmup} timer.
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(name = "cache.warmup.enabled", havingValue = "true", matchIfMissing = true)
+public class CacheWarmUp implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheWarmUp.class);
+    private static final String METRIC_NAME = "cache.warmup";
+
+    private final HotKeyTracker hotKeyTracker;
+    private final UserService userService;
+    private final CardInfoService cardService;
+    private final MeterRegistry meterRegistry;
+    private final int maxKeys;
+    private final int batchSize;
+    private final Duration timeout;
+
+    public CacheWarmUp(HotKeyTracker hotKeyTracker, UserService userService, CardInfoService cardService,
+                       MeterRegistry meterRegistry,
+                       @Value("${cache.warmup.max-keys:10000}") int maxKeys,
+                       @Value("${cache.warmup.batch-size:500}") int batchSize,
+                       @Value("${cache.warmup.timeout:PT30S}") Duration timeout) {
+        this.hotKeyTracker = hotKeyTracker;
+        this.userService = userService;
+        this.cardService = cardService;
+        this.meterRegistry = meterRegistry;
+        this.maxKeys = maxKeys;
+        this.batchSize = batchSize;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        warmUp(CacheNames.USER_CACHE, deadline, ids -> {
+            try {
+                userService.getUsersByIds(ids);
+            } catch (EmptyUserListException e) {
+                // none of the ids exist anymore
+            }
+        });
+        warmUp(CacheNames.CARD_CACHE, deadline, ids -> {
+            try {
+                cardService.getCardsByIds(ids, false);
+            } catch (EmptyCardListException e) {
+                // none of the ids exist anymore
+            }
+        });
+    }
+
+    private void warmUp(String cacheName, long deadline, Consumer<List<Long>> batchLoader) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        int loaded = 0;
+        try {
+            List<Long> ids = hotKeyTracker.hotIds(cacheName, maxKeys);
+            for (int from = 0; from < ids.size() && System.nanoTime() < deadline; from += batchSize) {
+                List<Long> batch = ids.subList(from, Math.min(from + batchSize, ids.size()));
+                batchLoader.accept(batch);
+                loaded += batch.size();
+            }
+            log.info("Warmed up {} with {} of {} hot ids", cacheName, loaded, ids.size());
+        } catch (RuntimeException e) {
+            log.warn("Cache warm-up of {} stopped after {} ids", cacheName, loaded, e);
+        } finally {
+            sample.stop(meterRegistry.timer(METRIC_NAME, "cache", cacheName));
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.innowise.microservice.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.dao.DataAccessException;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Redis cache that is skipped while the {@link RedisCircuitBreaker} is open or when a call to it fails.
+ * <p>
+ *     Reads then miss, so callers load from the database, and writes are dropped. Keys whose write or eviction
+ *     was dropped are remembered and evicted once Redis recovers, so it does not serve values that changed in the
+ *     meantime. If more than {@code maxPendingEvictions} keys pile up, the whole cache is cleared instead.
+ * </p>
+ */
+public class CircuitBreakingCache implements Cache {
+
+    private final Cache delegate;
+    private final RedisCircuitBreaker breaker;
+    private final int maxPendingEvictions;
+    private final Set<Object> pendingEvictions = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean pendingClear = new AtomicBoolean();
+
+    public CircuitBreakingCache(Cache delegate, RedisCircuitBreaker breaker, int maxPendingEvictions) {
+        this.delegate = delegate;
+        this.breaker = breaker;
+        this.maxPendingEvictions = maxPendingEvictions;
+        breaker.onRecovery(this::applyPendingEvictions);
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        if (breaker.isOpen()) {
+            return null;
+        }
+        try {
+            ValueWrapper value = delegate.get(key);
+            breaker.recordSuccess();
+            return value;
+        } catch (DataAccessException e) {
+            breaker.recordFailure(e);
+            return null;
+        }
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        if (breaker.isOpen()) {
+            return null;
+        }
+        try {
+            T value = delegate.get(key, type);
+            breaker.recordSuccess();
+            return value;
+        } catch (DataAccessException e) {
+            breaker.recordFailure(e);
+            return null;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper cached = get(key);
+        if (cached != null) {
+            return (T) cached.get();
+        }
+        T value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        if (value != null) {
+            put(key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (breaker.isOpen()) {
+            addPendingEviction(key);
+            return;
+        }
+        try {
+            delegate.put(key, value);
+            breaker.recordSuccess();
+        } catch (DataAccessException e) {
+            breaker.recordFailure(e);
+            addPendingEviction(key);
+        }
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        if (breaker.isOpen()) {
+            return null;
+        }
+        try {
+            ValueWrapper existing = delegate.putIfAbsent(key, value);
+            breaker.recordSuccess();
+            return existing;
+        } catch (DataAccessException e) {
+            breaker.recordFailure(e);
+            return null;
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        if (breaker.isOpen()) {
+            addPendingEviction(key);
+            return;
+        }
+        try {
+            delegate.evict(key);
+            breaker.recordSuccess();
+        } catch (DataAccessException e) {
+            breaker.recordFailure(e);
+            addPendingEviction(key);
+        }
+    }
+
+    @Override
+    public void clear() {
+        if (breaker.isOpen()) {
+            pendingClear.set(true);
+            return;
+        }
+        try {
+            delegate.clear();
+            breaker.recordSuccess();
+        } catch (DataAccessException e) {
+            breaker.recordFailure(e);
+            pendingClear.set(true);
+        }
+    }
+
+    private void addPendingEviction(Object key) {
+        if (pendingEvictions.size() >= maxPendingEvictions) {
+            pendingClear.set(true);
+        } else {
+            pendingEvictions.add(key);
+        }
+    }
+
+    /**
+     * Evicts the keys whose writes were dropped while Redis was unavailable. Runs before the breaker closes, keys
+     * that cannot be evicted stay pending and keep the breaker open.
+     */
+    void applyPendingEvictions() {
+        if (pendingClear.get()) {
+            delegate.clear();
+            pendingEvictions.clear();
+            pendingClear.set(false);
+            return;
+        }
+        for (Object key : pendingEvictions) {
+            delegate.evict(key);
+            pendingEvictions.remove(key);
+        }
+    }
+}
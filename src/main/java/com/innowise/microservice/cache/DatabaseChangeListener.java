@@ -0,0 +1,223 @@
+package com.innowise.microservice.cache;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.cache.Cache;
+import org.springframework.context.SmartLifecycle;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Evicts cached users and cards whenever their rows change in the database, whoever changed them.
+ * <p>
+ *     Triggers on {@code users} and {@code card_info} send {@code NOTIFY} with payloads like {@code UPDATE:users:42}.
+ *     Card payloads also carry the owner, or the old and the new owner, like {@code UPDATE:card_info:7:42:43}, whose
+ *     card ids are evicted from OWNER_CARDS_CACHE.
+ *     An inserted row cannot have a stale entry in Redis, but the node that inserted it may just have put it there,
+ *     so inserted rows are only dropped from the local level and their ids added to the filters of {@link KnownIds}.
+ *     The listener keeps its own connection outside the pool and collects notifications for up to
+ *     {@code batchWindow}, then evicts them with one Redis pipeline per cache. This also covers cards removed by
+ *     {@code ON DELETE CASCADE}, manual fixes and migrations, so the cache does not have to rely on short TTLs.
+ * </p>
+ * <p>
+ *     Notifications sent while the connection is lost cannot be recovered, so after reconnecting the local level
+ *     of the user and card caches is cleared and the id filters of {@link KnownIds} are rebuilt, they may have missed
+ *     new ids. Redis is shared by all nodes and left alone, the nodes that stayed connected evicted the changed rows
+ *     there.
+ * </p>
+ */
+public class DatabaseChangeListener implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(DatabaseChangeListener.class);
+
+    private static final Map<String, String> CACHES_BY_TABLE = Map.of(
+            "users", CacheNames.USER_CACHE,
+            "card_info", CacheNames.CARD_CACHE);
+    private static final String INSERT = "INSERT";
+    private static final Set<String> OPERATIONS = Set.of(INSERT, "UPDATE", "DELETE");
+    private static final List<String> NOTIFIED_CACHES = List.of(CacheNames.USER_CACHE, CacheNames.CARD_CACHE,
+            CacheNames.OWNER_CARDS_CACHE);
+    private static final int POLL_TIMEOUT_MILLIS = 500;
+
+    private final DataSourceProperties dataSourceProperties;
+    private final TwoLevelCacheManager cacheManager;
+    private final KnownIds knownIds;
+    private final String channel;
+    private final Duration batchWindow;
+    private final int maxBatchSize;
+    private final Duration reconnectDelay;
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * @param channel channel the triggers notify
+     * @param batchWindow how long to collect notifications before evicting
+     * @param maxBatchSize number of changed ids after which the batch is evicted right away
+     * @param reconnectDelay pause before connecting again after the connection was lost
+     */
+    public DatabaseChangeListener(DataSourceProperties dataSourceProperties, TwoLevelCacheManager cacheManager,
+                                  KnownIds knownIds, String channel, Duration batchWindow, int maxBatchSize,
+                                  Duration reconnectDelay) {
+        this.dataSourceProperties = dataSourceProperties;
+        this.cacheManager = cacheManager;
+        this.knownIds = knownIds;
+        this.channel = channel;
+        this.batchWindow = batchWindow;
+        this.maxBatchSize = maxBatchSize;
+        this.reconnectDelay = reconnectDelay;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        thread = new Thread(this::listen, "db-change-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(Duration.ofSeconds(5).toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void listen() {
+        boolean reconnecting = false;
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                if (reconnecting) {
+                    clearLocalCaches();
+                    knownIds.rebuild();
+                }
+                reconnecting = true;
+                receive(connection.unwrap(PGConnection.class));
+            } catch (SQLException | RuntimeException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Lost the database change listener connection, reconnecting in {}", reconnectDelay, e);
+                try {
+                    Thread.sleep(reconnectDelay.toMillis());
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void receive(PGConnection connection) throws SQLException {
+        List<String> batch = new ArrayList<>();
+        long deadline = 0;
+        while (running) {
+            int timeout = batch.isEmpty() ? POLL_TIMEOUT_MILLIS
+                    : (int) Math.max(1, Duration.ofNanos(deadline - System.nanoTime()).toMillis());
+            PGNotification[] notifications = connection.getNotifications(timeout);
+            if (notifications != null && notifications.length > 0) {
+                if (batch.isEmpty()) {
+                    deadline = System.nanoTime() + batchWindow.toNanos();
+                }
+                for (PGNotification notification : notifications) {
+                    batch.add(notification.getParameter());
+                }
+            }
+            if (!batch.isEmpty() && (batch.size() >= maxBatchSize || System.nanoTime() >= deadline)) {
+                apply(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Clears the local level of the caches that may have missed notifications. Caches never used on this node have
+     * no local level to clear.
+     */
+    void clearLocalCaches() {
+        log.warn("Listening to database changes again, clearing local caches that may have missed some");
+        for (String cacheName : NOTIFIED_CACHES) {
+            TwoLevelCache cache = cacheManager.getLocalCache(cacheName);
+            if (cache != null) {
+                cache.clearLocal();
+            }
+        }
+    }
+
+    /**
+     * Evicts the entries of the changed rows. Caches are created if this node did not use them yet, Redis may still
+     * hold the rows for other nodes. Inserted rows are evicted from the local level only, the owners of inserted
+     * cards are evicted from both levels, their lists of cards changed.
+     * @param payloads notification payloads, {@code <operation>:<table>:<id>} followed by the owners' ids for cards.
+     *                 Payloads without the operation, sent by the triggers of older versions, are treated as updates.
+     */
+    void apply(Collection<String> payloads) {
+        Map<String, Set<Long>> changedIds = new HashMap<>();
+        Map<String, Set<Long>> insertedIds = new HashMap<>();
+        for (String payload : payloads) {
+            String[] parts = payload.split(":");
+            int offset = parts.length > 0 && OPERATIONS.contains(parts[0]) ? 1 : 0;
+            String cacheName = parts.length < offset + 2 ? null : CACHES_BY_TABLE.get(parts[offset]);
+            if (cacheName == null) {
+                log.warn("Skipping database change notification {}", payload);
+                continue;
+            }
+            try {
+                long id = Long.parseLong(parts[offset + 1]);
+                List<Long> ownerIds = new ArrayList<>();
+                for (int i = offset + 2; i < parts.length && CacheNames.CARD_CACHE.equals(cacheName); i++) {
+                    ownerIds.add(Long.parseLong(parts[i]));
+                }
+                (offset == 1 && INSERT.equals(parts[0]) ? insertedIds : changedIds)
+                        .computeIfAbsent(cacheName, name -> new LinkedHashSet<>()).add(id);
+                if (!ownerIds.isEmpty()) {
+                    changedIds.computeIfAbsent(CacheNames.OWNER_CARDS_CACHE, name -> new LinkedHashSet<>())
+                            .addAll(ownerIds);
+                }
+            } catch (NumberFormatException e) {
+                log.warn("Skipping database change notification {}", payload);
+            }
+        }
+        insertedIds.forEach((cacheName, ids) -> {
+            ids.forEach(id -> knownIds.onRemoteChange(cacheName, id.toString()));
+            TwoLevelCache cache = cacheManager.getLocalCache(cacheName);
+            if (cache != null) {
+                ids.forEach(id -> cache.evictLocal(TwoLevelCache.toLocalKey(id)));
+            }
+        });
+        changedIds.forEach((cacheName, ids) -> {
+            ids.forEach(id -> knownIds.onRemoteChange(cacheName, id.toString()));
+            Cache cache = cacheManager.getCache(cacheName);
+            if (cache instanceof TwoLevelCache twoLevelCache) {
+                twoLevelCache.evictChanged(ids);
+            } else if (cache != null) {
+                ids.forEach(cache::evict);
+            }
+        });
+    }
+}
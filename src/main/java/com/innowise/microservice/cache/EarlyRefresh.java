@@ -0,0 +1,146 @@
+package com.innowise.microservice.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides when a cached entry should be reloaded before it expires, following the XFetch algorithm.
+ * <p>
+ *     For every entry written by this node it remembers when the Redis copy expires and how long the value took to
+ *     load. On each read the entry is refreshed early with a probability that grows as the expiry comes closer and
+ *     with the load time, so a hot key is reloaded by one reader in the background before it expires, instead of
+ *     by all readers at once after it expired. Entries written by other nodes are refreshed by the node that wrote
+ *     them.
+ * </p>
+ */
+public class EarlyRefresh {
+
+    private static final Logger log = LoggerFactory.getLogger(EarlyRefresh.class);
+
+    private final Cache<String, Deadline> deadlines;
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final Executor executor;
+    private final double beta;
+    private volatile long averageLoadNanos;
+
+    /**
+     * @param maximumSize maximum number of tracked entries
+     * @param executor runs the refreshes
+     * @param beta how eagerly entries are refreshed, 1 is the usual value, 0 disables early refresh
+     */
+    public EarlyRefresh(long maximumSize, Executor executor, double beta) {
+        this.deadlines = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new UntilDeadline())
+                .build();
+        this.executor = executor;
+        this.beta = beta;
+    }
+
+    /**
+     * Remembers that an entry was written to Redis.
+     * @param key key of the entry in its string form
+     * @param ttl time to live of the Redis copy, {@code null} if unknown
+     * @param loadNanos how long the value took to load, negative if it was not loaded here
+     */
+    public void recordWrite(String key, Duration ttl, long loadNanos) {
+        if (ttl == null || ttl.isZero() || ttl.isNegative()) {
+            return;
+        }
+        if (loadNanos >= 0) {
+            long average = averageLoadNanos;
+            averageLoadNanos = average == 0 ? loadNanos : average + (loadNanos - average) / 8;
+        }
+        long delta = loadNanos >= 0 ? Math.max(loadNanos, 1) : averageLoadNanos;
+        deadlines.put(key, new Deadline(System.nanoTime() + ttl.toNanos(), delta));
+    }
+
+    /**
+     * Checks whether a read of the entry should trigger an early refresh.
+     * @param key key of the entry in its string form
+     * @return {@code true} if the entry should be reloaded now
+     */
+    public boolean shouldRefresh(String key) {
+        Deadline deadline = deadlines.getIfPresent(key);
+        if (deadline == null || beta <= 0 || deadline.loadNanos() <= 0) {
+            return false;
+        }
+        double random = 1.0 - ThreadLocalRandom.current().nextDouble();
+        double gap = -deadline.loadNanos() * beta * Math.log(random);
+        return System.nanoTime() + gap >= deadline.expiresAt();
+    }
+
+    /**
+     * Runs the refresh of an entry in the background unless one is already running for it. Failed and rejected
+     * refreshes are dropped, the entry then simply expires.
+     * @param key key of the entry in its string form
+     * @param refresh reloads the entry and writes it back
+     */
+    public void refresh(String key, Runnable refresh) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    refresh.run();
+                } catch (RuntimeException e) {
+                    log.debug("Early refresh of {} failed", key, e);
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(key);
+        }
+    }
+
+    /**
+     * Forgets an entry that was evicted.
+     * @param key key of the entry in its string form
+     */
+    public void forget(String key) {
+        deadlines.invalidate(key);
+    }
+
+    /**
+     * Forgets all entries.
+     */
+    public void forgetAll() {
+        deadlines.invalidateAll();
+    }
+
+    private record Deadline(long expiresAt, long loadNanos) {
+    }
+
+    /**
+     * Drops a tracked entry once its Redis copy has expired.
+     */
+    private static class UntilDeadline implements Expiry<String, Deadline> {
+
+        @Override
+        public long expireAfterCreate(String key, Deadline deadline, long currentTime) {
+            return Math.max(deadline.expiresAt() - currentTime, 0);
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Deadline deadline, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, deadline, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Deadline deadline, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.innowise.microservice.cache;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Count-min sketch of key frequencies together with the {@code capacity} most frequent keys.
+ * <p>
+ *     Counting is lock-free: a key increments one counter in each of four rows and its estimate is the smallest of
+ *     them, which can overcount because of collisions but never undercounts. Keys whose estimate does not beat the
+ *     least frequent top key, which is kept at the head of a min-heap, stop there. Keys already in the top-K only
+ *     update their count, others take a lock to replace the head. Once the hot set settles that is rare.
+ * </p>
+ */
+class FrequencySketch {
+
+    private static final int[] SEEDS = {0x97cb3127, 0x2f69f7c9, 0x8ebc0f5d, 0xbc60c3ab};
+
+    private final AtomicIntegerArray counters;
+    private final int width;
+    private final int shift;
+    private final int capacity;
+    private final ConcurrentMap<String, TopKey> top = new ConcurrentHashMap<>();
+    private final PriorityQueue<TopKey> heap = new PriorityQueue<>(Comparator.comparingLong(TopKey::heapCount));
+    private volatile long threshold;
+
+    /**
+     * @param width counters per row, rounded up to a power of two
+     * @param capacity number of most frequent keys to keep
+     */
+    FrequencySketch(int width, int capacity) {
+        this.width = Integer.highestOneBit(Math.max(width - 1, 1)) << 1;
+        this.shift = Integer.SIZE - Integer.numberOfTrailingZeros(this.width);
+        this.capacity = capacity;
+        this.counters = new AtomicIntegerArray(this.width * SEEDS.length);
+    }
+
+    /**
+     * Counts one occurrence of the key.
+     * @param key key to count
+     */
+    void record(String key) {
+        int hash = key.hashCode() * 0x9e3779b9;
+        hash ^= hash >>> 16;
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < SEEDS.length; row++) {
+            estimate = Math.min(estimate, counters.incrementAndGet(row * width + index(hash, row)));
+        }
+        if (estimate <= threshold) {
+            return;
+        }
+        TopKey topKey = top.get(key);
+        if (topKey != null) {
+            topKey.count = estimate;
+        } else {
+            admit(key, estimate);
+        }
+    }
+
+    /**
+     * @param key key to look up
+     * @return {@code true} if the key is among the most frequent ones
+     */
+    boolean isTop(String key) {
+        return top.containsKey(key);
+    }
+
+    /**
+     * @return the most frequent keys with their estimated counts, most frequent first
+     */
+    List<Map.Entry<String, Long>> topKeys() {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(top.size());
+        for (TopKey topKey : top.values()) {
+            entries.add(Map.entry(topKey.key, topKey.count));
+        }
+        entries.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()));
+        return entries;
+    }
+
+    /**
+     * @return number of recorded occurrences, halved by every {@link #age()} like the counts
+     */
+    long total() {
+        long total = 0;
+        for (int i = 0; i < width; i++) {
+            total += counters.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Halves all counts, so keys that are no longer used lose their place. Top keys whose count drops to zero are
+     * removed.
+     */
+    synchronized void age() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.getAndUpdate(i, count -> count >>> 1);
+        }
+        heap.clear();
+        top.values().removeIf(topKey -> {
+            topKey.count >>>= 1;
+            topKey.heapCount = topKey.count;
+            return topKey.count == 0;
+        });
+        heap.addAll(top.values());
+        threshold = top.size() < capacity ? 0 : heap.peek().heapCount;
+    }
+
+    private synchronized void admit(String key, long estimate) {
+        if (top.containsKey(key)) {
+            return;
+        }
+        if (top.size() >= capacity) {
+            TopKey least = leastFrequent();
+            if (estimate <= least.heapCount) {
+                threshold = least.heapCount;
+                return;
+            }
+            heap.poll();
+            top.remove(least.key);
+        }
+        TopKey topKey = new TopKey(key, estimate);
+        heap.add(topKey);
+        top.put(key, topKey);
+        if (top.size() >= capacity) {
+            threshold = leastFrequent().heapCount;
+        }
+    }
+
+    /**
+     * Returns the head of the heap after moving top keys whose count grew since they were placed.
+     */
+    private TopKey leastFrequent() {
+        for (int i = 0; i < capacity; i++) {
+            TopKey head = heap.peek();
+            long count = head.count;
+            if (count == head.heapCount) {
+                break;
+            }
+            heap.poll();
+            head.heapCount = count;
+            heap.add(head);
+        }
+        return heap.peek();
+    }
+
+    private int index(int hash, int row) {
+        return (hash * SEEDS[row]) >>> shift;
+    }
+
+    private static class TopKey {
+
+        private final String key;
+        private volatile long count;
+        private long heapCount;
+
+        TopKey(String key, long count) {
+            this.key = key;
+            this.count = count;
+            this.heapCount = count;
+        }
+
+        long heapCount() {
+            return heapCount;
+        }
+    }
+}
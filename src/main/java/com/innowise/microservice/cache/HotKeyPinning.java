@@ -0,0 +1,50 @@
+package com.innowise.microservice.cache;
+
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Weigher;
+
+import java.time.Duration;
+
+/**
+ * Keeps the most read entries of a cache longer in its local level.
+ * <p>
+ *     An entry that is hot according to {@link HotKeyTracker} when it is written weighs nothing, so size-based
+ *     eviction never removes it, and expires after {@code pinnedTtl} instead of {@code ttl}. The number of pinned
+ *     entries is bounded by the top-K size of the tracker. Whether an entry is hot is decided again each time it is
+ *     written, pinned entries are still evicted when they change.
+ * </p>
+ */
+class HotKeyPinning implements Expiry<String, Object>, Weigher<String, Object> {
+
+    private final String cacheName;
+    private final HotKeyTracker hotKeyTracker;
+    private final long ttlNanos;
+    private final long pinnedTtlNanos;
+
+    HotKeyPinning(String cacheName, HotKeyTracker hotKeyTracker, Duration ttl, Duration pinnedTtl) {
+        this.cacheName = cacheName;
+        this.hotKeyTracker = hotKeyTracker;
+        this.ttlNanos = ttl.toNanos();
+        this.pinnedTtlNanos = pinnedTtl.toNanos();
+    }
+
+    @Override
+    public int weigh(String key, Object value) {
+        return hotKeyTracker.isHot(cacheName, key) ? 0 : 1;
+    }
+
+    @Override
+    public long expireAfterCreate(String key, Object value, long currentTime) {
+        return hotKeyTracker.isHot(cacheName, key) ? pinnedTtlNanos : ttlNanos;
+    }
+
+    @Override
+    public long expireAfterUpdate(String key, Object value, long currentTime, long currentDuration) {
+        return expireAfterCreate(key, value, currentTime);
+    }
+
+    @Override
+    public long expireAfterRead(String key, Object value, long currentTime, long currentDuration) {
+        return currentDuration;
+    }
+}
@@ -0,0 +1,201 @@
+package com.innowise.microservice.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.zset.Aggregate;
+import org.springframework.data.redis.connection.zset.Weights;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Counts reads of user and card cache entries and periodically persists the most read ids to Redis.
+ * <p>
+ *     Reads are counted in a {@link FrequencySketch} per cache, which costs a few atomic increments and keeps the
+ *     most read keys. Those are reported by the {@code hotkeys} actuator endpoint and kept longer in the local
+ *     cache level, see {@link HotKeyPinning}. On every snapshot each node adds its top keys to a shared sorted set
+ *     per cache and halves its counts. Before that the scores already in the set are multiplied by {@code decay},
+ *     so ids that are no longer read drop out over time. The set is trimmed to {@code maxKeys} entries and read by
+ *     {@link CacheWarmUp} on startup.
+ * </p>
+ */
+@Component
+public class HotKeyTracker {
+
+    private static final Logger log = LoggerFactory.getLogger(HotKeyTracker.class);
+    private static final String KEY_PREFIX = "hot-keys:";
+
+    private final Map<String, FrequencySketch> sketches;
+    private final StringRedisTemplate redisTemplate;
+    private final int maxKeys;
+    private final double decay;
+    private final Duration snapshotTtl;
+
+    public HotKeyTracker(StringRedisTemplate redisTemplate,
+                         @Value("${cache.hot-keys.sketch-width:8192}") int sketchWidth,
+                         @Value("${cache.hot-keys.top-k:1000}") int topK,
+                         @Value("${cache.hot-keys.max-keys:10000}") int maxKeys,
+                         @Value("${cache.hot-keys.decay:0.5}") double decay,
+                         @Value("${cache.hot-keys.snapshot-ttl:P1D}") Duration snapshotTtl) {
+        this.redisTemplate = redisTemplate;
+        this.maxKeys = maxKeys;
+        this.decay = decay;
+        this.snapshotTtl = snapshotTtl;
+        this.sketches = Map.of(
+                CacheNames.USER_CACHE, new FrequencySketch(sketchWidth, topK),
+                CacheNames.CARD_CACHE, new FrequencySketch(sketchWidth, topK));
+    }
+
+    /**
+     * Counts a read of a cache entry. Reads of other caches are ignored.
+     * @param cacheName name of the cache
+     * @param key key of the entry in its string form
+     */
+    public void record(String cacheName, String key) {
+        FrequencySketch sketch = sketches.get(cacheName);
+        if (sketch != null) {
+            sketch.record(key);
+        }
+    }
+
+    /**
+     * @param cacheName name of the cache
+     * @param key key of the entry in its string form
+     * @return {@code true} if the entry is currently among the most read ones of its cache
+     */
+    public boolean isHot(String cacheName, String key) {
+        FrequencySketch sketch = sketches.get(cacheName);
+        return sketch != null && sketch.isTop(key);
+    }
+
+    /**
+     * Describes the most read entries of a cache since the counts were last halved.
+     * @param cacheName name of the cache: USER_CACHE or CARD_CACHE
+     * @param limit maximum number of keys to list
+     * @return top keys and the estimated skew, {@code null} for other caches
+     */
+    public HotKeys hotKeys(String cacheName, int limit) {
+        FrequencySketch sketch = sketches.get(cacheName);
+        if (sketch == null) {
+            return null;
+        }
+        List<Map.Entry<String, Long>> top = sketch.topKeys();
+        long total = sketch.total();
+        long topTotal = top.stream().mapToLong(Map.Entry::getValue).sum();
+        return new HotKeys(total, total == 0 ? 0 : Math.min(1, (double) topTotal / total), zipfExponent(top),
+                top.subList(0, Math.min(limit, top.size())).stream()
+                        .map(entry -> new HotKey(entry.getKey(), entry.getValue()))
+                        .toList());
+    }
+
+    /**
+     * Adds the top keys of every cache to the shared hot-key sets and halves the counts.
+     */
+    @Scheduled(fixedDelayString = "${cache.hot-keys.snapshot-interval:PT5M}",
+            initialDelayString = "${cache.hot-keys.snapshot-interval:PT5M}")
+    public void snapshot() {
+        sketches.forEach((cacheName, sketch) -> {
+            List<Map.Entry<String, Long>> hottest = sketch.topKeys();
+            sketch.age();
+            if (hottest.isEmpty()) {
+                return;
+            }
+            try {
+                persist(cacheName, hottest.size() > maxKeys ? hottest.subList(0, maxKeys) : hottest);
+            } catch (RuntimeException e) {
+                log.warn("Could not persist hot keys of {}", cacheName, e);
+            }
+        });
+    }
+
+    /**
+     * Returns the ids with the highest persisted scores.
+     * @param cacheName name of the cache: USER_CACHE or CARD_CACHE
+     * @param limit maximum number of ids
+     * @return ids, hottest first
+     */
+    public List<Long> hotIds(String cacheName, int limit) {
+        Set<String> members = redisTemplate.opsForZSet().reverseRange(KEY_PREFIX + cacheName, 0, limit - 1L);
+        if (members == null) {
+            return List.of();
+        }
+        List<Long> ids = new ArrayList<>(members.size());
+        for (String member : members) {
+            try {
+                ids.add(Long.parseLong(member));
+            } catch (NumberFormatException e) {
+                log.warn("Skipping hot key {} of {}", member, cacheName);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Fits {@code count ~ rank^-s} to the top keys by least squares on the log-log scale. Uniform access gives
+     * about 0, typical cache workloads land between 0.6 and 1.2.
+     */
+    private static double zipfExponent(List<Map.Entry<String, Long>> top) {
+        int n = 0;
+        double sumX = 0;
+        double sumY = 0;
+        double sumXX = 0;
+        double sumXY = 0;
+        for (int rank = 1; rank <= top.size(); rank++) {
+            long count = top.get(rank - 1).getValue();
+            if (count <= 0) {
+                break;
+            }
+            double x = Math.log(rank);
+            double y = Math.log(count);
+            n++;
+            sumX += x;
+            sumY += y;
+            sumXX += x * x;
+            sumXY += x * y;
+        }
+        double denominator = n * sumXX - sumX * sumX;
+        return n < 2 || denominator == 0 ? 0 : -(n * sumXY - sumX * sumY) / denominator;
+    }
+
+    private void persist(String cacheName, List<Map.Entry<String, Long>> hottest) {
+        String key = KEY_PREFIX + cacheName;
+        byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            stringConnection.zSetCommands().zUnionStore(rawKey, Aggregate.SUM, Weights.of(decay), rawKey);
+            for (Map.Entry<String, Long> entry : hottest) {
+                stringConnection.zIncrBy(key, entry.getValue(), entry.getKey());
+            }
+            stringConnection.zRemRange(key, 0, -(maxKeys + 1L));
+            stringConnection.expire(key, snapshotTtl.toSeconds());
+            return null;
+        });
+    }
+
+    /**
+     * Most read entries of a cache.
+     * @param total estimated number of reads counted
+     * @param topShare estimated share of the reads that went to the top keys
+     * @param zipfExponent exponent of the Zipf distribution that fits the top keys best, higher means more skew
+     * @param keys most read keys, hottest first
+     */
+    public record HotKeys(long total, double topShare, double zipfExponent, List<HotKey> keys) {
+    }
+
+    /**
+     * @param key key of the entry
+     * @param count estimated number of reads
+     */
+    public record HotKey(String key, long count) {
+    }
+}
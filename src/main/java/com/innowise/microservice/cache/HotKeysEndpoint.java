@@ -0,0 +1,50 @@
+package com.innowise.microservice.cache;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Actuator endpoint {@code /actuator/hotkeys} with the most read user and card ids and how skewed the reads are.
+ */
+@Component
+@Endpoint(id = "hotkeys")
+public class HotKeysEndpoint {
+
+    private static final int DEFAULT_LIMIT = 20;
+
+    private final HotKeyTracker hotKeyTracker;
+
+    public HotKeysEndpoint(HotKeyTracker hotKeyTracker) {
+        this.hotKeyTracker = hotKeyTracker;
+    }
+
+    /**
+     * @param limit maximum number of keys per cache, 20 by default
+     * @return hot keys of USER_CACHE and CARD_CACHE
+     */
+    @ReadOperation
+    public Map<String, HotKeyTracker.HotKeys> hotKeys(@Nullable Integer limit) {
+        Map<String, HotKeyTracker.HotKeys> hotKeys = new LinkedHashMap<>();
+        for (String cacheName : List.of(CacheNames.USER_CACHE, CacheNames.CARD_CACHE)) {
+            hotKeys.put(cacheName, hotKeyTracker.hotKeys(cacheName, limit == null ? DEFAULT_LIMIT : limit));
+        }
+        return hotKeys;
+    }
+
+    /**
+     * @param cacheName USER_CACHE or CARD_CACHE
+     * @param limit maximum number of keys, 20 by default
+     * @return hot keys of the cache, {@code null} for other caches
+     */
+    @ReadOperation
+    public HotKeyTracker.HotKeys hotKeysOf(@Selector String cacheName, @Nullable Integer limit) {
+        return hotKeyTracker.hotKeys(cacheName, limit == null ? DEFAULT_LIMIT : limit);
+    }
+}
@@ -0,0 +1,76 @@
+package com.innowise.microservice.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Bloom filter of {@code long} ids.
+ * <p>
+ *     {@link #mightContain(long)} never returns {@code false} for an id that was added, and returns {@code true}
+ *     for an id that was not added with roughly the configured false positive probability.
+ * </p>
+ */
+public class IdBloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * Creates a filter sized for the given number of ids.
+     * @param expectedInsertions number of ids the filter is sized for
+     * @param falsePositiveProbability wanted false positive probability at that number of ids
+     */
+    public IdBloomFilter(long expectedInsertions, double falsePositiveProbability) {
+        long expected = Math.max(1, expectedInsertions);
+        long bits = (long) Math.ceil(-expected * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.max(1, Math.min(Integer.MAX_VALUE - 8, (bits + 63) / 64));
+        this.words = new AtomicLongArray(wordCount);
+        this.bitCount = wordCount * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expected * Math.log(2)));
+    }
+
+    public void add(long id) {
+        long hash = mix(id);
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = Integer.toUnsignedLong(first + i * second) % bitCount;
+            setBit(bit);
+        }
+    }
+
+    public boolean mightContain(long id) {
+        long hash = mix(id);
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = Integer.toUnsignedLong(first + i * second) % bitCount;
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void setBit(long bit) {
+        int index = (int) (bit >>> 6);
+        long mask = 1L << bit;
+        long word = words.get(index);
+        while ((word & mask) == 0 && !words.compareAndSet(index, word, word | mask)) {
+            word = words.get(index);
+        }
+    }
+
+    /**
+     * Spreads sequential ids over all bits (the finalizer of MurmurHash3).
+     */
+    static long mix(long id) {
+        long hash = id;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
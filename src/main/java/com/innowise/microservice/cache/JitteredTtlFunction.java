@@ -0,0 +1,40 @@
+package com.innowise.microservice.cache;
+
+import org.springframework.data.redis.cache.RedisCacheWriter;
+
+import java.time.Duration;
+
+/**
+ * Time to live that is shortened by a per-key amount of up to {@code jitter} of the base TTL.
+ * <p>
+ *     Entries written together, for example by a batch load, get different TTLs and do not expire together. The
+ *     amount only depends on the cache name and the key, so every node computes the same TTL for an entry.
+ * </p>
+ */
+public class JitteredTtlFunction implements RedisCacheWriter.TtlFunction {
+
+    private final Duration ttl;
+    private final double jitter;
+    private final String cacheName;
+
+    /**
+     * @param ttl longest time to live
+     * @param jitter share of the TTL that may be cut off, between 0 and 1
+     * @param cacheName name of the cache, so the same key gets different TTLs in different caches
+     */
+    public JitteredTtlFunction(Duration ttl, double jitter, String cacheName) {
+        if (jitter < 0 || jitter >= 1) {
+            throw new IllegalArgumentException("TTL jitter must be between 0 and 1, got " + jitter);
+        }
+        this.ttl = ttl;
+        this.jitter = jitter;
+        this.cacheName = cacheName;
+    }
+
+    @Override
+    public Duration getTimeToLive(Object key, Object value) {
+        long hash = IdBloomFilter.mix((cacheName + ':' + key).hashCode());
+        double fraction = (hash >>> 11) * 0x1.0p-53;
+        return ttl.minusMillis((long) (ttl.toMillis() * jitter * fraction));
+    }
+}
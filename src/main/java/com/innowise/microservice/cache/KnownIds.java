@@ -0,0 +1,209 @@
+package com.innowise.microservice.cache;
+
+import com.innowise.microservice.repository.CardInfoRepository;
+import com.innowise.microservice.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * Answers "this id certainly does not exist" without going to the database.
+ * <p>
+ *     Keeps an in-memory Bloom filter of existing user and card ids and short-lived negative entries in
+ *     MISSING_ID_CACHE. The filters are built before the application starts serving and rebuilt periodically, so
+ *     deleted ids drop out of them. Until a filter is built every id is treated as possibly existing.
+ * </p>
+ * <p>
+ *     Ids created on other nodes, by imports or outside the service reach the local filter through the database
+ *     change notifications, which {@link DatabaseChangeListener} receives for every insert. Notifications lost while
+ *     the listener was disconnected are made up for by rebuilding the filters once it is connected again. So a filter
+ *     miss is answered without a database query. It is not put into MISSING_ID_CACHE, which all nodes share, because
+ *     a node whose notification is still on the way would hide the new id from all of them.
+ * </p>
+ */
+@Component
+public class KnownIds implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(KnownIds.class);
+
+    private final Map<String, Filter> filters;
+    private final CacheManager cacheManager;
+    private final long expectedInsertions;
+    private final double falsePositiveProbability;
+    private final int batchSize;
+
+    public KnownIds(UserRepository userRepository, CardInfoRepository cardRepository, CacheManager cacheManager,
+                    @Value("${cache.bloom.expected-insertions:1000000}") long expectedInsertions,
+                    @Value("${cache.bloom.false-positive-probability:0.01}") double falsePositiveProbability,
+                    @Value("${cache.bloom.batch-size:10000}") int batchSize) {
+        this.filters = Map.of(
+                CacheNames.USER_CACHE, new Filter(userRepository::findIdsAfter),
+                CacheNames.CARD_CACHE, new Filter(cardRepository::findIdsAfter));
+        this.cacheManager = cacheManager;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        rebuild();
+    }
+
+    /**
+     * Rebuilds all filters from the database.
+     */
+    @Scheduled(fixedDelayString = "${cache.bloom.rebuild-interval:PT1H}",
+            initialDelayString = "${cache.bloom.rebuild-interval:PT1H}")
+    public void rebuild() {
+        filters.forEach((cacheName, filter) -> {
+            try {
+                filter.rebuild(expectedInsertions, falsePositiveProbability, batchSize);
+            } catch (RuntimeException e) {
+                log.warn("Could not build id filter for {}, keeping the previous one", cacheName, e);
+            }
+        });
+    }
+
+    /**
+     * Checks whether the id is known to be absent: it is in MISSING_ID_CACHE or the filter does not contain it.
+     * @param cacheName cache of the entity: USER_CACHE or CARD_CACHE
+     * @param id entity's id
+     * @return {@code true} if the entity does not exist, {@code false} if it might exist
+     */
+    public boolean isKnownMissing(String cacheName, Long id) {
+        if (negativeCache().get(negativeKey(cacheName, id)) != null) {
+            return true;
+        }
+        IdBloomFilter current = filters.get(cacheName).current;
+        return current != null && !current.mightContain(id);
+    }
+
+    /**
+     * Remembers for a short time that the id does not exist. Inside a transaction this happens only once it
+     * commits, so a rolled back delete does not hide the entity.
+     * @param cacheName cache of the entity: USER_CACHE or CARD_CACHE
+     * @param id entity's id
+     */
+    public void markMissing(String cacheName, Long id) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            negativeCache().put(negativeKey(cacheName, id), Boolean.TRUE);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                negativeCache().put(negativeKey(cacheName, id), Boolean.TRUE);
+            }
+        });
+    }
+
+    /**
+     * Remembers that the id exists.
+     * @param cacheName cache of the entity: USER_CACHE or CARD_CACHE
+     * @param id entity's id
+     */
+    public void markExisting(String cacheName, Long id) {
+        filters.get(cacheName).add(id);
+        negativeCache().evict(negativeKey(cacheName, id));
+    }
+
+    /**
+     * Remembers that the ids of a batch of new entities exist. They are only added to the filter: a new id can have
+     * a negative entry only if it was asked for just before it was created, and MISSING_ID_CACHE keeps entries for
+     * a short time, so the batch does not cost one Redis call per id.
+     * @param cacheName cache of the entities: USER_CACHE or CARD_CACHE
+     * @param ids ids of the created entities
+     */
+    public void markAllExisting(String cacheName, Iterable<Long> ids) {
+        Filter filter = filters.get(cacheName);
+        for (Long id : ids) {
+            filter.add(id);
+        }
+    }
+
+    /**
+     * Adds an id that was changed on another node to the local filter. Adding a deleted id is harmless, it only
+     * costs a database lookup until the next rebuild.
+     * @param cacheName name of the cache the change was made in
+     * @param key key of the changed entry
+     */
+    public void onRemoteChange(String cacheName, String key) {
+        Filter filter = filters.get(cacheName);
+        if (filter == null) {
+            return;
+        }
+        try {
+            filter.add(Long.parseLong(key));
+        } catch (NumberFormatException e) {
+            log.warn("Skipping id filter update for {} with key {}", cacheName, key);
+        }
+    }
+
+    private Cache negativeCache() {
+        return cacheManager.getCache(CacheNames.MISSING_ID_CACHE);
+    }
+
+    private static String negativeKey(String cacheName, Long id) {
+        return cacheName + ":" + id;
+    }
+
+    /**
+     * Filter of one entity. While a rebuild runs, new ids go into both the current and the new filter.
+     */
+    private static class Filter {
+
+        private final BiFunction<Long, Limit, List<Long>> idLoader;
+        private volatile IdBloomFilter current;
+        private volatile IdBloomFilter building;
+
+        Filter(BiFunction<Long, Limit, List<Long>> idLoader) {
+            this.idLoader = idLoader;
+        }
+
+        void add(long id) {
+            IdBloomFilter currentFilter = current;
+            if (currentFilter != null) {
+                currentFilter.add(id);
+            }
+            IdBloomFilter buildingFilter = building;
+            if (buildingFilter != null) {
+                buildingFilter.add(id);
+            }
+        }
+
+        synchronized void rebuild(long expectedInsertions, double falsePositiveProbability, int batchSize) {
+            IdBloomFilter filter = new IdBloomFilter(expectedInsertions, falsePositiveProbability);
+            building = filter;
+            try {
+                long afterId = Long.MIN_VALUE;
+                List<Long> ids;
+                do {
+                    ids = idLoader.apply(afterId, Limit.of(batchSize));
+                    for (Long id : ids) {
+                        filter.add(id);
+                    }
+                    if (!ids.isEmpty()) {
+                        afterId = ids.get(ids.size() - 1);
+                    }
+                } while (ids.size() == batchSize);
+                current = filter;
+            } finally {
+                building = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.innowise.microservice.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+/**
+ * Ids of the first cards of every user, kept in OWNER_CARDS_CACHE, so the first pages of a user's cards can be
+ * served from CARD_CACHE without a database query.
+ * <p>
+ *     Every entry holds the ids of a user's cards in ascending order. At most {@code cache.owner-cards.max-cards}
+ *     ids are kept plus one more that marks a longer list, pages past them are read from the database. Entries are
+ *     evicted when a card of the user is created, changed or deleted, also outside the services through
+ *     {@link DatabaseChangeListener}. Readers check the cards they got against
+ *     the owner and evict the entry if a card moved or disappeared in the meantime.
+ * </p>
+ */
+@Component
+public class OwnerCardIds {
+
+    private final CacheManager cacheManager;
+    private final boolean enabled;
+    private final int maxCards;
+
+    public OwnerCardIds(CacheManager cacheManager,
+                        @Value("${cache.owner-cards.enabled:true}") boolean enabled,
+                        @Value("${cache.owner-cards.max-cards:100}") int maxCards) {
+        this.cacheManager = cacheManager;
+        this.enabled = enabled;
+        this.maxCards = maxCards;
+    }
+
+    /**
+     * @return {@code false} if {@code cache.owner-cards.enabled=false}, then nothing is cached
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return number of ids kept per user, without the one that marks a longer list
+     */
+    public int maxCards() {
+        return maxCards;
+    }
+
+    /**
+     * @param userId owner's id
+     * @return ascending ids of the owner's first cards, {@code null} if they are not cached
+     */
+    public long[] get(Long userId) {
+        if (!enabled) {
+            return null;
+        }
+        return cache().get(userId, long[].class);
+    }
+
+    /**
+     * @param userId owner's id
+     * @param ids ascending ids of the owner's first cards, at most {@link #maxCards()} + 1
+     */
+    public void put(Long userId, long[] ids) {
+        if (enabled) {
+            cache().put(userId, ids);
+        }
+    }
+
+    /**
+     * Drops the cached ids of a user whose cards changed.
+     * @param userId owner's id, ignored if {@code null}
+     */
+    public void evict(Long userId) {
+        if (enabled && userId != null) {
+            cache().evict(userId);
+        }
+    }
+
+    /**
+     * @param ids cached ids
+     * @return {@code true} if the ids are all cards of the owner, {@code false} if more follow
+     */
+    public boolean isComplete(long[] ids) {
+        return ids.length <= maxCards;
+    }
+
+    private Cache cache() {
+        return cacheManager.getCache(CacheNames.OWNER_CARDS_CACHE);
+    }
+}
@@ -0,0 +1,233 @@
+package com.innowise.microservice.cache;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.types.Expiration;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Multi-key reads and writes on the Redis level of the caches.
+ * <p>
+ *     Uses the same key prefix, serializers and per-cache TTL as
+ *     {@link org.springframework.data.redis.cache.RedisCache}, so entries written here are readable through the cache
+ *     abstraction and the other way round.
+ * </p>
+ * <p>
+ *     Deletes leave a tombstone for {@code tombstoneTtl}: the JSON {@code null}, which every value serializer reads
+ *     as a miss. Values loaded on a cache miss are written with SET NX, so a reader that loaded a row before a
+ *     commit and writes it after the commit's eviction does not put the old row back into Redis.
+ * </p>
+ * <p>
+ *     Operations on more than one key go through {@code batchConnectionFactory}, whose command timeout leaves room
+ *     for a large MGET or pipeline, so a warm-up or a backfill is not cut off and counted against the breaker at
+ *     the timeout of single reads.
+ * </p>
+ */
+public class RedisBatchCacheOperations {
+
+    private static final byte[] TOMBSTONE = "null".getBytes(StandardCharsets.US_ASCII);
+
+    private final RedisConnectionFactory connectionFactory;
+    private final RedisConnectionFactory batchConnectionFactory;
+    private final RedisCacheConfiguration configuration;
+    private final Map<String, RedisCacheConfiguration> cacheConfigurations;
+    private final RedisCircuitBreaker breaker;
+    private final Expiration tombstoneExpiration;
+
+    /**
+     * @param connectionFactory connections of single-key operations
+     * @param batchConnectionFactory connections of operations on more than one key
+     * @param configuration configuration of caches that are not listed in {@code cacheConfigurations}
+     * @param cacheConfigurations per-cache configurations, as given to the cache manager
+     * @param breaker skips Redis while it is unhealthy
+     * @param tombstoneTtl how long a deleted entry keeps loaded values out, longer than a load of one entry takes
+     */
+    public RedisBatchCacheOperations(RedisConnectionFactory connectionFactory,
+                                     RedisConnectionFactory batchConnectionFactory,
+                                     RedisCacheConfiguration configuration,
+                                     Map<String, RedisCacheConfiguration> cacheConfigurations,
+                                     RedisCircuitBreaker breaker, Duration tombstoneTtl) {
+        this.connectionFactory = connectionFactory;
+        this.batchConnectionFactory = batchConnectionFactory;
+        this.configuration = configuration;
+        this.cacheConfigurations = Map.copyOf(cacheConfigurations);
+        this.breaker = breaker;
+        this.tombstoneExpiration = Expiration.from(tombstoneTtl);
+    }
+
+    /**
+     * Reads several entries with a single MGET. While Redis is unhealthy all entries are reported as missing.
+     * @param cacheName name of the cache
+     * @param keys keys of the entries
+     * @return values in the order of the keys, {@code null} for missing entries
+     */
+    public List<Object> getAll(String cacheName, List<?> keys) {
+        if (keys.isEmpty()) {
+            return List.of();
+        }
+        if (breaker.isOpen()) {
+            return Arrays.asList(new Object[keys.size()]);
+        }
+        byte[][] redisKeys = new byte[keys.size()][];
+        for (int i = 0; i < keys.size(); i++) {
+            redisKeys[i] = toRedisKey(cacheName, keys.get(i));
+        }
+        List<byte[]> rawValues;
+        try (RedisConnection connection = getConnection(keys.size())) {
+            rawValues = connection.stringCommands().mGet(redisKeys);
+            breaker.recordSuccess();
+        } catch (DataAccessException e) {
+            breaker.recordFailure(e);
+            return Arrays.asList(new Object[keys.size()]);
+        }
+        List<Object> values = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            byte[] raw = rawValues == null ? null : rawValues.get(i);
+            values.add(raw == null ? null : configuration.getValueSerializationPair().read(ByteBuffer.wrap(raw)));
+        }
+        return values;
+    }
+
+    /**
+     * Writes several entries in one pipeline, each with the TTL of the cache. The entries were loaded for keys that
+     * were missing in Redis, so they are written with SET NX and never replace a newer value another node wrote in
+     * the meantime, and they are simply dropped while Redis is unhealthy.
+     * @param cacheName name of the cache
+     * @param values entries to write
+     */
+    public void putAll(String cacheName, Map<?, ?> values) {
+        write(values.entrySet()
+                .stream()
+                .map(entry -> new Write(cacheName, entry.getKey(), entry.getValue()))
+                .toList(), RedisStringCommands.SetOption.ifAbsent());
+    }
+
+    /**
+     * Writes a value loaded on a cache miss with SET NX. It is dropped if Redis holds the key, either because the
+     * value was written in the meantime or because it was deleted less than the tombstone TTL ago. While Redis is
+     * unhealthy the value is dropped as well.
+     * @param cacheName name of the cache
+     * @param key key of the entry
+     * @param value loaded value
+     * @return {@code false} if Redis holds the key, the loaded value may then be older than the stored one
+     */
+    public boolean putIfAbsent(String cacheName, Object key, Object value) {
+        if (breaker.isOpen()) {
+            return true;
+        }
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            Boolean written = connection.stringCommands().set(toRedisKey(cacheName, key), toRedisValue(value),
+                    expirationFor(cacheName, key, value), RedisStringCommands.SetOption.ifAbsent());
+            breaker.recordSuccess();
+            return !Boolean.FALSE.equals(written);
+        } catch (DataAccessException e) {
+            breaker.recordFailure(e);
+            return true;
+        }
+    }
+
+    /**
+     * Applies several writes and deletes, possibly of different caches, in one pipeline. Written entries get the
+     * TTL of their cache, deleted entries are replaced with a tombstone.
+     * @param writes writes in the order they are applied
+     * @return {@code true} if Redis took the writes, {@code false} if they were skipped because Redis is unhealthy
+     */
+    public boolean writeAll(List<Write> writes) {
+        return write(writes, RedisStringCommands.SetOption.upsert());
+    }
+
+    private boolean write(List<Write> writes, RedisStringCommands.SetOption option) {
+        if (writes.isEmpty()) {
+            return true;
+        }
+        if (breaker.isOpen()) {
+            return false;
+        }
+        try (RedisConnection connection = getConnection(writes.size())) {
+            connection.openPipeline();
+            try {
+                for (Write write : writes) {
+                    byte[] key = toRedisKey(write.cacheName(), write.key());
+                    if (write.isDelete()) {
+                        connection.stringCommands().set(key, TOMBSTONE, tombstoneExpiration,
+                                RedisStringCommands.SetOption.upsert());
+                    } else {
+                        connection.stringCommands().set(key, toRedisValue(write.value()),
+                                expirationFor(write.cacheName(), write.key(), write.value()),
+                                option);
+                    }
+                }
+            } finally {
+                connection.closePipeline();
+            }
+            breaker.recordSuccess();
+            return true;
+        } catch (DataAccessException e) {
+            breaker.recordFailure(e);
+            return false;
+        }
+    }
+
+    private RedisConnection getConnection(int keys) {
+        return keys > 1 ? batchConnectionFactory.getConnection() : connectionFactory.getConnection();
+    }
+
+    /**
+     * Returns the time to live an entry gets when it is written to the cache.
+     * @param cacheName name of the cache
+     * @param key key of the entry
+     * @param value value of the entry
+     * @return time to live, zero or negative if the entry does not expire
+     */
+    public Duration timeToLive(String cacheName, Object key, Object value) {
+        return configurationFor(cacheName).getTtlFunction().getTimeToLive(key, value);
+    }
+
+    private RedisCacheConfiguration configurationFor(String cacheName) {
+        return cacheConfigurations.getOrDefault(cacheName, configuration);
+    }
+
+    private byte[] toRedisKey(String cacheName, Object key) {
+        String convertedKey = configuration.getConversionService().convert(key, String.class);
+        return toBytes(configuration.getKeySerializationPair().write(configuration.getKeyPrefixFor(cacheName)
+                + convertedKey));
+    }
+
+    private byte[] toRedisValue(Object value) {
+        return toBytes(configuration.getValueSerializationPair().write(value));
+    }
+
+    private Expiration expirationFor(String cacheName, Object key, Object value) {
+        Duration ttl = timeToLive(cacheName, key, value);
+        return ttl.isZero() || ttl.isNegative() ? Expiration.persistent() : Expiration.from(ttl);
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * One write of {@link #writeAll(List)}.
+     * @param cacheName name of the cache
+     * @param key key of the entry
+     * @param value new value, {@code null} to delete the entry
+     */
+    public record Write(String cacheName, Object key, Object value) {
+
+        public boolean isDelete() {
+            return value == null;
+        }
+    }
+}
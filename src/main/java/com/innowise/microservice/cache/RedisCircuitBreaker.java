@@ -0,0 +1,93 @@
+package com.innowise.microservice.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stops cache calls to Redis while it is unhealthy.
+ * <p>
+ *     The breaker opens after {@code failureThreshold} Redis calls in a row failed, usually by running into the
+ *     command timeout. While it is open, callers skip Redis altogether and go to the database. A background probe
+ *     pings Redis and, once it answers again, runs the recovery listeners and closes the breaker. The state is
+ *     exposed as the {@code cache.breaker.open} gauge.
+ * </p>
+ */
+public class RedisCircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisCircuitBreaker.class);
+
+    private final RedisConnectionFactory connectionFactory;
+    private final int failureThreshold;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicBoolean open = new AtomicBoolean();
+    private final List<Runnable> recoveryListeners = new CopyOnWriteArrayList<>();
+
+    public RedisCircuitBreaker(RedisConnectionFactory connectionFactory, int failureThreshold,
+                               MeterRegistry meterRegistry) {
+        this.connectionFactory = connectionFactory;
+        this.failureThreshold = failureThreshold;
+        meterRegistry.gauge("cache.breaker.open", open, state -> state.get() ? 1 : 0);
+    }
+
+    /**
+     * @return {@code true} if Redis calls should be skipped
+     */
+    public boolean isOpen() {
+        return open.get();
+    }
+
+    /**
+     * Records a Redis call that succeeded.
+     */
+    public void recordSuccess() {
+        consecutiveFailures.set(0);
+    }
+
+    /**
+     * Records a Redis call that failed and opens the breaker once too many failed in a row.
+     * @param e failure of the call
+     */
+    public void recordFailure(RuntimeException e) {
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold && open.compareAndSet(false, true)) {
+            log.warn("Redis failed {} times in a row, bypassing the cache until it recovers", failureThreshold, e);
+        }
+    }
+
+    /**
+     * Registers an action that runs in the probe thread each time before the breaker closes. If it throws, the
+     * breaker stays open and the action runs again after the next successful ping.
+     * @param listener action to run
+     */
+    public void onRecovery(Runnable listener) {
+        recoveryListeners.add(listener);
+    }
+
+    /**
+     * Pings Redis while the breaker is open and closes it once Redis answers and the recovery listeners ran.
+     */
+    @Scheduled(fixedDelayString = "${cache.breaker.probe-interval:PT1S}")
+    public void probe() {
+        if (!open.get()) {
+            return;
+        }
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            connection.ping();
+            recoveryListeners.forEach(Runnable::run);
+        } catch (RuntimeException e) {
+            log.debug("Redis is still unavailable", e);
+            return;
+        }
+        consecutiveFailures.set(0);
+        open.set(false);
+        log.info("Redis recovered, using the cache again");
+    }
+}
@@ -0,0 +1,134 @@
+package com.innowise.microservice.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.util.function.Supplier;
+
+/**
+ * Keeps the serialized JSON body of cached DTOs, so hot GET endpoints can write the bytes as they are.
+ * <p>
+ *     Bodies are keyed by the identity of the DTO they were written from. A local cache hit returns the same DTO
+ *     instance every time, so its body is serialized once. As soon as the DTO caches evict or replace the entry,
+ *     the old instance becomes unreachable and its body is dropped with it, so the DTO caches stay the only place
+ *     that decides what is fresh.
+ * </p>
+ * <p>
+ *     DTOs composed for every request from cached values, like cards with their owners, are keyed by the identity
+ *     of the cached value they are composed from instead, next to the second cached value they include, if any.
+ * </p>
+ */
+@Component
+public class ResponseBodyCache {
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final Cache<Object, Body> bodies;
+    private final Cache<Object, ComposedBodies> composedBodies;
+
+    public ResponseBodyCache(ObjectMapper objectMapper,
+                             @Value("${cache.response-bytes.enabled:true}") boolean enabled,
+                             @Value("${cache.response-bytes.maximum-size:10000}") long maximumSize) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.bodies = Caffeine.newBuilder()
+                .weakKeys()
+                .maximumSize(maximumSize)
+                .build();
+        this.composedBodies = Caffeine.newBuilder()
+                .weakKeys()
+                .maximumSize(maximumSize)
+                .build();
+    }
+
+    /**
+     * Returns the JSON body of a DTO, serializing it only if this instance was not seen before. With
+     * {@code cache.response-bytes.enabled=false} every call serializes.
+     * @param dto DTO to write
+     * @return UTF-8 JSON body and its ETag
+     */
+    public Body get(Object dto) {
+        if (!enabled) {
+            return write(dto);
+        }
+        Body body = bodies.getIfPresent(dto);
+        if (body == null) {
+            body = write(dto);
+            bodies.put(dto, body);
+        }
+        return body;
+    }
+
+    /**
+     * Returns the JSON body of a DTO that is composed anew for every request from cached values, serializing it only
+     * if it was not written from the same instances before. A source keeps one body composed from it alone and one
+     * composed with a part, which is replaced once another part instance is given.
+     * @param source cached value the DTO is composed from
+     * @param part second cached value the DTO is composed from, {@code null} if it is composed from the source alone
+     * @param dto composes the DTO, only called if the body has to be written
+     * @return UTF-8 JSON body and its ETag
+     */
+    public Body get(Object source, Object part, Supplier<?> dto) {
+        if (!enabled) {
+            return write(dto.get());
+        }
+        return composedBodies.get(source, key -> new ComposedBodies()).get(part, () -> write(dto.get()));
+    }
+
+    /**
+     * Serializes a DTO without keeping the body, for DTOs that are composed anew for every request.
+     * @param dto DTO to write
+     * @return UTF-8 JSON body and its ETag
+     */
+    public Body write(Object dto) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(dto);
+            return new Body(json, "\"" + DigestUtils.md5DigestAsHex(json) + "\"");
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not write " + dto.getClass().getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Bodies composed from one source.
+     */
+    private static final class ComposedBodies {
+
+        private volatile Body alone;
+        private volatile PartBody withPart;
+
+        Body get(Object part, Supplier<Body> writer) {
+            if (part == null) {
+                Body body = alone;
+                if (body == null) {
+                    body = writer.get();
+                    alone = body;
+                }
+                return body;
+            }
+            PartBody current = withPart;
+            if (current != null && current.part() == part) {
+                return current.body();
+            }
+            Body body = writer.get();
+            withPart = new PartBody(part, body);
+            return body;
+        }
+    }
+
+    private record PartBody(Object part, Body body) {
+    }
+
+    /**
+     * Serialized response body.
+     * @param json UTF-8 JSON
+     * @param eTag strong ETag of the JSON
+     */
+    public record Body(byte[] json, String eTag) {
+    }
+}
@@ -0,0 +1,78 @@
+package com.innowise.microservice.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent cache-miss loads of the same key within one JVM.
+ * <p>
+ *     The first caller for a key becomes the leader and runs the load, callers that arrive while it is running
+ *     wait for the leader's result instead of running their own. Leader and coalesced loads are counted in the
+ *     {@code cache.loads} metric, tagged by cache name and role.
+ * </p>
+ */
+@Component
+public class SingleFlight {
+
+    private static final String METRIC_NAME = "cache.loads";
+
+    private final ConcurrentMap<FlightKey, CompletableFuture<Object>> flights = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    public SingleFlight(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Runs the load for the key or joins the load that is already running for it.
+     * @param cacheName name of the cache the value is loaded for
+     * @param key key of the value
+     * @param loader loads the value, usually from the database
+     * @return loaded value
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T load(String cacheName, Object key, Supplier<T> loader) {
+        FlightKey flightKey = new FlightKey(cacheName, key);
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> runningFlight = flights.putIfAbsent(flightKey, flight);
+        if (runningFlight != null) {
+            meterRegistry.counter(METRIC_NAME, "cache", cacheName, "role", "coalesced").increment();
+            return (T) await(runningFlight);
+        }
+
+        meterRegistry.counter(METRIC_NAME, "cache", cacheName, "role", "leader").increment();
+        try {
+            T value = loader.get();
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(flightKey, flight);
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private record FlightKey(String cacheName, Object key) {
+    }
+}
@@ -0,0 +1,131 @@
+package com.innowise.microservice.cache;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds back cache writes made inside a transaction until it commits.
+ * <p>
+ *     Puts and evictions of all two-level caches are collected per transaction. After the commit only the last
+ *     write per key is kept and all of them are sent to Redis in one pipeline, then the local levels are updated
+ *     and the other nodes are told. After a rollback the writes are dropped, so Redis never sees values that were
+ *     not committed. Outside a transaction writes are applied right away.
+ * </p>
+ */
+public class TransactionalCacheWrites {
+
+    private final RedisBatchCacheOperations remoteBatch;
+
+    public TransactionalCacheWrites(RedisBatchCacheOperations remoteBatch) {
+        this.remoteBatch = remoteBatch;
+    }
+
+    /**
+     * Holds back a put until the current transaction commits.
+     * @param cache cache to write to
+     * @param key key of the entry
+     * @param value new value
+     * @return {@code false} if there is no transaction and the caller has to write right away
+     */
+    boolean deferPut(TwoLevelCache cache, Object key, Object value) {
+        return defer(new PendingWrite(cache, key, value, false));
+    }
+
+    /**
+     * Holds back an eviction until the current transaction commits.
+     * @param cache cache to evict from
+     * @param key key of the entry
+     * @return {@code false} if there is no transaction and the caller has to evict right away
+     */
+    boolean deferEvict(TwoLevelCache cache, Object key) {
+        return defer(new PendingWrite(cache, key, null, false));
+    }
+
+    /**
+     * Holds back clearing a cache until the current transaction commits.
+     * @param cache cache to clear
+     * @return {@code false} if there is no transaction and the caller has to clear right away
+     */
+    boolean deferClear(TwoLevelCache cache) {
+        return defer(new PendingWrite(cache, null, null, true));
+    }
+
+    private boolean defer(PendingWrite write) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return false;
+        }
+        currentBuffer().writes.add(write);
+        return true;
+    }
+
+    /**
+     * Finds the buffer of the current transaction among its synchronizations, so a transaction that suspends
+     * another one gets a buffer of its own.
+     */
+    private Buffer currentBuffer() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof Buffer buffer && buffer.owner() == this) {
+                return buffer;
+            }
+        }
+        Buffer buffer = new Buffer();
+        TransactionSynchronizationManager.registerSynchronization(buffer);
+        return buffer;
+    }
+
+    private void apply(List<PendingWrite> writes) {
+        if (writes.stream().anyMatch(PendingWrite::clear)) {
+            writes.forEach(PendingWrite::applyAlone);
+            return;
+        }
+        Map<List<Object>, PendingWrite> latest = new LinkedHashMap<>();
+        for (PendingWrite write : writes) {
+            latest.remove(write.identity());
+            latest.put(write.identity(), write);
+        }
+        List<RedisBatchCacheOperations.Write> remoteWrites = new ArrayList<>(latest.size());
+        for (PendingWrite write : latest.values()) {
+            remoteWrites.add(new RedisBatchCacheOperations.Write(write.cache().getName(), write.key(), write.value()));
+        }
+        boolean written = remoteBatch.writeAll(remoteWrites);
+        for (PendingWrite write : latest.values()) {
+            write.cache().applyCommitted(write.key(), write.value(), written);
+        }
+    }
+
+    private record PendingWrite(TwoLevelCache cache, Object key, Object value, boolean clear) {
+
+        List<Object> identity() {
+            return List.of(cache.getName(), TwoLevelCache.toLocalKey(key));
+        }
+
+        void applyAlone() {
+            if (clear) {
+                cache.clearNow();
+            } else if (value == null) {
+                cache.evictNow(key);
+            } else {
+                cache.putNow(key, value);
+            }
+        }
+    }
+
+    private class Buffer implements TransactionSynchronization {
+
+        private final List<PendingWrite> writes = new ArrayList<>();
+
+        TransactionalCacheWrites owner() {
+            return TransactionalCacheWrites.this;
+        }
+
+        @Override
+        public void afterCommit() {
+            apply(writes);
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.innowise.microservice.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Cache with an in-process first level in front of a shared Redis second level.
+ * <p>
+ *     Reads go to the local level first and fall back to Redis, filling the local level on the way back.
+ *     Writes and evictions go to both levels and are broadcast to the other nodes, so they can drop their
+ *     local copies. Inside a transaction they are held back until it commits, see
+ *     {@link TransactionalCacheWrites}. Multi-key reads use one MGET for everything that is missing locally.
+ * </p>
+ * <p>
+ *     Evictions leave a short-lived tombstone in Redis and values loaded on a miss are only written if Redis does
+ *     not hold the key, see {@link RedisBatchCacheOperations#putIfAbsent}. A reader that loaded a row before a
+ *     commit therefore cannot put it back after the commit evicted it. Its value is not kept locally either.
+ * </p>
+ * <p>
+ *     Reads that come with a value loader may reload hot entries in the background shortly before their Redis copy
+ *     expires, see {@link EarlyRefresh}. The caller still gets the cached value. Single-key reads are counted by
+ *     {@link HotKeyTracker}.
+ * </p>
+ */
+public class TwoLevelCache extends AbstractValueAdaptingCache implements BatchCache {
+
+    private final String name;
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> local;
+    private final Cache remote;
+    private final RedisBatchCacheOperations remoteBatch;
+    private final CacheInvalidationPublisher publisher;
+    private final EarlyRefresh earlyRefresh;
+    private final HotKeyTracker hotKeyTracker;
+    private final TransactionalCacheWrites writes;
+
+    public TwoLevelCache(String name, com.github.benmanes.caffeine.cache.Cache<String, Object> local, Cache remote,
+                         RedisBatchCacheOperations remoteBatch, CacheInvalidationPublisher publisher,
+                         EarlyRefresh earlyRefresh, HotKeyTracker hotKeyTracker, TransactionalCacheWrites writes) {
+        super(false);
+        this.name = name;
+        this.local = local;
+        this.remote = remote;
+        this.remoteBatch = remoteBatch;
+        this.publisher = publisher;
+        this.earlyRefresh = earlyRefresh;
+        this.hotKeyTracker = hotKeyTracker;
+        this.writes = writes;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return local;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        String localKey = toLocalKey(key);
+        hotKeyTracker.record(name, localKey);
+        Object value = local.getIfPresent(localKey);
+        if (value != null) {
+            return value;
+        }
+        ValueWrapper remoteValue = remote.get(key);
+        if (remoteValue == null || remoteValue.get() == null) {
+            return null;
+        }
+        local.put(localKey, remoteValue.get());
+        return remoteValue.get();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Object value = lookup(key);
+        if (value != null) {
+            String localKey = toLocalKey(key);
+            if (earlyRefresh.shouldRefresh(localKey)) {
+                earlyRefresh.refresh(localKey, () -> load(key, valueLoader, true));
+            }
+            return (T) value;
+        }
+        return load(key, valueLoader, false);
+    }
+
+    /**
+     * Loads the value and writes it to both levels.
+     * @param refresh {@code true} if the value replaces a cached one shortly before it expires, {@code false} if
+     *                nothing was cached and the value must not overwrite what was written in the meantime
+     */
+    private <T> T load(Object key, Callable<T> valueLoader, boolean refresh) {
+        long start = System.nanoTime();
+        T loaded;
+        try {
+            loaded = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        if (loaded != null) {
+            long loadNanos = System.nanoTime() - start;
+            if (refresh) {
+                remote.put(key, loaded);
+            } else if (!remoteBatch.putIfAbsent(name, key, loaded)) {
+                return loaded;
+            }
+            local.put(toLocalKey(key), loaded);
+            earlyRefresh.recordWrite(toLocalKey(key), remoteBatch.timeToLive(name, key, loaded), loadNanos);
+        }
+        return loaded;
+    }
+
+    @Override
+    public Map<Object, Object> getAll(List<?> keys) {
+        Map<Object, Object> found = new HashMap<>();
+        List<Object> remoteKeys = new ArrayList<>();
+        for (Object key : keys) {
+            Object value = local.getIfPresent(toLocalKey(key));
+            if (value != null) {
+                found.put(key, value);
+            } else {
+                remoteKeys.add(key);
+            }
+        }
+        List<Object> remoteValues = remoteBatch.getAll(name, remoteKeys);
+        for (int i = 0; i < remoteKeys.size(); i++) {
+            Object value = remoteValues.get(i);
+            if (value != null) {
+                local.put(toLocalKey(remoteKeys.get(i)), value);
+                found.put(remoteKeys.get(i), value);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public void putAll(Map<?, ?> values) {
+        remoteBatch.putAll(name, values);
+        values.forEach((key, value) -> {
+            local.put(toLocalKey(key), value);
+            earlyRefresh.recordWrite(toLocalKey(key), remoteBatch.timeToLive(name, key, value), -1);
+        });
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        Object storeValue = toStoreValue(value);
+        if (!writes.deferPut(this, key, storeValue)) {
+            putNow(key, storeValue);
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        if (!writes.deferEvict(this, key)) {
+            evictNow(key);
+        }
+    }
+
+    @Override
+    public void clear() {
+        if (!writes.deferClear(this)) {
+            clearNow();
+        }
+    }
+
+    void putNow(Object key, Object value) {
+        remote.put(key, value);
+        applyLocalPut(key, value);
+    }
+
+    void evictNow(Object key) {
+        if (!remoteBatch.writeAll(List.of(new RedisBatchCacheOperations.Write(name, key, null)))) {
+            remote.evict(key);
+        }
+        applyLocalEvict(key);
+    }
+
+    void clearNow() {
+        remote.clear();
+        local.invalidateAll();
+        earlyRefresh.forgetAll();
+        publisher.publishClear(name);
+    }
+
+    /**
+     * Finishes a write that was held back until commit and already sent to Redis in a pipeline.
+     * @param key key of the entry
+     * @param value new value, {@code null} for an eviction
+     * @param remoteWritten {@code false} if the pipeline was skipped, then Redis is written through the remote
+     *                      cache, which remembers the key if Redis is still unavailable
+     */
+    void applyCommitted(Object key, Object value, boolean remoteWritten) {
+        if (value == null) {
+            if (!remoteWritten) {
+                remote.evict(key);
+            }
+            applyLocalEvict(key);
+        } else {
+            if (!remoteWritten) {
+                remote.put(key, value);
+            }
+            applyLocalPut(key, value);
+        }
+    }
+
+    private void applyLocalPut(Object key, Object value) {
+        local.put(toLocalKey(key), value);
+        earlyRefresh.recordWrite(toLocalKey(key), remoteBatch.timeToLive(name, key, value), -1);
+        publisher.publishEvict(name, toLocalKey(key));
+    }
+
+    private void applyLocalEvict(Object key) {
+        local.invalidate(toLocalKey(key));
+        earlyRefresh.forget(toLocalKey(key));
+        publisher.publishEvict(name, toLocalKey(key));
+    }
+
+    /**
+     * Evicts entries whose rows were changed in the database from both levels in one pipeline. The other nodes
+     * are not told, they get the same change from the database.
+     * @param keys keys of the changed entries
+     */
+    void evictChanged(Collection<?> keys) {
+        boolean written = remoteBatch.writeAll(keys.stream()
+                .map(key -> new RedisBatchCacheOperations.Write(name, key, null))
+                .toList());
+        for (Object key : keys) {
+            if (!written) {
+                remote.evict(key);
+            }
+            local.invalidate(toLocalKey(key));
+            earlyRefresh.forget(toLocalKey(key));
+        }
+    }
+
+    /**
+     * Drops an entry from the local level only. Used when another node changed the entry.
+     * @param key key of the entry in its string form
+     */
+    public void evictLocal(String key) {
+        local.invalidate(key);
+        earlyRefresh.forget(key);
+    }
+
+    /**
+     * Drops all entries from the local level only. Used when another node cleared the cache.
+     */
+    public void clearLocal() {
+        local.invalidateAll();
+        earlyRefresh.forgetAll();
+    }
+
+    /**
+     * Converts a cache key to the form used by the local level and by invalidation messages. Ids and emails
+     * may arrive as different boxed types, so both levels agree on the string form.
+     */
+    static String toLocalKey(Object key) {
+        return String.valueOf(key);
+    }
+}
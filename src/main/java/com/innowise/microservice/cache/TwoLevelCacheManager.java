@@ -0,0 +1,115 @@
+package com.innowise.microservice.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Cache manager that puts a bounded in-process level in front of the caches of another manager.
+ * <p>
+ *     Only the caches listed in {@code localCacheNames} get the local level, all other caches are served by the
+ *     remote manager. Every remote cache is skipped while the {@link RedisCircuitBreaker} is open. Early
+ *     refreshes of all caches run on {@code refreshExecutor}, which is shut down together with the manager. Hot
+ *     entries are pinned in the local level for {@code pinnedTtl}, see {@link HotKeyPinning}.
+ * </p>
+ */
+public class TwoLevelCacheManager implements CacheManager, DisposableBean {
+
+    private final CacheManager remoteCacheManager;
+    private final RedisBatchCacheOperations remoteBatch;
+    private final CacheInvalidationPublisher publisher;
+    private final Set<String> localCacheNames;
+    private final long localMaximumSize;
+    private final Duration localTtl;
+    private final ExecutorService refreshExecutor;
+    private final double refreshBeta;
+    private final HotKeyTracker hotKeyTracker;
+    private final Duration pinnedTtl;
+    private final RedisCircuitBreaker breaker;
+    private final int maxPendingEvictions;
+    private final TransactionalCacheWrites writes;
+    private final Map<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+    private final Map<String, CircuitBreakingCache> remoteCaches = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(CacheManager remoteCacheManager, RedisBatchCacheOperations remoteBatch,
+                                CacheInvalidationPublisher publisher, Set<String> localCacheNames,
+                                long localMaximumSize, Duration localTtl, ExecutorService refreshExecutor,
+                                double refreshBeta, HotKeyTracker hotKeyTracker, Duration pinnedTtl,
+                                RedisCircuitBreaker breaker, int maxPendingEvictions) {
+        this.remoteCacheManager = remoteCacheManager;
+        this.remoteBatch = remoteBatch;
+        this.publisher = publisher;
+        this.localCacheNames = Set.copyOf(localCacheNames);
+        this.localMaximumSize = localMaximumSize;
+        this.localTtl = localTtl;
+        this.refreshExecutor = refreshExecutor;
+        this.refreshBeta = refreshBeta;
+        this.hotKeyTracker = hotKeyTracker;
+        this.pinnedTtl = pinnedTtl;
+        this.breaker = breaker;
+        this.maxPendingEvictions = maxPendingEvictions;
+        this.writes = new TransactionalCacheWrites(remoteBatch);
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        if (!localCacheNames.contains(name)) {
+            return getRemoteCache(name);
+        }
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return remoteCacheManager.getCacheNames();
+    }
+
+    /**
+     * Returns the two-level cache with the given name if it was already created on this node.
+     * @param name name of the cache
+     * @return cache or {@code null} if the cache has no local level or was never used
+     */
+    public TwoLevelCache getLocalCache(String name) {
+        return caches.get(name);
+    }
+
+    private TwoLevelCache createCache(String name) {
+        Cache remote = getRemoteCache(name);
+        if (remote == null) {
+            throw new IllegalStateException("No remote cache configured with name " + name);
+        }
+        HotKeyPinning pinning = new HotKeyPinning(name, hotKeyTracker, localTtl, pinnedTtl);
+        com.github.benmanes.caffeine.cache.Cache<String, Object> local = Caffeine.newBuilder()
+                .maximumWeight(localMaximumSize)
+                .weigher(pinning)
+                .expireAfter(pinning)
+                .build();
+        return new TwoLevelCache(name, local, remote, remoteBatch, publisher,
+                new EarlyRefresh(localMaximumSize, refreshExecutor, refreshBeta), hotKeyTracker, writes);
+    }
+
+    private Cache getRemoteCache(String name) {
+        Cache remote = remoteCaches.get(name);
+        if (remote != null) {
+            return remote;
+        }
+        Cache cache = remoteCacheManager.getCache(name);
+        if (cache == null) {
+            return null;
+        }
+        return remoteCaches.computeIfAbsent(name, n -> new CircuitBreakingCache(cache, breaker, maxPendingEvictions));
+    }
+
+    @Override
+    public void destroy() {
+        refreshExecutor.shutdownNow();
+    }
+}
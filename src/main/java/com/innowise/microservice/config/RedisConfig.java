@@ -1,28 +1,226 @@
 package com.innowise.microservice.config;
 
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.innowise.microservice.cache.BinaryDtoRedisSerializer;
+import com.innowise.microservice.cache.CacheInvalidationListener;
+import com.innowise.microservice.cache.CacheInvalidationPublisher;
+import com.innowise.microservice.cache.CacheNames;
+import com.innowise.microservice.cache.DatabaseChangeListener;
+import com.innowise.microservice.cache.HotKeyTracker;
+import com.innowise.microservice.cache.JitteredTtlFunction;
+import com.innowise.microservice.cache.KnownIds;
+import com.innowise.microservice.cache.RedisCircuitBreaker;
+import com.innowise.microservice.cache.RedisBatchCacheOperations;
+import com.innowise.microservice.cache.TwoLevelCacheManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.cache.annotation.CachingConfigurer;
+import org.springframework.cache.interceptor.CacheErrorHandler;
+import org.springframework.cache.interceptor.LoggingCacheErrorHandler;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConfiguration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
 import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Cache configuration used when {@code spring.cache.type=redis}.
+ * <p>
+ *     User and card caches get a bounded in-process level in front of Redis. Changes made on one node are
+ *     broadcast over Redis pub/sub, so the other nodes drop their local copies. Values are stored in a compact
+ *     binary format unless {@code cache.serializer=json}. Every cache gets its own TTL jitter, and hot entries
+ *     are refreshed in the background shortly before they expire. While Redis is slow or down, the caches are
+ *     bypassed and reads go to the database.
+ * </p>
+ */
 @Configuration
-public class RedisConfig {
+@ConditionalOnProperty(name = "spring.cache.type", havingValue = "redis")
+public class RedisConfig implements CachingConfigurer {
+
+    private static final Set<String> LOCAL_CACHE_NAMES =
+            Set.of(CacheNames.USER_CACHE, CacheNames.USER_EMAIL_CACHE, CacheNames.CARD_CACHE,
+                    CacheNames.CARD_NUMBER_CACHE, CacheNames.OWNER_CARDS_CACHE);
+
+    /**
+     * Errors that still come out of a cache, for example a value that cannot be read, are logged and treated as a
+     * miss, so the annotated method runs against the database. Redis being slow or down is handled by
+     * {@link RedisCircuitBreaker} before it gets here.
+     */
+    @Override
+    public CacheErrorHandler errorHandler() {
+        return new LoggingCacheErrorHandler();
+    }
+
+    @Bean
+    public RedisCircuitBreaker redisCircuitBreaker(RedisConnectionFactory connectionFactory,
+                                                   MeterRegistry meterRegistry,
+                                                   @Value("${cache.breaker.failure-threshold:5}")
+                                                   int failureThreshold) {
+        return new RedisCircuitBreaker(connectionFactory, failureThreshold, meterRegistry);
+    }
+
+    @Bean
+    public CacheInvalidationPublisher cacheInvalidationPublisher(
+            StringRedisTemplate redisTemplate,
+            RedisCircuitBreaker breaker,
+            @Value("${cache.invalidation.channel:cache-invalidation}") String channel) {
+        return new CacheInvalidationPublisher(redisTemplate, channel, breaker);
+    }
+
+    /**
+     * Connections of multi-key cache reads and writes, to the same Redis as {@code spring.data.redis} but with
+     * {@code cache.redis.batch-timeout} as command timeout. Not a default candidate, so everything else, including
+     * the auto-configured connection factory, is left as it is.
+     */
+    @Bean(defaultCandidate = false)
+    public LettuceConnectionFactory batchRedisConnectionFactory(LettuceConnectionFactory connectionFactory,
+                                                                @Value("${cache.redis.batch-timeout:PT2S}")
+                                                                Duration batchTimeout) {
+        LettuceClientConfiguration client = connectionFactory.getClientConfiguration();
+        LettuceClientConfiguration.LettuceClientConfigurationBuilder builder = LettuceClientConfiguration.builder();
+        if (client.isUseSsl()) {
+            LettuceClientConfiguration.LettuceSslClientConfigurationBuilder ssl = builder.useSsl()
+                    .verifyPeer(client.getVerifyMode());
+            if (client.isStartTls()) {
+                ssl.startTls();
+            }
+        }
+        client.getClientResources().ifPresent(builder::clientResources);
+        client.getClientOptions().ifPresent(builder::clientOptions);
+        client.getClientName().ifPresent(builder::clientName);
+        client.getReadFrom().ifPresent(builder::readFrom);
+        client.getRedisCredentialsProviderFactory().ifPresent(builder::redisCredentialsProviderFactory);
+        builder.commandTimeout(batchTimeout)
+                .shutdownTimeout(client.getShutdownTimeout())
+                .shutdownQuietPeriod(client.getShutdownQuietPeriod());
+
+        RedisConfiguration server = connectionFactory.isClusterAware() ? connectionFactory.getClusterConfiguration()
+                : connectionFactory.isRedisSentinelAware() ? connectionFactory.getSentinelConfiguration()
+                : connectionFactory.getStandaloneConfiguration();
+        return new LettuceConnectionFactory(server, builder.build());
+    }
 
     @Bean
-    public RedisCacheManager cacheManager(RedisConnectionFactory connectionFactory) {
+    public TwoLevelCacheManager cacheManager(RedisConnectionFactory connectionFactory,
+                                             @Qualifier("batchRedisConnectionFactory")
+                                             RedisConnectionFactory batchConnectionFactory,
+                                             CacheInvalidationPublisher publisher,
+                                             HotKeyTracker hotKeyTracker,
+                                             RedisCircuitBreaker breaker,
+                                             @Value("${cache.ttl:PT10M}") Duration ttl,
+                                             @Value("${cache.ttl.jitter:0.1}") double ttlJitter,
+                                             @Value("${cache.local.maximum-size:10000}") long localMaximumSize,
+                                             @Value("${cache.local.ttl:PT1M}") Duration localTtl,
+                                             @Value("${cache.negative.ttl:PT30S}") Duration negativeTtl,
+                                             @Value("${cache.tombstone.ttl:PT5S}") Duration tombstoneTtl,
+                                             @Value("${cache.refresh.beta:1.0}") double refreshBeta,
+                                             @Value("${cache.refresh.threads:2}") int refreshThreads,
+                                             @Value("${cache.hot-keys.pinned-ttl:PT10M}") Duration pinnedTtl,
+                                             @Value("${cache.serializer:binary}") String serializer,
+                                             @Value("${cache.serializer.compression-threshold:1024}")
+                                             int compressionThreshold,
+                                             @Value("${cache.breaker.max-pending-evictions:10000}")
+                                             int maxPendingEvictions) {
         RedisCacheConfiguration redisCacheConfiguration = RedisCacheConfiguration.defaultCacheConfig()
-                .entryTtl(Duration.ofMinutes(10))
+                .entryTtl(ttl)
                 .disableCachingNullValues()
                 .serializeValuesWith(RedisSerializationContext.SerializationPair
-                        .fromSerializer(new GenericJackson2JsonRedisSerializer()));
+                        .fromSerializer(valueSerializer(serializer, compressionThreshold)));
 
-        return RedisCacheManager.builder(connectionFactory)
+        Map<String, RedisCacheConfiguration> cacheConfigurations = new HashMap<>();
+        for (String name : LOCAL_CACHE_NAMES) {
+            cacheConfigurations.put(name, redisCacheConfiguration.entryTtl(new JitteredTtlFunction(ttl, ttlJitter,
+                    name)));
+        }
+        cacheConfigurations.put(CacheNames.MISSING_ID_CACHE, redisCacheConfiguration.entryTtl(
+                new JitteredTtlFunction(negativeTtl, ttlJitter, CacheNames.MISSING_ID_CACHE)));
+
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(connectionFactory)
                 .cacheDefaults(redisCacheConfiguration)
+                .withInitialCacheConfigurations(cacheConfigurations)
                 .build();
+        redisCacheManager.afterPropertiesSet();
+
+        return new TwoLevelCacheManager(redisCacheManager,
+                new RedisBatchCacheOperations(connectionFactory, batchConnectionFactory, redisCacheConfiguration,
+                        cacheConfigurations, breaker, tombstoneTtl),
+                publisher, LOCAL_CACHE_NAMES, localMaximumSize, localTtl, refreshExecutor(refreshThreads),
+                refreshBeta, hotKeyTracker, pinnedTtl, breaker, maxPendingEvictions);
+    }
+
+    /**
+     * Bounded pool for early refreshes. Refreshes that do not fit into the queue are dropped, the entry then
+     * expires as usual.
+     */
+    private static ExecutorService refreshExecutor(int threads) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("cache-refresh-");
+        threadFactory.setDaemon(true);
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1000),
+                threadFactory, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    private static RedisSerializer<Object> valueSerializer(String serializer, int compressionThreshold) {
+        GenericJackson2JsonRedisSerializer json = new GenericJackson2JsonRedisSerializer();
+        json.configure(mapper -> mapper.registerModule(new JavaTimeModule()));
+        return switch (serializer) {
+            case "json" -> json;
+            case "binary" -> new BinaryDtoRedisSerializer(json, compressionThreshold);
+            default -> throw new IllegalArgumentException("Unknown cache serializer: " + serializer);
+        };
+    }
+
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                            TwoLevelCacheManager cacheManager,
+                                                                            CacheInvalidationPublisher publisher,
+                                                                            KnownIds knownIds) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(new CacheInvalidationListener(cacheManager, knownIds, publisher.getNodeId()),
+                new ChannelTopic(publisher.getChannel()));
+        return container;
+    }
+
+    /**
+     * Listens to the row changes reported by the database triggers. The channel has to match the one used in the
+     * trigger function.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "cache.db-notify.enabled", havingValue = "true", matchIfMissing = true)
+    public DatabaseChangeListener databaseChangeListener(DataSourceProperties dataSourceProperties,
+                                                         TwoLevelCacheManager cacheManager,
+                                                         KnownIds knownIds,
+                                                         @Value("${cache.db-notify.channel:cache_invalidation}")
+                                                         String channel,
+                                                         @Value("${cache.db-notify.batch-window:PT0.1S}")
+                                                         Duration batchWindow,
+                                                         @Value("${cache.db-notify.max-batch-size:1000}")
+                                                         int maxBatchSize,
+                                                         @Value("${cache.db-notify.reconnect-delay:PT5S}")
+                                                         Duration reconnectDelay) {
+        return new DatabaseChangeListener(dataSourceProperties, cacheManager, knownIds, channel, batchWindow,
+                maxBatchSize, reconnectDelay);
     }
-}
\ No newline at end of file
+}
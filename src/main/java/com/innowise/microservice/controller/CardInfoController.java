@@ -1,21 +1,32 @@
 package com.innowise.microservice.controller;
 
+import com.innowise.microservice.cache.ResponseBodyCache;
+import com.innowise.microservice.dto.CardImportResultDto;
 import com.innowise.microservice.dto.CardInfoRequestDto;
 import com.innowise.microservice.dto.CardInfoResponseDto;
+import com.innowise.microservice.dto.CardPageDto;
+import com.innowise.microservice.service.CardImportService;
 import com.innowise.microservice.service.CardInfoService;
+import com.innowise.microservice.service.ExportService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
 import java.util.List;
+import java.util.Set;
 
 /**
  * REST-controller for card management.
@@ -23,75 +34,200 @@ import java.util.List;
  * Provides CRUD-operations:
  * <ul>
  *     <li>Creating a new card</li>
+ *     <li>Importing many cards from NDJSON or CSV</li>
  *     <li>Getting a card by id</li>
  *     <li>Getting a list of cards by their ids</li>
+ *     <li>Getting a card by number</li>
+ *     <li>Getting a user's cards page by page</li>
+ *     <li>Exporting all cards as NDJSON</li>
  *     <li>Updating a card by id</li>
  *     <li>Deleting a card by id</li>
  * </ul>
+ * <p>
+ * Cards are returned with only the owner's id in {@code userId}. Passing {@code expand=owner} returns the whole
+ * owner, which is looked up with one query for all cards of a response.
  */
 @RestController
-@RequestMapping("/cards")
 public class CardInfoController {
 
+    private static final String EXPAND_OWNER = "owner";
+    private static final String CARD_NUMBER_HEADER = "X-Card-Number";
+
     private final CardInfoService service;
+    private final CardImportService importService;
+    private final ExportService exportService;
+    private final int maxOwnerPageSize;
 
-    public CardInfoController(CardInfoService service) {
+    public CardInfoController(CardInfoService service, CardImportService importService, ExportService exportService,
+                              @Value("${cards.by-owner.max-limit:100}") int maxOwnerPageSize) {
         this.service = service;
+        this.importService = importService;
+        this.exportService = exportService;
+        this.maxOwnerPageSize = maxOwnerPageSize;
     }
 
     /**
      * Creates a new card.
      *
      * @param cardInfoDto New card's data.
+     * @param expand Related data to return whole, {@code owner} for the owner.
      * @return Created card.
      * @throws com.innowise.microservice.exception.CardNumberExistsException If given number is already registered for
      * another card.
      * @response 201 Created - New card successfully created.
      * @response 500 Internal Server Error - Unexpected server error occurred.
      */
-    @PostMapping("/add")
-    public ResponseEntity<CardInfoResponseDto> addCard(@RequestBody CardInfoRequestDto cardInfoDto) {
-        CardInfoResponseDto newCard = service.createCard(cardInfoDto);
+    @PostMapping("/cards/add")
+    public ResponseEntity<CardInfoResponseDto> addCard(@RequestBody CardInfoRequestDto cardInfoDto,
+                                                       @RequestParam(defaultValue = "") Set<String> expand) {
+        CardInfoResponseDto newCard = service.createCard(cardInfoDto, expand.contains(EXPAND_OWNER));
         return ResponseEntity.status(HttpStatus.CREATED).body(newCard);
     }
 
+    /**
+     * Imports cards from the request body as it arrives, without holding it in memory.
+     * <p>
+     * With {@code Content-Type: application/x-ndjson} every line is a JSON object with userId, number, holder and
+     * expirationDate. With {@code Content-Type: text/csv} every line is {@code user_id,number,holder,expiration_date},
+     * a header line is optional. Rows that are invalid, belong to a missing user or repeat a taken number are skipped.
+     *
+     * @param contentType Format of the body.
+     * @param body Cards to import.
+     * @return Numbers of accepted and rejected rows.
+     * @response 200 OK - Import finished, see the summary for rejected rows.
+     * @response 500 Internal Server Error - Unexpected server error occurred.
+     */
+    @PostMapping(value = "/cards/import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, "text/csv"})
+    public ResponseEntity<CardImportResultDto> importCards(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                           InputStream body) {
+        CardImportService.Format format = MediaType.parseMediaType(contentType).isCompatibleWith(
+                MediaType.APPLICATION_NDJSON) ? CardImportService.Format.NDJSON : CardImportService.Format.CSV;
+        CardImportResultDto result = importService.importCards(body, format);
+        return ResponseEntity.status(HttpStatus.OK).body(result);
+    }
+
+    /**
+     * Exports all cards, one JSON object per line in ascending order of ids.
+     * <p>
+     * Every line carries the owner's id as {@code userId}, so the export can be sent to {@link #importCards} as it
+     * is. The body is written while the cards are read, however many cards there are.
+     *
+     * @return NDJSON stream of all cards.
+     * @response 200 OK - Export started.
+     * @response 500 Internal Server Error - Unexpected server error occurred.
+     */
+    @GetMapping(value = "/cards/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportCards() {
+        return ResponseEntity.status(HttpStatus.OK)
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(exportService::exportCards);
+    }
+
     /**
      * Finds a card by id.
+     * <p>
+     * The JSON body is written once per cached card and owner and then served as is. It carries an ETag, requests
+     * with a matching {@code If-None-Match} get 304 Not Modified.
      *
      * @param id Card's id.
-     * @return Found card.
+     * @param expand Related data to return whole, {@code owner} for the owner.
+     * @return Found card as JSON.
      * @throws com.innowise.microservice.exception.CardNotFoundException If there's no card with given id.
      * @response 200 OK - Card found.
+     * @response 304 Not Modified - Card did not change since the given ETag.
      * @response 404 Not Found - Card not found.
      * @response 500 Internal Server Error - Unexpected server error occurred.
      */
-    @GetMapping("/get/{id}")
-    public ResponseEntity<CardInfoResponseDto> getCardById(@PathVariable Long id) {
-        CardInfoResponseDto card = service.getCardById(id);
-        return ResponseEntity.status(HttpStatus.OK).body(card);
+    @GetMapping("/cards/get/{id}")
+    public ResponseEntity<byte[]> getCardById(@PathVariable Long id,
+                                              @RequestParam(defaultValue = "") Set<String> expand) {
+        ResponseBodyCache.Body body = service.getCardBodyById(id, expand.contains(EXPAND_OWNER));
+        return ResponseEntity.status(HttpStatus.OK)
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(body.eTag())
+                .body(body.json());
     }
 
     /**
      * Finds cards by their ids.
      *
      * @param ids A list of cards' ids.
+     * @param expand Related data to return whole, {@code owner} for the owners.
      * @return A list of found cards.
      * @throws com.innowise.microservice.exception.EmptyCardListException If there's no cards with given ids.
      * @response 200 OK - Cards found.
      * @response 404 Not Found - Cards not found.
      * @response 500 Internal Server Error - Unexpected server error occurred.
      */
-    @GetMapping("/get")
-    public ResponseEntity<List<CardInfoResponseDto>> getCardsByIds(@RequestParam List<Long> ids) {
-        List<CardInfoResponseDto> cards = service.getCardsByIds(ids);
+    @GetMapping("/cards/get")
+    public ResponseEntity<List<CardInfoResponseDto>> getCardsByIds(
+            @RequestParam List<Long> ids,
+            @RequestParam(defaultValue = "") Set<String> expand) {
+        List<CardInfoResponseDto> cards = service.getCardsByIds(ids, expand.contains(EXPAND_OWNER));
         return ResponseEntity.status(HttpStatus.OK).body(cards);
     }
 
+    /**
+     * Finds a card by number.
+     * <p>
+     * Served from the card caches like {@link #getCardById(Long, Set)}, with the same ETag handling. The number is
+     * taken from the {@code X-Card-Number} header rather than the URL, so it stays out of access logs and proxies.
+     *
+     * @param number Card's number.
+     * @param expand Related data to return whole, {@code owner} for the owner.
+     * @return Found card as JSON.
+     * @throws com.innowise.microservice.exception.CardWithNumberNotFoundException If there's no card with given
+     * number.
+     * @response 200 OK - Card found.
+     * @response 304 Not Modified - Card did not change since the given ETag.
+     * @response 404 Not Found - Card not found.
+     * @response 500 Internal Server Error - Unexpected server error occurred.
+     */
+    @GetMapping("/cards/by-number")
+    public ResponseEntity<byte[]> getCardByNumber(@RequestHeader(CARD_NUMBER_HEADER) String number,
+                                                  @RequestParam(defaultValue = "") Set<String> expand) {
+        ResponseBodyCache.Body body = service.getCardBodyByNumber(number, expand.contains(EXPAND_OWNER));
+        return ResponseEntity.status(HttpStatus.OK)
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(body.eTag())
+                .body(body.json());
+    }
+
+    /**
+     * Finds a page of a user's cards, ordered by id.
+     * <p>
+     * The first page is requested without {@code afterId}. Every following page passes the {@code nextAfterId} of
+     * the previous one, so a page costs the same however far the client has got. The limit is capped at
+     * {@code cards.by-owner.max-limit}.
+     *
+     * @param id Owner's id.
+     * @param afterId Id of the last card of the previous page.
+     * @param limit Maximum number of cards in the page.
+     * @param expand Related data to return whole, {@code owner} for the owner.
+     * @return Cards of the page and the cursor of the next one.
+     * @throws com.innowise.microservice.exception.UserNotFoundException If there's no user with given id.
+     * @response 200 OK - Page found, possibly empty.
+     * @response 404 Not Found - User not found.
+     * @response 500 Internal Server Error - Unexpected server error occurred.
+     */
+    @GetMapping("/users/{id}/cards")
+    public ResponseEntity<CardPageDto> getCardsByOwner(
+            @PathVariable Long id,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(defaultValue = "${cards.by-owner.default-limit:20}") int limit,
+            @RequestParam(defaultValue = "") Set<String> expand) {
+        int pageSize = Math.max(1, Math.min(limit, maxOwnerPageSize));
+        CardPageDto page = service.getCardsByOwner(id, afterId, pageSize, expand.contains(EXPAND_OWNER));
+        return ResponseEntity.status(HttpStatus.OK).body(page);
+    }
+
     /**
      * Updates a card with given id.
      *
      * @param id Identifier of the card that should be updated.
      * @param cardInfoDto New data of the card.
+     * @param expand Related data to return whole, {@code owner} for the owner.
+     * @return Updated card.
      * @throws com.innowise.microservice.exception.CardNotFoundException If there's no card with given id.
      * @throws com.innowise.microservice.exception.CardNumberExistsException If given number is already registered for
      * another card.
@@ -99,10 +235,11 @@ public class CardInfoController {
      * @response 404 Not Found - Card not found.
      * @response 500 Internal Server Error - Unexpected server error occurred.
      */
-    @PutMapping("/update/{id}")
+    @PutMapping("/cards/update/{id}")
     public ResponseEntity<CardInfoResponseDto> updateCard(@PathVariable Long id,
-                                                          @RequestBody CardInfoRequestDto cardInfoDto) {
-        CardInfoResponseDto updatedCard = service.updateCardById(id, cardInfoDto);
+                                                          @RequestBody CardInfoRequestDto cardInfoDto,
+                                                          @RequestParam(defaultValue = "") Set<String> expand) {
+        CardInfoResponseDto updatedCard = service.updateCardById(id, cardInfoDto, expand.contains(EXPAND_OWNER));
         return ResponseEntity.status(HttpStatus.OK).body(updatedCard);
     }
 
@@ -115,7 +252,7 @@ public class CardInfoController {
      * @response 404 Not Found - Card not found.
      * @response 500 Internal Server Error - Unexpected server error occurred.
      */
-    @DeleteMapping("/delete/{id}")
+    @DeleteMapping("/cards/delete/{id}")
     public ResponseEntity<Void> deleteCard(@PathVariable Long id) {
         service.deleteCardById(id);
         return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
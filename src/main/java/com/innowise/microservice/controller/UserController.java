@@ -1,10 +1,17 @@
 package com.innowise.microservice.controller;
 
+import com.innowise.microservice.cache.ResponseBodyCache;
+import com.innowise.microservice.dto.UserBatchResultDto;
+import com.innowise.microservice.dto.UserPageDto;
 import com.innowise.microservice.dto.UserRequestDto;
 import com.innowise.microservice.dto.UserResponseDto;
+import com.innowise.microservice.service.ExportService;
 import com.innowise.microservice.service.UserService;
+import com.innowise.microservice.exception.UserBatchTooLargeException;
 import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -15,6 +22,8 @@ import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
 import java.util.List;
 
 /**
@@ -23,9 +32,12 @@ import java.util.List;
  * Provides CRUD-operations:
  * <ul>
  *     <li>Creating a new user</li>
+ *     <li>Creating a batch of new users</li>
  *     <li>Getting a user by id</li>
  *     <li>Getting a user by e-mail</li>
  *     <li>Getting a list of users by their ids</li>
+ *     <li>Listing all users page by page</li>
+ *     <li>Exporting all users as NDJSON</li>
  *     <li>Updating a user by id</li>
  *     <li>Deleting a user by id</li>
  * </ul>
@@ -35,9 +47,19 @@ import java.util.List;
 public class UserController {
 
     private final UserService service;
+    private final ResponseBodyCache responseBodies;
+    private final ExportService exportService;
+    private final int maxBatchSize;
+    private final int maxPageSize;
 
-    public UserController(UserService service) {
+    public UserController(UserService service, ResponseBodyCache responseBodies, ExportService exportService,
+                          @Value("${users.batch.max-size:1000}") int maxBatchSize,
+                          @Value("${users.list.max-limit:1000}") int maxPageSize) {
         this.service = service;
+        this.responseBodies = responseBodies;
+        this.exportService = exportService;
+        this.maxBatchSize = maxBatchSize;
+        this.maxPageSize = maxPageSize;
     }
 
     /**
@@ -57,20 +79,49 @@ public class UserController {
         return ResponseEntity.status(HttpStatus.CREATED).body(newUser);
     }
 
+    /**
+     * Creates new users in one request.
+     * <p>
+     * Every user is validated and checked for a taken email on its own. Users that are rejected are reported in the
+     * result with the status a single creation request would have got, the others are created.
+     *
+     * @param userDtos New users' data.
+     * @return The outcome of each user, in the order of the request.
+     * @throws UserBatchTooLargeException If more users are given than {@code users.batch.max-size}.
+     * @response 200 OK - Batch processed, see the status of each user.
+     * @response 400 Bad Request - Too many users in one request.
+     * @response 500 Internal Server Error - Unexpected server error occurred.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<List<UserBatchResultDto>> addUsers(@RequestBody List<UserRequestDto> userDtos) {
+        if (userDtos.size() > maxBatchSize) {
+            throw new UserBatchTooLargeException(userDtos.size(), maxBatchSize);
+        }
+        List<UserBatchResultDto> results = service.createUsers(userDtos);
+        return ResponseEntity.status(HttpStatus.OK).body(results);
+    }
+
     /**
      * Finds a user by id.
+     * <p>
+     * The JSON body of a cached user is written once and then served as is. It carries an ETag, requests with a
+     * matching {@code If-None-Match} get 304 Not Modified.
      *
      * @param id User's id.
-     * @return Found user.
+     * @return Found user as JSON.
      * @throws com.innowise.microservice.exception.UserNotFoundException If there's no user with given id.
      * @response 200 OK - User found.
+     * @response 304 Not Modified - User did not change since the given ETag.
      * @response 404 Not Found - User not found.
      * @response 500 Internal Server Error - Unexpected server error occurred.
      */
     @GetMapping("/get/{id}")
-    public ResponseEntity<UserResponseDto> getUserById(@PathVariable Long id) {
-        UserResponseDto user = service.getUserById(id);
-        return ResponseEntity.status(HttpStatus.OK).body(user);
+    public ResponseEntity<byte[]> getUserById(@PathVariable Long id) {
+        ResponseBodyCache.Body body = responseBodies.get(service.getUserById(id));
+        return ResponseEntity.status(HttpStatus.OK)
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(body.eTag())
+                .body(body.json());
     }
 
     /**
@@ -89,6 +140,47 @@ public class UserController {
         return ResponseEntity.status(HttpStatus.OK).body(users);
     }
 
+    /**
+     * Lists users page by page, ordered by id.
+     * <p>
+     * The first page is requested without {@code cursor}. Every following page passes the {@code nextCursor} of the
+     * previous one, so a page costs the same however far the client has got and no user is skipped or repeated
+     * while others are created or deleted. The limit is capped at {@code users.list.max-limit}.
+     *
+     * @param cursor Token of the page from the previous response.
+     * @param limit Maximum number of users in the page.
+     * @return Users of the page and the token of the next one.
+     * @throws com.innowise.microservice.exception.InvalidCursorException If the cursor was not issued by this API.
+     * @response 200 OK - Page found, possibly empty.
+     * @response 400 Bad Request - Cursor is not valid.
+     * @response 500 Internal Server Error - Unexpected server error occurred.
+     */
+    @GetMapping
+    public ResponseEntity<UserPageDto> listUsers(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "${users.list.default-limit:100}") int limit) {
+        int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+        UserPageDto page = service.listUsers(cursor, pageSize);
+        return ResponseEntity.status(HttpStatus.OK).body(page);
+    }
+
+    /**
+     * Exports all users, one JSON object per line in ascending order of ids.
+     * <p>
+     * The body is written while the users are read, so it starts at once and the service holds only a small batch
+     * of rows at a time, however many users there are.
+     *
+     * @return NDJSON stream of all users.
+     * @response 200 OK - Export started.
+     * @response 500 Internal Server Error - Unexpected server error occurred.
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportUsers() {
+        return ResponseEntity.status(HttpStatus.OK)
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(exportService::exportUsers);
+    }
+
     /**
      * Finds a user by e-mail.
      *
@@ -0,0 +1,46 @@
+package com.innowise.microservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object with the summary of a card import.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CardImportResultDto {
+
+    /**
+     * Number of rows read, without the CSV header.
+     */
+    private long received;
+
+    /**
+     * Number of cards created.
+     */
+    private long accepted;
+
+    /**
+     * Number of rows that could not be parsed or broke the rules of a card.
+     */
+    private long rejectedInvalid;
+
+    /**
+     * Number of rows whose owner does not exist.
+     */
+    private long rejectedUnknownOwner;
+
+    /**
+     * Number of rows whose number is already taken, by an existing card or by an earlier row of the import.
+     */
+    private long rejectedDuplicateNumber;
+
+    /**
+     * Why the first invalid rows were rejected, with their line numbers.
+     */
+    private List<String> errors;
+}
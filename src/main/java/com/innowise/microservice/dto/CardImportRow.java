@@ -0,0 +1,42 @@
+package com.innowise.microservice.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * Data Transfer Object for one card of an import. Has the same rules as {@link CardInfoRequestDto}, but refers to
+ * the owner by id.
+ */
+@Data
+public class CardImportRow {
+
+    /**
+     * Unique identifier of the user from table "users". Must be not NULL.
+     */
+    @NotNull
+    private Long userId;
+
+    /**
+     * The number of the card. Must contain 16 digits.
+     */
+    @NotBlank
+    @Pattern(regexp = "\\d{16}")
+    private String number;
+
+    /**
+     * Full name of the card's holder. Must be written with only capital letters and contain name and surname.
+     */
+    @NotBlank
+    @Pattern(regexp = "[A-Z]+\\s[A-Z]+")
+    private String holder;
+
+    /**
+     * The date when the card expires. Must be not NULL.
+     */
+    @NotNull
+    private LocalDate expirationDate;
+}
@@ -0,0 +1,42 @@
+package com.innowise.microservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Card as it is kept in CARD_CACHE: the card's own fields and only the id of its owner. The owner is taken from
+ * USER_CACHE when the card is read, so updating a user does not touch the cached cards.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CardInfoCacheEntry {
+
+    /**
+     * Unique identifier of the card.
+     */
+    private Long id;
+
+    /**
+     * Unique identifier of the user who owns the card.
+     */
+    private Long ownerId;
+
+    /**
+     * The number of the card.
+     */
+    private String number;
+
+    /**
+     * Full name of the card's holder.
+     */
+    private String holder;
+
+    /**
+     * The date when the card expires.
+     */
+    private LocalDate expirationDate;
+}
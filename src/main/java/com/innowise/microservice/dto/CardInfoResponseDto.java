@@ -1,6 +1,5 @@
 package com.innowise.microservice.dto;
 
-import com.innowise.microservice.entity.User;
 import lombok.Data;
 
 import java.time.LocalDate;
@@ -17,9 +16,9 @@ public class CardInfoResponseDto {
     private Long id;
 
     /**
-     * Unique identifier of the user from table "users".
+     * The user who owns the card, an {@link OwnerIdDto} with only the id unless the owner was expanded.
      */
-    private User userId;
+    private UserResponseDto userId;
 
     /**
      * The number of the card.
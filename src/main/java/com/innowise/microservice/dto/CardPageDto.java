@@ -0,0 +1,26 @@
+package com.innowise.microservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object with one page of a user's cards.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CardPageDto {
+
+    /**
+     * Cards of the page in ascending order of their ids.
+     */
+    private List<CardInfoResponseDto> cards;
+
+    /**
+     * Cursor of the next page, the id of the last card of this one. {@code null} if there are no more cards.
+     */
+    private Long nextAfterId;
+}
@@ -0,0 +1,15 @@
+package com.innowise.microservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Owner of a card written with only its id, used unless the owner was expanded. The other fields are never set and
+ * are left out of the response.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class OwnerIdDto extends UserResponseDto {
+
+    public OwnerIdDto(Long id) {
+        setId(id);
+    }
+}
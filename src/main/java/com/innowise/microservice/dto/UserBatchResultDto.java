@@ -0,0 +1,34 @@
+package com.innowise.microservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object with the outcome of one user of a batch creation request.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserBatchResultDto {
+
+    /**
+     * Position of the user in the request.
+     */
+    private int index;
+
+    /**
+     * HTTP status the user would have got from a single creation request.
+     */
+    private int status;
+
+    /**
+     * Created user. Empty if the user was not created.
+     */
+    private UserResponseDto user;
+
+    /**
+     * Why the user was not created. Empty if the user was created.
+     */
+    private String message;
+}
@@ -0,0 +1,26 @@
+package com.innowise.microservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object with one page of the user listing.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserPageDto {
+
+    /**
+     * Users of the page in ascending order of their ids.
+     */
+    private List<UserResponseDto> users;
+
+    /**
+     * Opaque token of the next page. {@code null} if there are no more users.
+     */
+    private String nextCursor;
+}
@@ -2,8 +2,10 @@ package com.innowise.microservice.dto;
 
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Past;
 import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
 import lombok.Data;
 
 import java.time.LocalDate;
@@ -15,29 +17,33 @@ import java.time.LocalDate;
 public class UserRequestDto {
 
     /**
-     * Name of the user. Must start with the capital letter and contain at least 1 symbol.
+     * Name of the user. Must start with the capital letter and contain from 1 to 50 symbols.
      */
     @NotBlank
+    @Size(max = 50)
     @Pattern(regexp = "[A-Z][a-z]*")
     private String name;
 
     /**
-     * Surname of the user. Must start with the capital letter and contain at least 1 symbol.
+     * Surname of the user. Must start with the capital letter and contain from 1 to 50 symbols.
      */
     @NotBlank
+    @Size(max = 50)
     @Pattern(regexp = "[A-Z][a-z]*")
     private String surname;
 
     /**
-     * The date when the user was born. Must be in the past.
+     * The date when the user was born. Must be not NULL and in the past.
      */
+    @NotNull
     @Past
     private LocalDate birthDate;
 
     /**
-     * Email of the user. Must be a well-formed email address.
+     * Email of the user. Must be a well-formed email address of at most 254 symbols.
      */
     @NotBlank
+    @Size(max = 254)
     @Email
     private String email;
 }
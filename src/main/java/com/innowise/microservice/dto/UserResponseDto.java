@@ -1,12 +1,17 @@
 package com.innowise.microservice.dto;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
+
 import java.time.LocalDate;
 
 /**
  * Data Transfer Object for returning user data in REST API responses.
  */
 @Data
+@AllArgsConstructor
+@NoArgsConstructor
 public class UserResponseDto {
 
     /**
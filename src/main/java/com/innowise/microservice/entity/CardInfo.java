@@ -11,18 +11,23 @@ import java.time.LocalDate;
  * Entity that stores information about cards.
  */
 @Entity
-@Table(name = "card_info")
+@Table(name = "card_info", indexes = {
+        @Index(name = "uc_card_info_number", columnList = "number", unique = true),
+        @Index(name = "uc_card_info_number_fingerprint", columnList = "number_fingerprint", unique = true),
+        @Index(name = "idx_card_info_user_id", columnList = "user_id, id")})
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 public class CardInfo {
 
     /**
-     * Unique identifier of the card. Generates automatically by the database.
+     * Unique identifier of the card. Taken from the sequence card_info_id_seq in blocks of 50, so inserts can be
+     * batched.
      */
     @Id
     @Column(name = "id")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "card_info_id_seq")
+    @SequenceGenerator(name = "card_info_id_seq", sequenceName = "card_info_id_seq", allocationSize = 50)
     private Long id;
 
     /**
@@ -33,11 +38,19 @@ public class CardInfo {
     private User userId;
 
     /**
-     * The number of the card.
+     * The number of the card. Unique among all cards.
      */
     @Column(name = "number")
     private String number;
 
+    /**
+     * Keyed hash of the number, see {@link com.innowise.microservice.service.CardNumberFingerprint}. Cards are
+     * looked up by it. Rows written before the column existed get it from
+     * {@link com.innowise.microservice.service.CardFingerprintBackfill}, after which the column is made not null.
+     */
+    @Column(name = "number_fingerprint")
+    private byte[] numberFingerprint;
+
     /**
      * Full name of the card's holder.
      */
@@ -11,18 +11,19 @@ import java.time.LocalDate;
  * Entity that stores information about users.
  */
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = @Index(name = "uc_users_email", columnList = "email", unique = true))
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 public class User {
 
     /**
-     * Unique identifier of the user. Generates automatically by the database.
+     * Unique identifier of the user. Taken from the sequence users_id_seq in blocks of 50, so inserts can be batched.
      */
     @Id
     @Column(name = "id")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_id_seq")
+    @SequenceGenerator(name = "users_id_seq", sequenceName = "users_id_seq", allocationSize = 50)
     private Long id;
 
     /**
@@ -44,7 +45,7 @@ public class User {
     private LocalDate birthDate;
 
     /**
-     * Email of the user.
+     * Email of the user. Unique among all users.
      */
     @Column(name = "email")
     private String email;
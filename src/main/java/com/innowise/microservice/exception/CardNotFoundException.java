@@ -1,7 +1,11 @@
 package com.innowise.microservice.exception;
 
+/**
+ * Thrown when a card with the given id does not exist. Carries no stack trace, as it is expected on every
+ * probe for a missing id.
+ */
 public class CardNotFoundException extends RuntimeException {
     public CardNotFoundException(Long id) {
-        super("Card with id " + id + " not found");
+        super("Card with id " + id + " not found", null, false, false);
     }
 }
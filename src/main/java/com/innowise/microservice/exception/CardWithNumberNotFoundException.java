@@ -0,0 +1,7 @@
+package com.innowise.microservice.exception;
+
+public class CardWithNumberNotFoundException extends RuntimeException {
+    public CardWithNumberNotFoundException(String number) {
+        super("Card with number " + number + " not found");
+    }
+}
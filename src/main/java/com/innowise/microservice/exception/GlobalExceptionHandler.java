@@ -51,6 +51,26 @@ public class GlobalExceptionHandler {
                 ));
     }
 
+    @ExceptionHandler(UserBatchTooLargeException.class)
+    public ResponseEntity<ErrorResponse> handleUserBatchTooLarge(UserBatchTooLargeException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(new ErrorResponse(
+                        HttpStatus.BAD_REQUEST.value(),
+                        ex.getMessage(),
+                        LocalDateTime.now()
+                ));
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidCursor(InvalidCursorException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(new ErrorResponse(
+                        HttpStatus.BAD_REQUEST.value(),
+                        ex.getMessage(),
+                        LocalDateTime.now()
+                ));
+    }
+
     @ExceptionHandler(CardNotFoundException.class)
     public ResponseEntity<ErrorResponse> handleCardNotFound(CardNotFoundException ex) {
         return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -61,6 +81,16 @@ public class GlobalExceptionHandler {
                 ));
     }
 
+    @ExceptionHandler(CardWithNumberNotFoundException.class)
+    public ResponseEntity<ErrorResponse> handleCardWithNumberNotFound(CardWithNumberNotFoundException ex) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(new ErrorResponse(
+                        HttpStatus.NOT_FOUND.value(),
+                        ex.getMessage(),
+                        LocalDateTime.now()
+                ));
+    }
+
     @ExceptionHandler(CardNumberExistsException.class)
     public ResponseEntity<ErrorResponse> handleCardNumberExists(CardNumberExistsException ex) {
         return ResponseEntity.status(HttpStatus.CONFLICT)
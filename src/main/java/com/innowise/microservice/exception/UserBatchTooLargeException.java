@@ -0,0 +1,7 @@
+package com.innowise.microservice.exception;
+
+public class UserBatchTooLargeException extends RuntimeException {
+    public UserBatchTooLargeException(int size, int maxSize) {
+        super("Cannot create " + size + " users at once, the limit is " + maxSize);
+    }
+}
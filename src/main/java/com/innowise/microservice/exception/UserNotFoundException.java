@@ -1,7 +1,11 @@
 package com.innowise.microservice.exception;
 
+/**
+ * Thrown when a user with the given id does not exist. Carries no stack trace, as it is expected on every
+ * probe for a missing id.
+ */
 public class UserNotFoundException extends RuntimeException {
     public UserNotFoundException(Long id) {
-        super("User with id " + id + " not found");
+        super("User with id " + id + " not found", null, false, false);
     }
 }
@@ -1,9 +1,12 @@
 package com.innowise.microservice.mapper;
 
+import com.innowise.microservice.dto.CardInfoCacheEntry;
 import com.innowise.microservice.dto.CardInfoRequestDto;
 import com.innowise.microservice.dto.CardInfoResponseDto;
+import com.innowise.microservice.dto.UserResponseDto;
 import com.innowise.microservice.entity.CardInfo;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import org.mapstruct.MappingConstants;
 import java.util.List;
 
@@ -14,24 +17,30 @@ import java.util.List;
 public interface CardInfoMapper {
 
     /**
-     * Maps CardInfo entity entity to CardInfoResponseDto.
+     * Maps CardInfo entity to the form it is cached in. Only the id of the owner is taken, so a lazy owner is not
+     * loaded.
      * @param cardInfo entity object that needs to be mapped
-     * @return CardInfoResponseDto object
+     * @return CardInfoCacheEntry object
      */
-    CardInfoResponseDto toCardInfoResponseDto(CardInfo cardInfo);
+    @Mapping(target = "ownerId", source = "userId.id")
+    CardInfoCacheEntry toCardInfoCacheEntry(CardInfo cardInfo);
 
     /**
-     * Maps list of CardInfos to list of CardInfoResponseDto objects.
-     * @param cardInfos list of entity objects that need to be mapped
-     * @return list of CardInfoResponseDto objects
+     * Composes CardInfoResponseDto from a cached card and its owner.
+     * @param card cached card
+     * @param owner owner of the card, may be {@code null}
+     * @return CardInfoResponseDto object
      */
-    List<CardInfoResponseDto> toCardInfoResponseDtoList(List<CardInfo> cardInfos);
+    @Mapping(target = "id", source = "card.id")
+    @Mapping(target = "userId", source = "owner")
+    CardInfoResponseDto toCardInfoResponseDto(CardInfoCacheEntry card, UserResponseDto owner);
 
     /**
      * Maps CardInfoRequestDto to CardInfo entity.
      * @param cardInfoRequestDto DTO object that needs to be mapped
      * @return CardInfo entity
      */
+    @Mapping(target = "numberFingerprint", ignore = true)
     CardInfo toCardInfo(CardInfoRequestDto cardInfoRequestDto);
 
     /**
@@ -1,27 +1,68 @@
 package com.innowise.microservice.repository;
 
+import com.innowise.microservice.dto.CardInfoCacheEntry;
 import com.innowise.microservice.entity.CardInfo;
 import com.innowise.microservice.entity.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CardInfoRepository extends JpaRepository<CardInfo, Long> {
 
-    Optional<CardInfo> findByNumber(String number);
+    /**
+     * Selects cards straight into cache entries with the owner's id taken from the foreign key, so reads create no
+     * entities, no dirty-checking snapshots and no owner proxies.
+     */
+    String SELECT_CACHE_ENTRY = "SELECT new com.innowise.microservice.dto.CardInfoCacheEntry(c.id, c.userId.id, " +
+            "c.number, c.holder, c.expirationDate) FROM CardInfo c ";
+
+    @Transactional(readOnly = true)
+    @Query(SELECT_CACHE_ENTRY + "WHERE c.id = :id")
+    Optional<CardInfoCacheEntry> findEntryById(@Param("id") Long id);
+
+    @Transactional(readOnly = true)
+    @Query(SELECT_CACHE_ENTRY + "WHERE c.id IN :ids")
+    List<CardInfoCacheEntry> findEntriesByIds(@Param("ids") Collection<Long> ids);
+
+    @Transactional(readOnly = true)
+    @Query(SELECT_CACHE_ENTRY + "WHERE c.numberFingerprint = :numberFingerprint")
+    Optional<CardInfoCacheEntry> findEntryByNumberFingerprint(@Param("numberFingerprint") byte[] numberFingerprint);
+
+    Optional<CardInfo> findByNumberFingerprint(byte[] numberFingerprint);
+
+    @Query("SELECT c.id FROM CardInfo c WHERE c.id > :afterId ORDER BY c.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Limit limit);
+
+    @Transactional(readOnly = true)
+    @Query(SELECT_CACHE_ENTRY + "WHERE c.userId.id = :userId AND c.id > :afterId ORDER BY c.id")
+    List<CardInfoCacheEntry> findEntriesByOwnerAfter(@Param("userId") Long userId, @Param("afterId") Long afterId,
+                                                     Limit limit);
+
+    @Query("SELECT c FROM CardInfo c WHERE c.numberFingerprint IS NULL ORDER BY c.id")
+    List<CardInfo> findWithoutFingerprint(Limit limit);
+
+    Optional<CardInfo> findFirstByNumberFingerprintIsNotNullOrderByIdAsc();
+
+    @Transactional
+    @Query(value = "UPDATE card_info SET user_id = :userId, number = :number, number_fingerprint = " +
+            ":numberFingerprint, holder = :holder, expiration_date = :expirationDate WHERE id = :id RETURNING *",
+            nativeQuery = true)
+    Optional<CardInfo> updateCardInfo(@Param("id") Long id, @Param("userId") Long userId,
+                                      @Param("number") String number,
+                                      @Param("numberFingerprint") byte[] numberFingerprint,
+                                      @Param("holder") String holder,
+                                      @Param("expirationDate") LocalDate expirationDate);
 
-    @Modifying
     @Transactional
-    @Query(value = "UPDATE card_info SET user_id = :userId, number = :number, holder = :holder, expiration_date = " +
-            ":expirationDate WHERE id = :id", nativeQuery = true)
-    int updateCardInfo(@Param("id") Long id, @Param("userId") Long userId, @Param("number") String number,
-                       @Param("holder") String holder, @Param("expirationDate") LocalDate expirationDate);
+    @Query(value = "DELETE FROM card_info WHERE id = :id RETURNING user_id", nativeQuery = true)
+    Optional<Long> deleteCardInfo(@Param("id") Long id);
 }
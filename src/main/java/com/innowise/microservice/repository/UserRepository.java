@@ -1,24 +1,69 @@
 package com.innowise.microservice.repository;
 
+import com.innowise.microservice.dto.UserResponseDto;
 import com.innowise.microservice.entity.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
 
-    Optional<User> findByEmail(String email);
+    /**
+     * Selects users straight into response DTOs, so reads create no entities and no dirty-checking snapshots.
+     */
+    String SELECT_DTO = "SELECT new com.innowise.microservice.dto.UserResponseDto(u.id, u.name, u.surname, " +
+            "u.birthDate, u.email) FROM User u ";
 
-    @Modifying
+    @Transactional(readOnly = true)
+    @Query(SELECT_DTO + "WHERE u.id = :id")
+    Optional<UserResponseDto> findDtoById(@Param("id") Long id);
+
+    @Transactional(readOnly = true)
+    @Query(SELECT_DTO + "WHERE u.id IN :ids")
+    List<UserResponseDto> findDtosByIds(@Param("ids") Collection<Long> ids);
+
+    @Transactional(readOnly = true)
+    @Query(SELECT_DTO + "WHERE u.email = :email")
+    Optional<UserResponseDto> findDtoByEmail(@Param("email") String email);
+
+    @Transactional
+    @Query(value = "INSERT INTO users (id, name, surname, birth_date, email) " +
+            "VALUES (nextval('users_id_seq'), :name, :surname, :birthDate, :email) " +
+            "ON CONFLICT (email) DO NOTHING RETURNING *", nativeQuery = true)
+    Optional<User> insertIfEmailFree(@Param("name") String name, @Param("surname") String surname,
+                                     @Param("birthDate") LocalDate birthDate, @Param("email") String email);
+
+    /**
+     * Inserts the users given as parallel arrays with one statement, skipping those whose email is taken.
+     */
+    @Transactional
+    @Query(value = "INSERT INTO users (id, name, surname, birth_date, email) " +
+            "SELECT nextval('users_id_seq'), u.name, u.surname, CAST(u.birth_date AS date), u.email " +
+            "FROM unnest(CAST(:names AS text[]), CAST(:surnames AS text[]), CAST(:birthDates AS text[]), " +
+            "CAST(:emails AS text[])) AS u(name, surname, birth_date, email) " +
+            "ON CONFLICT (email) DO NOTHING RETURNING *", nativeQuery = true)
+    List<User> insertAllIfEmailsFree(@Param("names") String[] names, @Param("surnames") String[] surnames,
+                                     @Param("birthDates") String[] birthDates, @Param("emails") String[] emails);
+
+    @Transactional(readOnly = true)
+    @Query(SELECT_DTO + "WHERE u.id > :afterId ORDER BY u.id")
+    List<UserResponseDto> findPageAfter(@Param("afterId") Long afterId, Limit limit);
+
+    @Query("SELECT u.id FROM User u WHERE u.id > :afterId ORDER BY u.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Limit limit);
+
+    @Transactional
     @Query(value = "UPDATE users SET name = :name, surname = :surname, birth_date = :birthDate, email = :email " +
-            "WHERE id = :id", nativeQuery = true)
-    int updateUser(@Param("id") Long id, @Param("name") String name, @Param("surname") String surname
+            "WHERE id = :id RETURNING *", nativeQuery = true)
+    Optional<User> updateUser(@Param("id") Long id, @Param("name") String name, @Param("surname") String surname
             , @Param("birthDate") LocalDate birthDate, @Param("email") String email);
 }
@@ -0,0 +1,83 @@
+package com.innowise.microservice.service;
+
+import com.innowise.microservice.entity.CardInfo;
+import com.innowise.microservice.repository.CardInfoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fills in number fingerprints of cards that were written before the column existed.
+ * <p>
+ *     Runs before the application starts serving, one transaction per batch, so card lookups by number find all
+ *     cards. Once every card has a fingerprint this is a single query that finds nothing, and the next migration
+ *     run makes the column not null. Startup fails first if the stored fingerprints were made under another key.
+ * </p>
+ */
+@Component
+public class CardFingerprintBackfill implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(CardFingerprintBackfill.class);
+
+    private final CardInfoRepository repository;
+    private final CardNumberFingerprint fingerprints;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    public CardFingerprintBackfill(CardInfoRepository repository, CardNumberFingerprint fingerprints,
+                                   TransactionTemplate transactionTemplate,
+                                   @Value("${cards.fingerprint.backfill-batch-size:1000}") int batchSize) {
+        this.repository = repository;
+        this.fingerprints = fingerprints;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        checkKey();
+        long filled = backfill();
+        if (filled > 0) {
+            log.info("Computed number fingerprints of {} cards", filled);
+        }
+    }
+
+    /**
+     * Compares the stored fingerprint of one card with the fingerprint under the configured key.
+     * @throws IllegalStateException if the fingerprints were computed under another key
+     */
+    public void checkKey() {
+        repository.findFirstByNumberFingerprintIsNotNullOrderByIdAsc().ifPresent(card -> {
+            if (!Arrays.equals(card.getNumberFingerprint(), fingerprints.of(card.getNumber()))) {
+                throw new IllegalStateException("cards.fingerprint.key does not match the number fingerprints in "
+                        + "card_info, they have to be computed again under the new key");
+            }
+        });
+    }
+
+    /**
+     * Computes the missing fingerprints.
+     * @return number of updated cards
+     */
+    public long backfill() {
+        long filled = 0;
+        int batch;
+        do {
+            batch = transactionTemplate.execute(status -> {
+                List<CardInfo> cards = repository.findWithoutFingerprint(Limit.of(batchSize));
+                cards.forEach(card -> card.setNumberFingerprint(fingerprints.of(card.getNumber())));
+                return cards.size();
+            });
+            filled += batch;
+        } while (batch == batchSize);
+        return filled;
+    }
+}
@@ -0,0 +1,173 @@
+package com.innowise.microservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.innowise.microservice.dto.CardImportRow;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Reads cards of an import line by line and writes the valid ones as {@code COPY} CSV rows.
+ * <p>
+ *     Only one line and a small output buffer are held at a time, so imports of any size run in constant memory.
+ *     Each output row starts with the line number, so duplicates can be resolved in favour of the first one, and
+ *     carries the fingerprint of the number as a {@code bytea} hex literal.
+ * </p>
+ */
+class CardImportReader {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final String CSV_HEADER = "user_id,number,holder,expiration_date";
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final ObjectReader jsonReader;
+    private final Validator validator;
+    private final CardNumberFingerprint fingerprints;
+    private final CardImportService.Format format;
+    private final int maxErrors;
+    private final List<String> errors = new ArrayList<>();
+    private long received;
+    private long invalid;
+
+    /**
+     * @param maxErrors number of rejection reasons to keep, later ones are only counted
+     */
+    CardImportReader(ObjectMapper objectMapper, Validator validator, CardNumberFingerprint fingerprints,
+                     CardImportService.Format format, int maxErrors) {
+        this.jsonReader = objectMapper.readerFor(CardImportRow.class);
+        this.validator = validator;
+        this.fingerprints = fingerprints;
+        this.format = format;
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Reads all lines of the input.
+     * @param input UTF-8 NDJSON or CSV
+     * @param sink receiver of the CSV rows of valid cards, in chunks
+     */
+    void read(InputStream input, Sink sink) throws IOException, SQLException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        StringBuilder chunk = new StringBuilder(CHUNK_SIZE + 256);
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || lineNumber == 1 && format == CardImportService.Format.CSV
+                    && line.strip().equalsIgnoreCase(CSV_HEADER)) {
+                continue;
+            }
+            received++;
+            CardImportRow row = parse(line, lineNumber);
+            if (row == null) {
+                continue;
+            }
+            chunk.append(lineNumber).append(',')
+                    .append(row.getUserId()).append(',')
+                    .append(row.getNumber()).append(",\\x")
+                    .append(HEX.formatHex(fingerprints.of(row.getNumber()))).append(",\"")
+                    .append(row.getHolder()).append("\",")
+                    .append(row.getExpirationDate()).append('\n');
+            if (chunk.length() >= CHUNK_SIZE) {
+                write(chunk, sink);
+            }
+        }
+        write(chunk, sink);
+    }
+
+    /**
+     * @return number of rows read
+     */
+    long received() {
+        return received;
+    }
+
+    /**
+     * @return number of rows that were rejected before reaching the database
+     */
+    long invalid() {
+        return invalid;
+    }
+
+    /**
+     * @return reasons of the first rejected rows
+     */
+    List<String> errors() {
+        return errors;
+    }
+
+    private CardImportRow parse(String line, long lineNumber) {
+        CardImportRow row;
+        try {
+            row = format == CardImportService.Format.CSV ? parseCsv(line) : jsonReader.readValue(line);
+        } catch (JsonProcessingException | IllegalArgumentException | DateTimeParseException e) {
+            row = null;
+        }
+        if (row == null) {
+            reject(lineNumber, "cannot be parsed");
+            return null;
+        }
+        Set<ConstraintViolation<CardImportRow>> violations = validator.validate(row);
+        if (!violations.isEmpty()) {
+            reject(lineNumber, violations.stream()
+                    .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", ")));
+            return null;
+        }
+        return row;
+    }
+
+    private static CardImportRow parseCsv(String line) {
+        String[] fields = line.split(",", -1);
+        if (fields.length != 4) {
+            throw new IllegalArgumentException("Expected 4 fields, got " + fields.length);
+        }
+        CardImportRow row = new CardImportRow();
+        row.setUserId(Long.parseLong(fields[0].strip()));
+        row.setNumber(fields[1].strip());
+        row.setHolder(fields[2].strip());
+        row.setExpirationDate(LocalDate.parse(fields[3].strip()));
+        return row;
+    }
+
+    private void reject(long lineNumber, String reason) {
+        invalid++;
+        if (errors.size() < maxErrors) {
+            errors.add("line " + lineNumber + ": " + reason);
+        }
+    }
+
+    private static void write(StringBuilder chunk, Sink sink) throws SQLException {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        byte[] bytes = chunk.toString().getBytes(StandardCharsets.UTF_8);
+        sink.write(bytes, 0, bytes.length);
+        chunk.setLength(0);
+    }
+
+    /**
+     * Receiver of encoded rows, {@link org.postgresql.copy.CopyIn#writeToCopy(byte[], int, int)} in production.
+     */
+    @FunctionalInterface
+    interface Sink {
+
+        void write(byte[] bytes, int offset, int length) throws SQLException;
+    }
+}
@@ -0,0 +1,136 @@
+package com.innowise.microservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.innowise.microservice.cache.OwnerCardIds;
+import com.innowise.microservice.dto.CardImportResultDto;
+import jakarta.validation.Validator;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Service class for importing many cards at once.
+ * <p>
+ *     Valid rows are streamed with {@code COPY} into a temporary staging table, which is dropped on commit. One
+ *     statement then inserts the rows whose owner exists and whose number is not taken yet, keeping the first row of
+ *     every number. Rows whose number is taken concurrently are skipped by {@code ON CONFLICT} and counted as
+ *     duplicates too. Ids are taken from card_info_id_seq in the same blocks Hibernate uses, so imported cards do
+ *     not waste a block per row.
+ * </p>
+ * <p>
+ *     The statement returns one row per owner with the number of their new cards, so memory does not grow with the
+ *     size of the import. Owners of the imported cards lose their cached card ids. The new ids reach the id filters
+ *     of {@link com.innowise.microservice.cache.KnownIds} through the database change notifications, like ids
+ *     created outside the service.
+ * </p>
+ */
+@Service
+public class CardImportService {
+
+    /**
+     * Input formats of an import.
+     */
+    public enum Format {
+        /** One JSON object per line with userId, number, holder and expirationDate. */
+        NDJSON,
+        /** Lines of user_id,number,holder,expiration_date, the header line is optional. */
+        CSV
+    }
+
+    /**
+     * Has to match the allocation size of {@link com.innowise.microservice.entity.CardInfo#getId()}.
+     */
+    private static final int ID_BLOCK_SIZE = 50;
+    private static final int MAX_ERRORS = 100;
+
+    private static final String CREATE_STAGING_TABLE = "CREATE TEMP TABLE card_import (line BIGINT NOT NULL, " +
+            "user_id BIGINT NOT NULL, number VARCHAR(16) NOT NULL, number_fingerprint BYTEA NOT NULL, " +
+            "holder VARCHAR(101) NOT NULL, expiration_date DATE NOT NULL) ON COMMIT DROP";
+    private static final String COPY_STAGING_TABLE = "COPY card_import (line, user_id, number, number_fingerprint, " +
+            "holder, expiration_date) FROM STDIN WITH (FORMAT csv)";
+    private static final String MERGE_STAGING_TABLE = """
+            WITH accepted AS (
+                SELECT s.user_id, s.number, s.number_fingerprint, s.holder, s.expiration_date,
+                       row_number() OVER (ORDER BY s.line) - 1 AS position
+                FROM (SELECT DISTINCT ON (number_fingerprint) * FROM card_import
+                      ORDER BY number_fingerprint, line) s
+                WHERE EXISTS (SELECT 1 FROM users u WHERE u.id = s.user_id)
+                  AND NOT EXISTS (SELECT 1 FROM card_info c WHERE c.number_fingerprint = s.number_fingerprint)
+            ), blocks AS (
+                SELECT block - 1 AS block, nextval('card_info_id_seq') AS first_id
+                FROM generate_series(1, (SELECT (count(*) + ? - 1) / ? FROM accepted)) block
+            ), inserted AS (
+                INSERT INTO card_info (id, user_id, number, number_fingerprint, holder, expiration_date)
+                SELECT b.first_id + a.position % ?, a.user_id, a.number, a.number_fingerprint, a.holder,
+                       a.expiration_date
+                FROM accepted a JOIN blocks b ON b.block = a.position / ?
+                ON CONFLICT DO NOTHING
+                RETURNING user_id
+            )
+            SELECT user_id, count(*) AS cards FROM inserted GROUP BY user_id""";
+    private static final String COUNT_UNKNOWN_OWNERS = "SELECT count(*) FROM card_import s " +
+            "WHERE NOT EXISTS (SELECT 1 FROM users u WHERE u.id = s.user_id)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final CardNumberFingerprint fingerprints;
+    private final OwnerCardIds ownerCardIds;
+
+    public CardImportService(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, Validator validator,
+                             CardNumberFingerprint fingerprints, OwnerCardIds ownerCardIds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.fingerprints = fingerprints;
+        this.ownerCardIds = ownerCardIds;
+    }
+
+    /**
+     * Imports cards in one transaction. Rows that cannot be parsed, break the rules of a card, refer to a missing
+     * owner or repeat a taken number are skipped and counted, the others are created.
+     * @param input UTF-8 rows in the given format
+     * @param format format of the rows
+     * @return numbers of accepted and rejected rows
+     */
+    @Transactional
+    public CardImportResultDto importCards(InputStream input, Format format) {
+        CardImportReader reader = new CardImportReader(objectMapper, validator, fingerprints, format, MAX_ERRORS);
+        long staged = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(CREATE_STAGING_TABLE);
+            }
+            CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_STAGING_TABLE);
+            try {
+                reader.read(input, copyIn::writeToCopy);
+                return copyIn.endCopy();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            }
+        });
+
+        LongAdder created = new LongAdder();
+        jdbcTemplate.query(MERGE_STAGING_TABLE, (RowCallbackHandler) row -> {
+            ownerCardIds.evict(row.getLong("user_id"));
+            created.add(row.getLong("cards"));
+        }, ID_BLOCK_SIZE, ID_BLOCK_SIZE, ID_BLOCK_SIZE, ID_BLOCK_SIZE);
+        long unknownOwners = jdbcTemplate.queryForObject(COUNT_UNKNOWN_OWNERS, Long.class);
+
+        return new CardImportResultDto(reader.received(), created.sum(), reader.invalid(), unknownOwners,
+                staged - created.sum() - unknownOwners, reader.errors());
+    }
+}
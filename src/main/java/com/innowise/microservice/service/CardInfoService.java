@@ -1,27 +1,51 @@
 package com.innowise.microservice.service;
 
+import com.innowise.microservice.cache.BatchCacheLoader;
+import com.innowise.microservice.cache.CacheNames;
+import com.innowise.microservice.cache.KnownIds;
+import com.innowise.microservice.cache.ResponseBodyCache;
+import com.innowise.microservice.cache.OwnerCardIds;
+import com.innowise.microservice.cache.SingleFlight;
+import com.innowise.microservice.dto.CardInfoCacheEntry;
 import com.innowise.microservice.dto.CardInfoRequestDto;
 import com.innowise.microservice.dto.CardInfoResponseDto;
+import com.innowise.microservice.dto.CardPageDto;
+import com.innowise.microservice.dto.OwnerIdDto;
+import com.innowise.microservice.dto.UserResponseDto;
 import com.innowise.microservice.entity.CardInfo;
 import com.innowise.microservice.exception.CardNotFoundException;
 import com.innowise.microservice.exception.CardNumberExistsException;
+import com.innowise.microservice.exception.CardWithNumberNotFoundException;
 import com.innowise.microservice.exception.EmptyCardListException;
 import com.innowise.microservice.mapper.CardInfoMapper;
 import com.innowise.microservice.repository.CardInfoRepository;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.CachePut;
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * Service class for managing CardInfo entity.
  * <p>
- *     Provides CRUD operations: create, get card by id, get cards by ids, get card by email, update card by id,
- *     delete card by id.
+ *     Provides CRUD operations: create, get card by id, get cards by ids, get card by number, get cards by owner,
+ *     update card by id, delete card by id.
+ * </p>
+ * <p>
+ *     CARD_CACHE keeps cards as {@link CardInfoCacheEntry} with only the owner's id. Reads and writes return that
+ *     id alone as the owner unless the owner is expanded. Expanded owners are added with one batched lookup in
+ *     USER_CACHE however many cards are read, so a changed user is seen on all of their cards without evicting
+ *     them. Cards are never read as entities, so no lazy owner is left to be loaded while a response is written.
+ *     Every call composes new DTOs, callers may change them freely.
  * </p>
  */
 @Service
@@ -29,91 +53,329 @@ public class CardInfoService {
 
     private final CardInfoRepository repository;
     private final CardInfoMapper mapper;
+    private final CacheManager cacheManager;
+    private final SingleFlight singleFlight;
+    private final KnownIds knownIds;
+    private final UserService userService;
+    private final CardNumberFingerprint fingerprints;
+    private final OwnerCardIds ownerCardIds;
+    private final ResponseBodyCache responseBodies;
 
-    public CardInfoService(CardInfoRepository repository, CardInfoMapper mapper) {
+    public CardInfoService(CardInfoRepository repository, CardInfoMapper mapper, CacheManager cacheManager,
+                           SingleFlight singleFlight, KnownIds knownIds, UserService userService,
+                           CardNumberFingerprint fingerprints, OwnerCardIds ownerCardIds,
+                           ResponseBodyCache responseBodies) {
         this.repository = repository;
         this.mapper = mapper;
+        this.cacheManager = cacheManager;
+        this.singleFlight = singleFlight;
+        this.knownIds = knownIds;
+        this.userService = userService;
+        this.fingerprints = fingerprints;
+        this.ownerCardIds = ownerCardIds;
+        this.responseBodies = responseBodies;
     }
 
     /**
-     * Creates a new card in the database.
+     * Creates a new card in the database. The number is looked up by its fingerprint, which is indexed. A card with
+     * the same number created concurrently after the lookup is caught by the unique indexes.
      * @param cardDto DTO with new card's data
+     * @param expandOwner {@code true} to return the whole owner, {@code false} for only the owner's id
      * @return created card as DTO
      */
-    @CachePut(value = "CARD_CACHE", key = "#result.id()")
-    public CardInfoResponseDto createCard(CardInfoRequestDto cardDto) {
-        repository.findByNumber(cardDto.getNumber())
+    public CardInfoResponseDto createCard(CardInfoRequestDto cardDto, boolean expandOwner) {
+        byte[] fingerprint = fingerprints.of(cardDto.getNumber());
+        repository.findByNumberFingerprint(fingerprint)
                 .ifPresent(sameNumberCard -> {
                     throw new CardNumberExistsException(cardDto.getNumber());
                 });
         CardInfo card = mapper.toCardInfo(cardDto);
-        CardInfo savedCard = repository.save(card);
-        return mapper.toCardInfoResponseDto(savedCard);
+        card.setNumberFingerprint(fingerprint);
+        CardInfo savedCard;
+        try {
+            savedCard = repository.save(card);
+        } catch (DataIntegrityViolationException e) {
+            if (UniqueConstraints.isViolated(e, UniqueConstraints.CARD_NUMBER,
+                    UniqueConstraints.CARD_NUMBER_FINGERPRINT)) {
+                throw new CardNumberExistsException(cardDto.getNumber());
+            }
+            throw e;
+        }
+        knownIds.markExisting(CacheNames.CARD_CACHE, savedCard.getId());
+        CardInfoCacheEntry cachedCard = mapper.toCardInfoCacheEntry(savedCard);
+        cardCache().put(cachedCard.getId(), cachedCard);
+        ownerCardIds.evict(cachedCard.getOwnerId());
+        return compose(List.of(cachedCard), expandOwner).get(0);
     }
 
     /**
-     * Finds a card by id.
+     * Finds a card by id. Ids known to be missing are rejected without a database query, concurrent cache misses
+     * for the same id share one database load. The loader is passed to the cache, so hot entries can be reloaded
+     * in the background before they expire.
      * @param id card's unique identifier
+     * @param expandOwner {@code true} to return the whole owner, {@code false} for only the owner's id
      * @return card as DTO if found, empty if not found
      */
-    @Cacheable(value = "CARD_CACHE", key = "#id")
-    public CardInfoResponseDto getCardById(Long id) {
-        return repository.findById(id)
-                .map(mapper::toCardInfoResponseDto)
-                .orElseThrow(() -> new CardNotFoundException(id));
+    public CardInfoResponseDto getCardById(Long id, boolean expandOwner) {
+        return compose(List.of(findEntryById(id)), expandOwner).get(0);
+    }
+
+    /**
+     * Finds a card by id like {@link #getCardById(Long, boolean)} and returns it as JSON. The body is kept with the
+     * cached card and the cached owner, so it is only written again once one of them changes.
+     * @param id card's unique identifier
+     * @param expandOwner {@code true} to return the whole owner, {@code false} for only the owner's id
+     * @return card as JSON body
+     */
+    public ResponseBodyCache.Body getCardBodyById(Long id, boolean expandOwner) {
+        return body(findEntryById(id), expandOwner);
+    }
+
+    private CardInfoCacheEntry findEntryById(Long id) {
+        if (knownIds.isKnownMissing(CacheNames.CARD_CACHE, id)) {
+            throw new CardNotFoundException(id);
+        }
+        return BatchCacheLoader.load(cardCache(), id,
+                () -> singleFlight.load(CacheNames.CARD_CACHE, id, () -> repository.findEntryById(id)
+                        .orElseThrow(() -> {
+                            knownIds.markMissing(CacheNames.CARD_CACHE, id);
+                            return new CardNotFoundException(id);
+                        })));
+    }
+
+    /**
+     * Finds a card by number.
+     * <p>
+     *     CARD_NUMBER_CACHE keeps the id of the card with a number, keyed by the number's fingerprint so numbers do
+     *     not end up in Redis keys. The card itself is taken from CARD_CACHE. A pointer is trusted only if the cached
+     *     card still has this number, otherwise the card is loaded by fingerprint and both caches are refreshed.
+     *     Concurrent loads of the same number share one database query.
+     * </p>
+     * @param number card's number
+     * @param expandOwner {@code true} to return the whole owner, {@code false} for only the owner's id
+     * @return card as DTO
+     */
+    public CardInfoResponseDto getCardByNumber(String number, boolean expandOwner) {
+        return compose(List.of(findEntryByNumber(number)), expandOwner).get(0);
     }
 
     /**
-     * Finds cards by ids.
+     * Finds a card by number like {@link #getCardByNumber(String, boolean)} and returns it as JSON, kept like the
+     * bodies of {@link #getCardBodyById(Long, boolean)}.
+     * @param number card's number
+     * @param expandOwner {@code true} to return the whole owner, {@code false} for only the owner's id
+     * @return card as JSON body
+     */
+    public ResponseBodyCache.Body getCardBodyByNumber(String number, boolean expandOwner) {
+        return body(findEntryByNumber(number), expandOwner);
+    }
+
+    private CardInfoCacheEntry findEntryByNumber(String number) {
+        Cache numberCache = cacheManager.getCache(CacheNames.CARD_NUMBER_CACHE);
+        String key = fingerprints.hexOf(number);
+
+        Cache.ValueWrapper cachedId = numberCache.get(key);
+        if (cachedId != null && cachedId.get() instanceof Number id) {
+            CardInfoCacheEntry cachedCard = cardCache().get(id.longValue(), CardInfoCacheEntry.class);
+            if (cachedCard != null && number.equals(cachedCard.getNumber())) {
+                return cachedCard;
+            }
+        }
+
+        return singleFlight.load(CacheNames.CARD_NUMBER_CACHE, key, () -> {
+            CardInfoCacheEntry foundCard = repository.findEntryByNumberFingerprint(fingerprints.of(number))
+                    .orElseThrow(() -> new CardWithNumberNotFoundException(number));
+            cardCache().put(foundCard.getId(), foundCard);
+            numberCache.put(key, foundCard.getId());
+            return foundCard;
+        });
+    }
+
+    /**
+     * Finds cards by ids. Cards found in CARD_CACHE are not loaded from the database, the rest are loaded with one
+     * query and put into the cache.
      * @param ids list of cards' unique identifiers
-     * @return list of cards as DTOs
+     * @param expandOwner {@code true} to return the whole owners, {@code false} for only the owners' ids
+     * @return list of cards as DTOs in the order of the given ids
      */
-    public List<CardInfoResponseDto> getCardsByIds(Iterable<Long> ids) {
-        List<CardInfoResponseDto> cards = repository.findAllById(ids)
-                .stream()
-                .map(mapper::toCardInfoResponseDto)
-                .toList();
+    public List<CardInfoResponseDto> getCardsByIds(Iterable<Long> ids, boolean expandOwner) {
+        List<CardInfoCacheEntry> cards = BatchCacheLoader.loadAll(cardCache(), ids, repository::findEntriesByIds,
+                CardInfoCacheEntry::getId);
         if (cards.isEmpty()) {
             throw new EmptyCardListException(ids);
         }
-        return cards;
+        return compose(cards, expandOwner);
     }
 
     /**
-     * Updates a card by id.
+     * Finds a page of a user's cards in ascending order of their ids. Pages are found by the id of the last card of
+     * the previous page, which the index on card_info(user_id, id) reaches directly however deep the page is.
+     * <p>
+     *     Pages within the ids kept in OWNER_CARDS_CACHE are read from CARD_CACHE. The first page fills that cache
+     *     and the cached cards with one query, later pages past the cached ids are loaded from the database.
+     * </p>
+     * @param userId owner's unique identifier
+     * @param afterId id of the last card of the previous page, {@code null} for the first page
+     * @param limit maximum number of cards in the page
+     * @param expandOwner {@code true} to return the whole owner, {@code false} for only the owner's id
+     * @return the cards and the cursor of the next page
+     */
+    public CardPageDto getCardsByOwner(Long userId, Long afterId, int limit, boolean expandOwner) {
+        UserResponseDto owner = userService.getUserById(userId);
+        long after = afterId == null ? 0L : afterId;
+
+        List<CardInfoCacheEntry> cards = cachedOwnerCards(userId, after, limit + 1);
+        if (cards == null) {
+            int count = afterId == null && ownerCardIds.isEnabled() ? Math.max(limit, ownerCardIds.maxCards()) + 1
+                    : limit + 1;
+            cards = repository.findEntriesByOwnerAfter(userId, after, Limit.of(count));
+            cards.forEach(card -> cardCache().put(card.getId(), card));
+            if (afterId == null) {
+                ownerCardIds.put(userId, cards.stream()
+                        .limit(ownerCardIds.maxCards() + 1L)
+                        .mapToLong(CardInfoCacheEntry::getId)
+                        .toArray());
+            }
+        }
+
+        boolean hasMore = cards.size() > limit;
+        List<CardInfoResponseDto> page = new ArrayList<>(Math.min(cards.size(), limit));
+        for (CardInfoCacheEntry card : hasMore ? cards.subList(0, limit) : cards) {
+            page.add(expandOwner ? withOwner(card, owner) : withOwnerId(card));
+        }
+        return new CardPageDto(page, hasMore ? page.get(page.size() - 1).getId() : null);
+    }
+
+    /**
+     * Updates a card by id with one statement that returns the updated row. A taken number is reported by the
+     * unique index on card numbers or on their fingerprints, whichever is checked first.
      * @param id card's unique identifier
      * @param newCardDto CardInfoDto that contains current data
+     * @param expandOwner {@code true} to return the whole owner, {@code false} for only the owner's id
+     * @return updated card as DTO
      */
-    @CachePut(value = "CARD_CACHE", key = "#id")
     @Transactional
-    public CardInfoResponseDto updateCardById(Long id, CardInfoRequestDto newCardDto) {
-        repository.findByNumber(newCardDto.getNumber())
-                .ifPresent(sameNumberCard -> {
-                    if (!sameNumberCard.getId().equals(id)) {
-                        throw new CardNumberExistsException(newCardDto.getNumber());
-                    }
-                });
-        int updated = repository.updateCardInfo(id, newCardDto.getUserId().getId(), newCardDto.getNumber(),
-                newCardDto.getHolder(), newCardDto.getExpirationDate());
-        if (updated == 0) {
-            throw new CardNotFoundException(id);
+    public CardInfoResponseDto updateCardById(Long id, CardInfoRequestDto newCardDto, boolean expandOwner) {
+        CardInfoCacheEntry card;
+        try {
+            card = repository.updateCardInfo(id, newCardDto.getUserId().getId(), newCardDto.getNumber(),
+                            fingerprints.of(newCardDto.getNumber()), newCardDto.getHolder(),
+                            newCardDto.getExpirationDate())
+                    .map(mapper::toCardInfoCacheEntry)
+                    .orElseThrow(() -> new CardNotFoundException(id));
+        } catch (DataIntegrityViolationException e) {
+            if (UniqueConstraints.isViolated(e, UniqueConstraints.CARD_NUMBER,
+                    UniqueConstraints.CARD_NUMBER_FINGERPRINT)) {
+                throw new CardNumberExistsException(newCardDto.getNumber());
+            }
+            throw e;
         }
-        return repository.findById(id)
-                .map(mapper::toCardInfoResponseDto)
-                .orElseThrow(() -> new CardNotFoundException(id));
+        cardCache().put(id, card);
+        ownerCardIds.evict(card.getOwnerId());
+        return compose(List.of(card), expandOwner).get(0);
     }
 
     /**
-     * Deletes a card by id.
+     * Deletes a card by id with one statement that returns the owner, whose cached card ids are dropped.
      * @param id card's id
      */
     @CacheEvict(value = "CARD_CACHE", key = "#id")
     @Transactional
     public void deleteCardById(Long id) {
-        try {
-            repository.deleteById(id);
-        } catch (EmptyResultDataAccessException e) {
-            throw new CardNotFoundException(id);
+        Long ownerId = repository.deleteCardInfo(id)
+                .orElseThrow(() -> new CardNotFoundException(id));
+        ownerCardIds.evict(ownerId);
+        knownIds.markMissing(CacheNames.CARD_CACHE, id);
+    }
+
+    /**
+     * Returns up to {@code count} cards of the owner after the given id using OWNER_CARDS_CACHE and CARD_CACHE, or
+     * {@code null} if the cached ids do not cover them. A card that was deleted or moved to another owner since the
+     * ids were cached drops the entry.
+     */
+    private List<CardInfoCacheEntry> cachedOwnerCards(Long userId, long after, int count) {
+        long[] ids = ownerCardIds.get(userId);
+        if (ids == null) {
+            return null;
+        }
+        int position = Arrays.binarySearch(ids, after);
+        int start = position >= 0 ? position + 1 : -position - 1;
+        if (start + count > ids.length && !ownerCardIds.isComplete(ids)) {
+            return null;
+        }
+        List<Long> pageIds = Arrays.stream(ids, start, Math.min(start + count, ids.length))
+                .boxed()
+                .toList();
+        List<CardInfoCacheEntry> cards = BatchCacheLoader.loadAll(cardCache(), pageIds, repository::findEntriesByIds,
+                CardInfoCacheEntry::getId);
+        if (cards.size() != pageIds.size() || cards.stream().anyMatch(card -> !userId.equals(card.getOwnerId()))) {
+            ownerCardIds.evict(userId);
+            return null;
+        }
+        return cards;
+    }
+
+    private Cache cardCache() {
+        return cacheManager.getCache(CacheNames.CARD_CACHE);
+    }
+
+    private List<CardInfoResponseDto> compose(List<CardInfoCacheEntry> cards, boolean expandOwner) {
+        if (expandOwner) {
+            return withOwners(cards);
+        }
+        List<CardInfoResponseDto> composed = new ArrayList<>(cards.size());
+        for (CardInfoCacheEntry card : cards) {
+            composed.add(withOwnerId(card));
         }
+        return composed;
+    }
+
+    /**
+     * Adds the owners to cached cards, loading all owners that are not in USER_CACHE with one query.
+     */
+    private List<CardInfoResponseDto> withOwners(List<CardInfoCacheEntry> cards) {
+        Map<Long, UserResponseDto> owners = new HashMap<>();
+        List<Long> ownerIds = cards.stream()
+                .map(CardInfoCacheEntry::getOwnerId)
+                .filter(Objects::nonNull)
+                .toList();
+        if (!ownerIds.isEmpty()) {
+            for (UserResponseDto owner : userService.findUsersByIds(ownerIds)) {
+                owners.put(owner.getId(), owner);
+            }
+        }
+        List<CardInfoResponseDto> composed = new ArrayList<>(cards.size());
+        for (CardInfoCacheEntry card : cards) {
+            composed.add(withOwner(card, owners.get(card.getOwnerId())));
+        }
+        return composed;
+    }
+
+    /**
+     * Returns the JSON body of a cached card. A card whose owner is missing is written without keeping the body.
+     */
+    private ResponseBodyCache.Body body(CardInfoCacheEntry card, boolean expandOwner) {
+        if (!expandOwner) {
+            return responseBodies.get(card, null, () -> withOwnerId(card));
+        }
+        List<UserResponseDto> owners = card.getOwnerId() == null ? List.of()
+                : userService.findUsersByIds(List.of(card.getOwnerId()));
+        if (owners.isEmpty()) {
+            return responseBodies.write(withOwner(card, null));
+        }
+        UserResponseDto owner = owners.get(0);
+        return responseBodies.get(card, owner, () -> withOwner(card, owner));
+    }
+
+    private CardInfoResponseDto withOwner(CardInfoCacheEntry card, UserResponseDto owner) {
+        return mapper.toCardInfoResponseDto(card, owner);
+    }
+
+    /**
+     * Composes a card whose owner carries only the id, which needs nothing but the cached card.
+     */
+    private CardInfoResponseDto withOwnerId(CardInfoCacheEntry card) {
+        return mapper.toCardInfoResponseDto(card, card.getOwnerId() == null ? null
+                : new OwnerIdDto(card.getOwnerId()));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,57 @@
+package com.innowise.microservice.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.HexFormat;
+
+/**
+ * Computes the fingerprint card numbers are indexed and looked up by.
+ * <p>
+ *     The fingerprint is the 32-byte HMAC-SHA256 of the number under {@code cards.fingerprint.key}. Unlike the
+ *     number it has a fixed width, so the unique index stays compact, and without the key it cannot be matched to a
+ *     number by trying all of them. The key has no default, and {@link CardFingerprintBackfill} refuses to start
+ *     with a key that does not match the stored fingerprints, so a lost or changed key cannot make lookups by
+ *     number find nothing unnoticed.
+ * </p>
+ */
+@Component
+public class CardNumberFingerprint {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final ThreadLocal<Mac> macs;
+
+    public CardNumberFingerprint(@Value("${cards.fingerprint.key}") String key) {
+        SecretKeySpec secretKey = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(secretKey);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Cannot create " + ALGORITHM, e);
+            }
+        });
+    }
+
+    /**
+     * @param number card number
+     * @return 32-byte fingerprint of the number
+     */
+    public byte[] of(String number) {
+        return macs.get().doFinal(number.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * @param number card number
+     * @return fingerprint of the number as lowercase hex, for cache keys
+     */
+    public String hexOf(String number) {
+        return HexFormat.of().formatHex(of(number));
+    }
+}
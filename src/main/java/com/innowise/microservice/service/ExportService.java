@@ -0,0 +1,111 @@
+package com.innowise.microservice.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Service class for exporting whole tables as NDJSON.
+ * <p>
+ *     Rows are read through a server-side cursor, {@code export.fetch-size} at a time, and every row is written to
+ *     the output as soon as it is read. No entities, DTOs or persistence context are involved, so memory use does not
+ *     grow with the table. Dates are written as the database returns them, which is the ISO format the API uses.
+ * </p>
+ */
+@Service
+public class ExportService {
+
+    private static final String SELECT_USERS = "SELECT id, name, surname, birth_date, email FROM users ORDER BY id";
+    private static final String SELECT_CARDS = "SELECT id, user_id, number, holder, expiration_date FROM card_info " +
+            "ORDER BY id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+
+    public ExportService(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+                         @Value("${export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Writes all users, one JSON object per line with the fields of a user response.
+     * @param output stream to write to, left open
+     */
+    @Transactional(readOnly = true)
+    public void exportUsers(OutputStream output) throws IOException {
+        export(output, SELECT_USERS, (generator, row) -> {
+            generator.writeNumberField("id", row.getLong(1));
+            generator.writeStringField("name", row.getString(2));
+            generator.writeStringField("surname", row.getString(3));
+            generator.writeStringField("birthDate", row.getString(4));
+            generator.writeStringField("email", row.getString(5));
+        });
+    }
+
+    /**
+     * Writes all cards, one JSON object per line with the owner's id as userId, so the lines can be imported as
+     * they are.
+     * @param output stream to write to, left open
+     */
+    @Transactional(readOnly = true)
+    public void exportCards(OutputStream output) throws IOException {
+        export(output, SELECT_CARDS, (generator, row) -> {
+            generator.writeNumberField("id", row.getLong(1));
+            generator.writeNumberField("userId", row.getLong(2));
+            generator.writeStringField("number", row.getString(3));
+            generator.writeStringField("holder", row.getString(4));
+            generator.writeStringField("expirationDate", row.getString(5));
+        });
+    }
+
+    /**
+     * Runs the query with a bounded fetch size, which keeps a cursor open on the server as long as the statement
+     * runs inside a transaction, and writes every row as one line.
+     */
+    private void export(OutputStream output, String sql, RowWriter rowWriter) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            RowCallbackHandler handler = row -> {
+                try {
+                    generator.writeStartObject();
+                    rowWriter.write(generator, row);
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            };
+            try {
+                jdbcTemplate.query(connection -> {
+                    PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                            ResultSet.CONCUR_READ_ONLY);
+                    statement.setFetchSize(fetchSize);
+                    return statement;
+                }, handler);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+
+        void write(JsonGenerator generator, ResultSet row) throws IOException, SQLException;
+    }
+}
@@ -0,0 +1,46 @@
+package com.innowise.microservice.service;
+
+import com.innowise.microservice.exception.InvalidCursorException;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Opaque tokens of keyset pages. A token carries the id of the last row of a page, so clients cannot build them
+ * from offsets and the position can change its encoding later without breaking the API.
+ */
+final class PageCursor {
+
+    private static final byte VERSION = 1;
+    private static final int LENGTH = 1 + Long.BYTES;
+
+    private PageCursor() {
+    }
+
+    /**
+     * @param lastId id of the last row of a page
+     * @return token of the page after it
+     */
+    static String encode(long lastId) {
+        byte[] bytes = ByteBuffer.allocate(LENGTH).put(VERSION).putLong(lastId).array();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * @param cursor token from {@link #encode(long)}
+     * @return id of the last row of the previous page
+     * @throws InvalidCursorException if the token was not made by {@link #encode(long)}
+     */
+    static long decode(String cursor) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException(cursor);
+        }
+        if (bytes.length != LENGTH || bytes[0] != VERSION) {
+            throw new InvalidCursorException(cursor);
+        }
+        return ByteBuffer.wrap(bytes, 1, Long.BYTES).getLong();
+    }
+}
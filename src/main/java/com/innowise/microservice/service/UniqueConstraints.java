@@ -0,0 +1,29 @@
+package com.innowise.microservice.service;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.Arrays;
+
+/**
+ * Names of the unique indexes that writes rely on instead of checking for duplicates first.
+ */
+final class UniqueConstraints {
+
+    static final String USER_EMAIL = "uc_users_email";
+    static final String CARD_NUMBER = "uc_card_info_number";
+    static final String CARD_NUMBER_FINGERPRINT = "uc_card_info_number_fingerprint";
+
+    private UniqueConstraints() {
+    }
+
+    /**
+     * @param e exception thrown by a write
+     * @param constraints names of unique indexes that guard the same value
+     * @return {@code true} if the write failed because it would have broken one of the given indexes
+     */
+    static boolean isViolated(DataIntegrityViolationException e, String... constraints) {
+        return e.getCause() instanceof ConstraintViolationException violation
+                && Arrays.asList(constraints).contains(violation.getConstraintName());
+    }
+}
@@ -1,5 +1,11 @@
 package com.innowise.microservice.service;
 
+import com.innowise.microservice.cache.BatchCacheLoader;
+import com.innowise.microservice.cache.CacheNames;
+import com.innowise.microservice.cache.KnownIds;
+import com.innowise.microservice.cache.SingleFlight;
+import com.innowise.microservice.dto.UserBatchResultDto;
+import com.innowise.microservice.dto.UserPageDto;
 import com.innowise.microservice.dto.UserRequestDto;
 import com.innowise.microservice.dto.UserResponseDto;
 import com.innowise.microservice.entity.User;
@@ -9,20 +15,33 @@ import com.innowise.microservice.exception.UserNotFoundException;
 import com.innowise.microservice.exception.UserWithEmailNotFoundException;
 import com.innowise.microservice.mapper.UserMapper;
 import com.innowise.microservice.repository.UserRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Service class for managing User entity.
  * <p>
- *     Provides CRUD operations: create, get user by id, get users by ids, get user by email, update user by id,
- *     delete user by id.
+ *     Provides CRUD operations: create, create users in a batch, get user by id, get users by ids, get user by
+ *     email, list users page by page, update user by id, delete user by id.
  * </p>
  */
 @Service
@@ -30,105 +49,269 @@ public class UserService {
 
     private final UserRepository repository;
     private final UserMapper mapper;
+    private final CacheManager cacheManager;
+    private final SingleFlight singleFlight;
+    private final KnownIds knownIds;
+    private final Validator validator;
 
-    public UserService(UserRepository repository, UserMapper mapper) {
+    public UserService(UserRepository repository, UserMapper mapper, CacheManager cacheManager,
+                       SingleFlight singleFlight, KnownIds knownIds, Validator validator) {
         this.repository = repository;
         this.mapper = mapper;
+        this.cacheManager = cacheManager;
+        this.singleFlight = singleFlight;
+        this.knownIds = knownIds;
+        this.validator = validator;
     }
 
     /**
-     * Creates a new user in the database.
+     * Creates a new user in the database. The email is checked by the insert itself, so two concurrent requests
+     * with the same email cannot both succeed and the database is asked only once.
      * @param userDto DTO with new user's data
      * @return created user as DTO
      */
-    @CachePut(value = "USER_CACHE", key = "#result.id()")
+    @CachePut(value = "USER_CACHE", key = "#result.id")
     public UserResponseDto createUser(UserRequestDto userDto) {
-        repository.findByEmail(userDto.getEmail())
-                .ifPresent(sameEmailUser -> {
-                    throw new UserEmailExistsException(userDto.getEmail());
-                });
-        User user = mapper.toUser(userDto);
-        User savedUser = repository.save(user);
+        User savedUser = repository.insertIfEmailFree(userDto.getName(), userDto.getSurname(),
+                        userDto.getBirthDate(), userDto.getEmail())
+                .orElseThrow(() -> new UserEmailExistsException(userDto.getEmail()));
+        knownIds.markExisting(CacheNames.USER_CACHE, savedUser.getId());
         return mapper.toUserResponseDto(savedUser);
     }
 
     /**
-     * Finds a user by id.
+     * Creates users in one transaction, reporting the outcome of each of them.
+     * <p>
+     *     Missing and invalid users and users whose email repeats an earlier one of the batch are rejected first.
+     *     Validation covers the NOT NULL and length limits of the table, so no user can fail the insert for the
+     *     others. The remaining users are inserted with one statement that skips emails already taken, so a user
+     *     whose email was taken before or concurrently with the batch is rejected alone instead of failing the
+     *     transaction.
+     *     Created users are put into USER_CACHE, which sends all cache writes in one pipeline after the commit.
+     * </p>
+     * @param userDtos DTOs with new users' data
+     * @return one result per given user, in the same order
+     */
+    @Transactional
+    public List<UserBatchResultDto> createUsers(List<UserRequestDto> userDtos) {
+        UserBatchResultDto[] results = new UserBatchResultDto[userDtos.size()];
+        Map<String, Integer> indexesByEmail = new HashMap<>();
+        for (int i = 0; i < userDtos.size(); i++) {
+            UserRequestDto userDto = userDtos.get(i);
+            if (userDto == null) {
+                results[i] = rejected(i, HttpStatus.BAD_REQUEST, "user must not be null");
+                continue;
+            }
+            Set<ConstraintViolation<UserRequestDto>> violations = validator.validate(userDto);
+            if (!violations.isEmpty()) {
+                results[i] = rejected(i, HttpStatus.BAD_REQUEST, describe(violations));
+            } else if (indexesByEmail.putIfAbsent(userDto.getEmail(), i) != null) {
+                results[i] = rejected(i, HttpStatus.CONFLICT,
+                        new UserEmailExistsException(userDto.getEmail()).getMessage());
+            }
+        }
+        if (indexesByEmail.isEmpty()) {
+            return Arrays.asList(results);
+        }
+
+        int size = indexesByEmail.size();
+        String[] names = new String[size];
+        String[] surnames = new String[size];
+        String[] birthDates = new String[size];
+        String[] emails = new String[size];
+        int row = 0;
+        for (int index : indexesByEmail.values()) {
+            UserRequestDto userDto = userDtos.get(index);
+            names[row] = userDto.getName();
+            surnames[row] = userDto.getSurname();
+            birthDates[row] = userDto.getBirthDate().toString();
+            emails[row] = userDto.getEmail();
+            row++;
+        }
+        Cache userCache = cacheManager.getCache(CacheNames.USER_CACHE);
+        List<Long> createdIds = new ArrayList<>(size);
+        for (User savedUser : repository.insertAllIfEmailsFree(names, surnames, birthDates, emails)) {
+            UserResponseDto user = mapper.toUserResponseDto(savedUser);
+            userCache.put(user.getId(), user);
+            createdIds.add(user.getId());
+            int index = indexesByEmail.remove(savedUser.getEmail());
+            results[index] = new UserBatchResultDto(index, HttpStatus.CREATED.value(), user, null);
+        }
+        knownIds.markAllExisting(CacheNames.USER_CACHE, createdIds);
+        indexesByEmail.forEach((email, index) -> results[index] = rejected(index, HttpStatus.CONFLICT,
+                new UserEmailExistsException(email).getMessage()));
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Finds a user by id. Ids known to be missing are rejected without a database query, concurrent cache misses
+     * for the same id share one database load. The loader is passed to the cache, so hot entries can be reloaded
+     * in the background before they expire.
      * @param id user's unique identifier
      * @return user as DTO if found, empty if not found
      */
-    @Cacheable(value = "USER_CACHE", key = "#id")
+    @Cacheable(value = "USER_CACHE", key = "#id", sync = true)
     public UserResponseDto getUserById(Long id) {
-        return repository.findById(id)
-                .map(mapper::toUserResponseDto)
-                .orElseThrow(() -> new UserNotFoundException(id));
+        if (knownIds.isKnownMissing(CacheNames.USER_CACHE, id)) {
+            throw new UserNotFoundException(id);
+        }
+        return singleFlight.load(CacheNames.USER_CACHE, id, () -> repository.findDtoById(id)
+                .orElseThrow(() -> {
+                    knownIds.markMissing(CacheNames.USER_CACHE, id);
+                    return new UserNotFoundException(id);
+                }));
     }
 
     /**
-     * Finds users by ids.
+     * Finds users by ids. Users found in USER_CACHE are not loaded from the database, the rest are loaded with one
+     * query and put into the cache.
      * @param ids list of users' unique identifiers
-     * @return list of users as DTOs
+     * @return list of users as DTOs in the order of the given ids
      */
     public List<UserResponseDto> getUsersByIds(Iterable<Long> ids) {
-        List<UserResponseDto> users = repository.findAllById(ids)
-                .stream()
-                .map(mapper::toUserResponseDto)
-                .toList();
+        List<UserResponseDto> users = findUsersByIds(ids);
         if (users.isEmpty()) {
             throw new EmptyUserListException(ids);
         }
         return users;
     }
 
+    /**
+     * Finds users by ids like {@link #getUsersByIds(Iterable)}, but returns an empty list if none of them exist.
+     * @param ids list of users' unique identifiers
+     * @return list of found users as DTOs in the order of the given ids
+     */
+    public List<UserResponseDto> findUsersByIds(Iterable<Long> ids) {
+        return BatchCacheLoader.loadAll(cacheManager.getCache(CacheNames.USER_CACHE), ids,
+                repository::findDtosByIds, UserResponseDto::getId);
+    }
+
+    /**
+     * Lists users in ascending order of their ids. A page starts after the id carried by the cursor, which the
+     * primary key index reaches directly, so deep pages cost as much as the first one. Rows are selected straight
+     * into DTOs without loading entities and are not put into USER_CACHE, so a full scan does not push out hot
+     * users.
+     * @param cursor token of the page from the previous response, {@code null} for the first page
+     * @param limit maximum number of users in the page
+     * @return the users and the token of the next page
+     */
+    @Transactional(readOnly = true)
+    public UserPageDto listUsers(String cursor, int limit) {
+        long afterId = cursor == null ? 0L : PageCursor.decode(cursor);
+        List<UserResponseDto> users = repository.findPageAfter(afterId, Limit.of(limit + 1));
+        if (users.size() <= limit) {
+            return new UserPageDto(users, null);
+        }
+        List<UserResponseDto> page = users.subList(0, limit);
+        return new UserPageDto(page, PageCursor.encode(page.get(limit - 1).getId()));
+    }
+
     /**
      * Finds a user by email.
+     * <p>
+     *     USER_EMAIL_CACHE only keeps the id of the user with the given email, the user itself is taken from
+     *     USER_CACHE. A pointer is trusted only if the cached user still has this email, otherwise the user is
+     *     loaded from the database and both caches are refreshed. Concurrent loads of the same email share one
+     *     database query.
+     * </p>
      * @param email user's email
      * @return user as DTO if found, empty if not found
      */
-    @Cacheable(value = "USER_EMAIL_CACHE", key = "#email")
     public UserResponseDto getUserByEmail(String email) {
-        return repository.findByEmail(email)
-                .map(mapper::toUserResponseDto)
-                .orElseThrow(() -> new UserWithEmailNotFoundException(email));
+        Cache userCache = cacheManager.getCache(CacheNames.USER_CACHE);
+        Cache emailCache = cacheManager.getCache(CacheNames.USER_EMAIL_CACHE);
+
+        Long cachedId = getCachedId(emailCache, email);
+        if (cachedId != null) {
+            UserResponseDto cachedUser = userCache.get(cachedId, UserResponseDto.class);
+            if (cachedUser != null && email.equals(cachedUser.getEmail())) {
+                return cachedUser;
+            }
+        }
+
+        return singleFlight.load(CacheNames.USER_EMAIL_CACHE, email, () -> {
+            UserResponseDto user = repository.findDtoByEmail(email)
+                    .orElseThrow(() -> new UserWithEmailNotFoundException(email));
+            userCache.put(user.getId(), user);
+            emailCache.put(email, user.getId());
+            return user;
+        });
     }
 
     /**
-     * Updates a user by id.
+     * Updates a user by id with one statement that returns the updated row. A taken email is reported by the
+     * unique index on emails.
      * @param id user's unique identifier
      * @param newUserDto UserDto that contains current data
      * @return Updated user.
      */
     @CachePut(value = "USER_CACHE", key = "#id")
-    @CacheEvict(value = "USER_EMAIL_CACHE", allEntries = true)
     @Transactional
     public UserResponseDto updateUserById(Long id, UserRequestDto newUserDto) {
-        repository.findByEmail(newUserDto.getEmail())
-                .ifPresent(sameEmailUser -> {
-                    if (!sameEmailUser.getId().equals(id)) {
-                        throw new UserEmailExistsException(newUserDto.getEmail());
-                    }
-                });
-        int updated = repository.updateUser(id, newUserDto.getName(), newUserDto.getSurname(),
-                newUserDto.getBirthDate(), newUserDto.getEmail());
-        if (updated == 0) {
-            throw new UserNotFoundException(id);
+        evictEmailPointers(getCachedEmail(id), newUserDto.getEmail());
+        try {
+            return repository.updateUser(id, newUserDto.getName(), newUserDto.getSurname(),
+                            newUserDto.getBirthDate(), newUserDto.getEmail())
+                    .map(mapper::toUserResponseDto)
+                    .orElseThrow(() -> new UserNotFoundException(id));
+        } catch (DataIntegrityViolationException e) {
+            if (UniqueConstraints.isViolated(e, UniqueConstraints.USER_EMAIL)) {
+                throw new UserEmailExistsException(newUserDto.getEmail());
+            }
+            throw e;
         }
-        return repository.findById(id)
-                .map(mapper::toUserResponseDto)
-                .orElseThrow(() -> new UserNotFoundException(id));
     }
 
     /**
      * Deletes a user by id.
      * @param id user's id
      */
-    @CacheEvict(value = {"USER_CACHE", "USER_EMAIL_CACHE"}, key = "#id", allEntries = true)
+    @CacheEvict(value = "USER_CACHE", key = "#id")
     @Transactional
     public void deleteUserById(Long id) {
+        evictEmailPointers(getCachedEmail(id));
         try {
             repository.deleteById(id);
         } catch (EmptyResultDataAccessException e) {
             throw new UserNotFoundException(id);
         }
+        knownIds.markMissing(CacheNames.USER_CACHE, id);
+    }
+
+    private static UserBatchResultDto rejected(int index, HttpStatus status, String message) {
+        return new UserBatchResultDto(index, status.value(), null, message);
+    }
+
+    private static String describe(Set<ConstraintViolation<UserRequestDto>> violations) {
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * Returns the email of the user as it is currently cached. Pointers to emails that are not cached are
+     * left in place, {@link #getUserByEmail(String)} ignores them once the user's email changes.
+     */
+    private String getCachedEmail(Long id) {
+        UserResponseDto cachedUser = cacheManager.getCache(CacheNames.USER_CACHE).get(id, UserResponseDto.class);
+        return cachedUser == null ? null : cachedUser.getEmail();
+    }
+
+    private void evictEmailPointers(String... emails) {
+        Cache emailCache = cacheManager.getCache(CacheNames.USER_EMAIL_CACHE);
+        for (String email : emails) {
+            if (email != null) {
+                emailCache.evict(email);
+            }
+        }
+    }
+
+    /**
+     * Reads the id pointer of an email. JSON serialization may bring small ids back as {@code Integer}.
+     */
+    private static Long getCachedId(Cache emailCache, String email) {
+        Cache.ValueWrapper cachedId = emailCache.get(email);
+        return cachedId != null && cachedId.get() instanceof Number id ? id.longValue() : null;
     }
-}
\ No newline at end of file
+}
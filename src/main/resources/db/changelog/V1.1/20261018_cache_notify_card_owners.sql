@@ -0,0 +1,25 @@
+--liquibase formatted sql
+
+--changeset LizavetaLiakh:usr1_cache_notify_card_owners splitStatements:false
+CREATE OR REPLACE FUNCTION notify_cache_change() RETURNS trigger AS $$
+DECLARE
+    payload TEXT;
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        payload := TG_TABLE_NAME || ':' || OLD.id;
+    ELSE
+        payload := TG_TABLE_NAME || ':' || NEW.id;
+    END IF;
+    IF TG_TABLE_NAME = 'card_info' THEN
+        IF TG_OP = 'INSERT' THEN
+            payload := payload || ':' || NEW.user_id;
+        ELSIF TG_OP = 'DELETE' OR OLD.user_id = NEW.user_id THEN
+            payload := payload || ':' || OLD.user_id;
+        ELSE
+            payload := payload || ':' || OLD.user_id || ':' || NEW.user_id;
+        END IF;
+    END IF;
+    PERFORM pg_notify('cache_invalidation', payload);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,24 @@
+--liquibase formatted sql
+
+--changeset LizavetaLiakh:usr1_cache_notify_triggers splitStatements:false
+CREATE OR REPLACE FUNCTION notify_cache_change() RETURNS trigger AS $$
+DECLARE
+    changed_id BIGINT;
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        changed_id := OLD.id;
+    ELSE
+        changed_id := NEW.id;
+    END IF;
+    PERFORM pg_notify('cache_invalidation', TG_TABLE_NAME || ':' || changed_id);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_users_cache_notify
+    AFTER INSERT OR UPDATE OR DELETE ON users
+    FOR EACH ROW EXECUTE FUNCTION notify_cache_change();
+
+CREATE TRIGGER trg_card_info_cache_notify
+    AFTER INSERT OR UPDATE OR DELETE ON card_info
+    FOR EACH ROW EXECUTE FUNCTION notify_cache_change();
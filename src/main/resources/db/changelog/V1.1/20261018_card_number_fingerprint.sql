@@ -0,0 +1,5 @@
+--liquibase formatted sql
+
+--changeset LizavetaLiakh:usr1_card_number_fingerprint
+ALTER TABLE card_info ADD COLUMN number_fingerprint BYTEA;
+CREATE UNIQUE INDEX uc_card_info_number_fingerprint ON card_info(number_fingerprint);
@@ -0,0 +1,4 @@
+--liquibase formatted sql
+
+--changeset LizavetaLiakh:usr1_card_number_fingerprint_not_null
+ALTER TABLE card_info ALTER COLUMN number_fingerprint SET NOT NULL;
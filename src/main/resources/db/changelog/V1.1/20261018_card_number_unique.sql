@@ -0,0 +1,4 @@
+--liquibase formatted sql
+
+--changeset LizavetaLiakh:usr1_card_number_unique
+CREATE UNIQUE INDEX uc_card_info_number ON card_info(number);
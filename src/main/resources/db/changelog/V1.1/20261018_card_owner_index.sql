@@ -0,0 +1,4 @@
+--liquibase formatted sql
+
+--changeset LizavetaLiakh:usr1_card_owner_index
+CREATE INDEX idx_card_info_user_id ON card_info(user_id, id);
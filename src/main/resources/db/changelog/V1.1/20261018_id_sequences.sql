@@ -0,0 +1,10 @@
+--liquibase formatted sql
+
+--changeset LizavetaLiakh:usr1_id_sequences
+CREATE SEQUENCE users_id_seq INCREMENT BY 50 OWNED BY users.id;
+SELECT setval('users_id_seq', COALESCE(MAX(id), 0) + 1, false) FROM users;
+ALTER TABLE users ALTER COLUMN id SET DEFAULT nextval('users_id_seq');
+
+CREATE SEQUENCE card_info_id_seq INCREMENT BY 50 OWNED BY card_info.id;
+SELECT setval('card_info_id_seq', COALESCE(MAX(id), 0) + 1, false) FROM card_info;
+ALTER TABLE card_info ALTER COLUMN id SET DEFAULT nextval('card_info_id_seq');
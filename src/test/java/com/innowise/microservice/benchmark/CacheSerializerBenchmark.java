@@ -0,0 +1,119 @@
+package com.innowise.microservice.benchmark;
+
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.innowise.microservice.cache.BinaryDtoRedisSerializer;
+import com.innowise.microservice.dto.CardInfoCacheEntry;
+import com.innowise.microservice.dto.UserResponseDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the binary cache format with the JSON one: encode and decode time of cached DTOs, and bytes per entry
+ * (printed before the run).
+ * <p>
+ *     Run the {@code main} method from the IDE or with the test classpath:
+ *     {@code java -cp target/test-classes:target/classes:<dependencies> \
+ *     com.innowise.microservice.benchmark.CacheSerializerBenchmark}
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheSerializerBenchmark {
+
+    @Param({"json", "binary"})
+    private String format;
+
+    private RedisSerializer<Object> serializer;
+    private UserResponseDto user;
+    private CardInfoCacheEntry card;
+    private byte[] userBytes;
+    private byte[] cardBytes;
+
+    @Setup
+    public void setUp() {
+        serializer = serializer(format);
+        user = user();
+        card = card();
+        userBytes = serializer.serialize(user);
+        cardBytes = serializer.serialize(card);
+    }
+
+    @Benchmark
+    public byte[] encodeUser() {
+        return serializer.serialize(user);
+    }
+
+    @Benchmark
+    public Object decodeUser() {
+        return serializer.deserialize(userBytes);
+    }
+
+    @Benchmark
+    public byte[] encodeCard() {
+        return serializer.serialize(card);
+    }
+
+    @Benchmark
+    public Object decodeCard() {
+        return serializer.deserialize(cardBytes);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (String format : new String[]{"json", "binary"}) {
+            RedisSerializer<Object> serializer = serializer(format);
+            System.out.printf("%s: user %d bytes, card %d bytes%n", format,
+                    serializer.serialize(user()).length, serializer.serialize(card()).length);
+        }
+        new Runner(new OptionsBuilder()
+                .include(CacheSerializerBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+
+    private static RedisSerializer<Object> serializer(String format) {
+        GenericJackson2JsonRedisSerializer json = new GenericJackson2JsonRedisSerializer();
+        json.configure(mapper -> mapper.registerModule(new JavaTimeModule()));
+        return "json".equals(format) ? json : new BinaryDtoRedisSerializer(json, 1024);
+    }
+
+    private static UserResponseDto user() {
+        UserResponseDto user = new UserResponseDto();
+        user.setId(1L);
+        user.setName("Hanna");
+        user.setSurname("Montana");
+        user.setBirthDate(LocalDate.of(2000, 3, 20));
+        user.setEmail("hanna00@gmail.com");
+        return user;
+    }
+
+    private static CardInfoCacheEntry card() {
+        CardInfoCacheEntry card = new CardInfoCacheEntry();
+        card.setId(1L);
+        card.setOwnerId(1L);
+        card.setNumber("1234123412341234");
+        card.setHolder("HANNA MONTANA");
+        card.setExpirationDate(LocalDate.of(2027, 11, 10));
+        return card;
+    }
+}
@@ -0,0 +1,95 @@
+package com.innowise.microservice.benchmark;
+
+import com.innowise.microservice.cache.CacheNames;
+import com.innowise.microservice.cache.HotKeyTracker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Duration;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost that hot-key counting adds to every cache read, with Zipf-distributed and with uniform keys, on one and
+ * on four threads. {@code baseline} only picks the key.
+ * <p>
+ *     Run the {@code main} method from the IDE or with the test classpath:
+ *     {@code java -cp target/test-classes:target/classes:<dependencies> \
+ *     com.innowise.microservice.benchmark.HotKeyTrackerBenchmark}
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HotKeyTrackerBenchmark {
+
+    private static final int KEYS = 1 << 16;
+
+    @Param({"zipf", "uniform"})
+    private String distribution;
+
+    private HotKeyTracker tracker;
+    private String[] keys;
+
+    @Setup
+    public void setUp() {
+        tracker = new HotKeyTracker(null, 8192, 1000, 10000, 0.5, Duration.ofDays(1));
+        keys = new String[KEYS];
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < KEYS; i++) {
+            long id = "zipf".equals(distribution) ? zipf(random, 1_000_000) : random.nextInt(1_000_000);
+            keys[i] = String.valueOf(id);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+    }
+
+    @Benchmark
+    public String baseline(Cursor cursor) {
+        return keys[cursor.next++ & (KEYS - 1)];
+    }
+
+    @Benchmark
+    public void record(Cursor cursor) {
+        tracker.record(CacheNames.USER_CACHE, keys[cursor.next++ & (KEYS - 1)]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordConcurrently(Cursor cursor) {
+        tracker.record(CacheNames.USER_CACHE, keys[cursor.next++ & (KEYS - 1)]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(HotKeyTrackerBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+
+    /**
+     * Draws a rank with probability proportional to {@code 1 / rank}.
+     */
+    private static long zipf(SplittableRandom random, int n) {
+        return (long) Math.floor(Math.exp(random.nextDouble() * Math.log(n)));
+    }
+}
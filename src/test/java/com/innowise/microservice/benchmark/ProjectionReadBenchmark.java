@@ -0,0 +1,116 @@
+package com.innowise.microservice.benchmark;
+
+import com.innowise.microservice.UserServiceApplication;
+import com.innowise.microservice.dto.UserResponseDto;
+import com.innowise.microservice.entity.User;
+import com.innowise.microservice.mapper.UserMapper;
+import com.innowise.microservice.repository.UserRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the work per database read of users: loading managed entities and mapping them to DTOs, as the
+ * services did before, against selecting the DTOs straight from the read-only projection queries. Run with the GC
+ * profiler, its {@code gc.alloc.rate.norm} column is the number of bytes allocated per lookup and per batch of
+ * {@value #BATCH_SIZE} ids.
+ * <p>
+ *     Needs Docker for the Postgres container. Run the {@code main} method from the IDE or with the test classpath:
+ *     {@code java -cp target/test-classes:target/classes:<dependencies> \
+ *     com.innowise.microservice.benchmark.ProjectionReadBenchmark}
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProjectionReadBenchmark {
+
+    private static final int BATCH_SIZE = 500;
+
+    private PostgreSQLContainer<?> postgres;
+    private ConfigurableApplicationContext context;
+    private UserRepository repository;
+    private UserMapper mapper;
+    private Long id;
+    private List<Long> ids;
+
+    @Setup
+    public void setUp() {
+        postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+        postgres.start();
+        context = new SpringApplicationBuilder(UserServiceApplication.class)
+                .profiles("test")
+                .properties("spring.datasource.url=" + postgres.getJdbcUrl(),
+                        "spring.datasource.username=" + postgres.getUsername(),
+                        "spring.datasource.password=" + postgres.getPassword(),
+                        "spring.jpa.hibernate.ddl-auto=update",
+                        "logging.level.root=WARN")
+                .run();
+        repository = context.getBean(UserRepository.class);
+        mapper = context.getBean(UserMapper.class);
+
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            users.add(new User(null, "Hanna", "Montana", LocalDate.of(2000, 3, 20), "hanna" + i + "@gmail.com"));
+        }
+        ids = repository.saveAll(users).stream().map(User::getId).toList();
+        id = ids.get(0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        postgres.stop();
+    }
+
+    @Benchmark
+    public UserResponseDto entityLookup() {
+        return mapper.toUserResponseDto(repository.findById(id).orElseThrow());
+    }
+
+    @Benchmark
+    public UserResponseDto projectionLookup() {
+        return repository.findDtoById(id).orElseThrow();
+    }
+
+    @Benchmark
+    public List<UserResponseDto> entityBatch() {
+        return mapper.toUserResponseDtoList(repository.findAllById(ids));
+    }
+
+    @Benchmark
+    public List<UserResponseDto> projectionBatch() {
+        return repository.findDtosByIds(ids);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ProjectionReadBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+}
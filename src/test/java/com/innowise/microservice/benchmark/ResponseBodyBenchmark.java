@@ -0,0 +1,79 @@
+package com.innowise.microservice.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.innowise.microservice.cache.ResponseBodyCache;
+import com.innowise.microservice.dto.UserResponseDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the work per cache hit of {@code GET /users/get/{id}}: writing the cached DTO with Jackson on every
+ * request against serving the body kept by {@link ResponseBodyCache}. Run with the GC profiler, its
+ * {@code gc.alloc.rate.norm} column is the number of bytes allocated per request.
+ * <p>
+ *     Run the {@code main} method from the IDE or with the test classpath:
+ *     {@code java -cp target/test-classes:target/classes:<dependencies> \
+ *     com.innowise.microservice.benchmark.ResponseBodyBenchmark}
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseBodyBenchmark {
+
+    private ObjectMapper objectMapper;
+    private ResponseBodyCache responseBodies;
+    private UserResponseDto user;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        responseBodies = new ResponseBodyCache(objectMapper, true, 10_000);
+        user = new UserResponseDto();
+        user.setId(1L);
+        user.setName("Hanna");
+        user.setSurname("Montana");
+        user.setBirthDate(LocalDate.of(2000, 3, 20));
+        user.setEmail("hanna00@gmail.com");
+    }
+
+    @Benchmark
+    public byte[] writeDto() throws Exception {
+        return objectMapper.writeValueAsBytes(user);
+    }
+
+    @Benchmark
+    public byte[] cachedBody() {
+        return responseBodies.get(user).json();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ResponseBodyBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+}
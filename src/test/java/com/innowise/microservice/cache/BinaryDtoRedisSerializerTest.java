@@ -0,0 +1,148 @@
+package com.innowise.microservice.cache;
+
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.innowise.microservice.dto.CardInfoCacheEntry;
+import com.innowise.microservice.dto.UserResponseDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryDtoRedisSerializerTest {
+
+    private GenericJackson2JsonRedisSerializer json;
+    private BinaryDtoRedisSerializer serializer;
+    private UserResponseDto user;
+    private CardInfoCacheEntry card;
+
+    @BeforeEach
+    void setUpValues() {
+        json = new GenericJackson2JsonRedisSerializer();
+        json.configure(mapper -> mapper.registerModule(new JavaTimeModule()));
+        serializer = new BinaryDtoRedisSerializer(json, 1024);
+
+        user = new UserResponseDto();
+        user.setId(1L);
+        user.setName("Hanna");
+        user.setSurname("Montana");
+        user.setBirthDate(LocalDate.of(2000, 3, 20));
+        user.setEmail("hanna00@gmail.com");
+
+        card = new CardInfoCacheEntry();
+        card.setId(2L);
+        card.setOwnerId(1L);
+        card.setNumber("1234123412341234");
+        card.setHolder("HANNA MONTANA");
+        card.setExpirationDate(LocalDate.of(2027, 11, 10));
+    }
+
+    @Test
+    void testUserRoundTrip() {
+        byte[] bytes = serializer.serialize(user);
+
+        assertEquals(user, serializer.deserialize(bytes));
+        assertTrue(bytes.length < json.serialize(user).length / 2);
+    }
+
+    @Test
+    void testCardRoundTrip() {
+        assertEquals(card, serializer.deserialize(serializer.serialize(card)));
+    }
+
+    @Test
+    void testReadsCardsWithEmbeddedOwner() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(new byte[]{BinaryDtoRedisSerializer.MAGIC, BinaryDtoRedisSerializer.VERSION, 2});
+        writeLong(out, 2L);
+        out.writeBoolean(true);
+        writeLong(out, 1L);
+        writeString(out, "Hanna");
+        writeString(out, "Montana");
+        writeDate(out, LocalDate.of(2000, 3, 20));
+        writeString(out, "hanna00@gmail.com");
+        writeString(out, "1234123412341234");
+        writeString(out, "HANNA MONTANA");
+        writeDate(out, LocalDate.of(2027, 11, 10));
+
+        assertEquals(card, serializer.deserialize(bytes.toByteArray()));
+    }
+
+    @Test
+    void testNullFieldsRoundTrip() {
+        UserResponseDto emptyUser = new UserResponseDto();
+        CardInfoCacheEntry emptyCard = new CardInfoCacheEntry();
+
+        assertEquals(emptyUser, serializer.deserialize(serializer.serialize(emptyUser)));
+        assertEquals(emptyCard, serializer.deserialize(serializer.serialize(emptyCard)));
+    }
+
+    @Test
+    void testPointerAndMarkerRoundTrip() {
+        assertEquals(5L, serializer.deserialize(serializer.serialize(5L)));
+        assertEquals(Boolean.TRUE, serializer.deserialize(serializer.serialize(Boolean.TRUE)));
+    }
+
+    @Test
+    void testIdListRoundTrip() {
+        long[] ids = {3L, 7L, 42L};
+
+        assertArrayEquals(ids, (long[]) serializer.deserialize(serializer.serialize(ids)));
+        assertArrayEquals(new long[0], (long[]) serializer.deserialize(serializer.serialize(new long[0])));
+    }
+
+    @Test
+    void testLongBodyIsCompressed() {
+        BinaryDtoRedisSerializer compressing = new BinaryDtoRedisSerializer(json, 16);
+        user.setName("A".repeat(500));
+
+        byte[] bytes = compressing.serialize(user);
+
+        assertTrue(bytes.length < 100);
+        assertEquals(user, compressing.deserialize(bytes));
+    }
+
+    @Test
+    void testReadsJsonEntries() {
+        assertEquals(user, serializer.deserialize(json.serialize(user)));
+        assertEquals(card, serializer.deserialize(json.serialize(card)));
+    }
+
+    @Test
+    void testOtherTypesUseFallback() {
+        List<String> value = List.of("a", "b");
+
+        assertArrayEquals(json.serialize(value), serializer.serialize(value));
+    }
+
+    @Test
+    void testUnknownVersionIsRejected() {
+        byte[] bytes = serializer.serialize(user);
+        bytes[1] = 9;
+
+        assertThrows(SerializationException.class, () -> serializer.deserialize(bytes));
+    }
+
+    private static void writeLong(DataOutputStream out, long value) throws IOException {
+        out.writeBoolean(true);
+        out.writeLong(value);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(true);
+        out.writeUTF(value);
+    }
+
+    private static void writeDate(DataOutputStream out, LocalDate value) throws IOException {
+        out.writeBoolean(true);
+        out.writeInt((int) value.toEpochDay());
+    }
+}
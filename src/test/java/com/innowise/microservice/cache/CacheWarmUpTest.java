@@ -0,0 +1,86 @@
+package com.innowise.microservice.cache;
+
+import com.innowise.microservice.exception.EmptyCardListException;
+import com.innowise.microservice.service.CardInfoService;
+import com.innowise.microservice.service.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.RedisConnectionFailureException;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class CacheWarmUpTest {
+
+    @Mock
+    private HotKeyTracker hotKeyTracker;
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private CardInfoService cardService;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUpMocks() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void testLoadsHotIdsInBatches() {
+        when(hotKeyTracker.hotIds(CacheNames.USER_CACHE, 100)).thenReturn(List.of(1L, 2L, 3L, 4L, 5L));
+        when(hotKeyTracker.hotIds(CacheNames.CARD_CACHE, 100)).thenReturn(List.of(7L));
+
+        warmUp(Duration.ofMinutes(1)).run(null);
+
+        verify(userService).getUsersByIds(List.of(1L, 2L));
+        verify(userService).getUsersByIds(List.of(3L, 4L));
+        verify(userService).getUsersByIds(List.of(5L));
+        verify(cardService).getCardsByIds(List.of(7L), false);
+        assertEquals(1, meterRegistry.get("cache.warmup").tag("cache", CacheNames.USER_CACHE).timer().count());
+        assertEquals(1, meterRegistry.get("cache.warmup").tag("cache", CacheNames.CARD_CACHE).timer().count());
+    }
+
+    @Test
+    void testBatchOfDeletedIdsDoesNotStopWarmUp() {
+        when(hotKeyTracker.hotIds(CacheNames.CARD_CACHE, 100)).thenReturn(List.of(1L, 2L, 3L));
+        when(cardService.getCardsByIds(List.of(1L, 2L), false)).thenThrow(new EmptyCardListException(List.of(1L, 2L)));
+
+        warmUp(Duration.ofMinutes(1)).run(null);
+
+        verify(cardService).getCardsByIds(List.of(3L), false);
+    }
+
+    @Test
+    void testFailureDoesNotStopStartup() {
+        when(hotKeyTracker.hotIds(CacheNames.USER_CACHE, 100))
+                .thenThrow(new RedisConnectionFailureException("Redis is down"));
+        when(hotKeyTracker.hotIds(CacheNames.CARD_CACHE, 100)).thenReturn(List.of(7L));
+
+        assertDoesNotThrow(() -> warmUp(Duration.ofMinutes(1)).run(null));
+
+        verify(cardService).getCardsByIds(List.of(7L), false);
+    }
+
+    @Test
+    void testStopsAtTimeout() {
+        when(hotKeyTracker.hotIds(CacheNames.USER_CACHE, 100)).thenReturn(List.of(1L, 2L, 3L));
+
+        warmUp(Duration.ZERO).run(null);
+
+        verifyNoInteractions(userService, cardService);
+    }
+
+    private CacheWarmUp warmUp(Duration timeout) {
+        return new CacheWarmUp(hotKeyTracker, userService, cardService, meterRegistry, 100, 2, timeout);
+    }
+}
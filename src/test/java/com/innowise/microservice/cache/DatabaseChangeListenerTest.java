@@ -0,0 +1,108 @@
+package com.innowise.microservice.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.mockito.Mockito.*;
+
+public class DatabaseChangeListenerTest {
+
+    @Mock
+    private TwoLevelCacheManager cacheManager;
+
+    @Mock
+    private KnownIds knownIds;
+
+    @Mock
+    private TwoLevelCache userCache;
+
+    @Mock
+    private TwoLevelCache cardCache;
+
+    @Mock
+    private TwoLevelCache ownerCardsCache;
+
+    private DatabaseChangeListener listener;
+
+    @BeforeEach
+    void setUpListener() {
+        MockitoAnnotations.openMocks(this);
+        when(cacheManager.getCache(CacheNames.USER_CACHE)).thenReturn(userCache);
+        when(cacheManager.getCache(CacheNames.CARD_CACHE)).thenReturn(cardCache);
+        when(cacheManager.getCache(CacheNames.OWNER_CARDS_CACHE)).thenReturn(ownerCardsCache);
+        listener = new DatabaseChangeListener(new DataSourceProperties(), cacheManager, knownIds,
+                "cache_invalidation", Duration.ofMillis(100), 1000, Duration.ofSeconds(5));
+    }
+
+    @Test
+    void testApplyEvictsChangedIdsOncePerCache() {
+        listener.apply(List.of("users:1", "card_info:10", "card_info:11", "users:1", "card_info:10"));
+
+        verify(userCache).evictChanged(Set.of(1L));
+        verify(cardCache).evictChanged(Set.of(10L, 11L));
+        verify(knownIds).onRemoteChange(CacheNames.USER_CACHE, "1");
+        verify(knownIds).onRemoteChange(CacheNames.CARD_CACHE, "11");
+    }
+
+    @Test
+    void testApplyEvictsOwnersOfChangedCards() {
+        listener.apply(List.of("card_info:10:1", "card_info:11:1:2", "users:3"));
+
+        verify(cardCache).evictChanged(Set.of(10L, 11L));
+        verify(ownerCardsCache).evictChanged(Set.of(1L, 2L));
+        verify(userCache).evictChanged(Set.of(3L));
+    }
+
+    @Test
+    void testApplyEvictsInsertedRowsFromLocalLevelOnly() {
+        when(cacheManager.getLocalCache(CacheNames.CARD_CACHE)).thenReturn(cardCache);
+
+        listener.apply(List.of("INSERT:card_info:10:1", "UPDATE:card_info:11:2", "DELETE:users:3"));
+
+        verify(cardCache).evictLocal("10");
+        verify(cardCache).evictChanged(Set.of(11L));
+        verify(ownerCardsCache).evictChanged(Set.of(1L, 2L));
+        verify(userCache).evictChanged(Set.of(3L));
+        verify(knownIds).onRemoteChange(CacheNames.CARD_CACHE, "10");
+    }
+
+    @Test
+    void testApplySkipsUnknownPayloads() {
+        listener.apply(List.of("orders:1", "users:abc", "garbage", "INSERT:", "users:2"));
+
+        verify(userCache).evictChanged(Set.of(2L));
+        verifyNoInteractions(cardCache);
+        verifyNoInteractions(ownerCardsCache);
+    }
+
+    @Test
+    void testApplyToCacheNeverUsedOnThisNode() {
+        when(cacheManager.getLocalCache(CacheNames.CARD_CACHE)).thenReturn(null);
+
+        listener.apply(List.of("card_info:10"));
+
+        verify(cacheManager).getCache(CacheNames.CARD_CACHE);
+        verify(cardCache).evictChanged(Set.of(10L));
+    }
+
+    @Test
+    void testClearLocalCachesLeavesRedisAlone() {
+        when(cacheManager.getLocalCache(CacheNames.USER_CACHE)).thenReturn(userCache);
+        when(cacheManager.getLocalCache(CacheNames.CARD_CACHE)).thenReturn(null);
+        when(cacheManager.getLocalCache(CacheNames.OWNER_CARDS_CACHE)).thenReturn(ownerCardsCache);
+
+        listener.clearLocalCaches();
+
+        verify(userCache).clearLocal();
+        verify(ownerCardsCache).clearLocal();
+        verify(userCache, never()).clear();
+        verify(cacheManager, never()).getCache(any());
+    }
+}
@@ -0,0 +1,139 @@
+package com.innowise.microservice.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.zset.Aggregate;
+import org.springframework.data.redis.connection.zset.Weights;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class HotKeyTrackerTest {
+
+    private static final String USER_KEY = "hot-keys:" + CacheNames.USER_CACHE;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ZSetOperations<String, String> zSetOperations;
+
+    @Mock
+    private StringRedisConnection connection;
+
+    @Mock
+    private RedisZSetCommands zSetCommands;
+
+    private HotKeyTracker tracker;
+
+    @BeforeEach
+    void setUpTracker() {
+        MockitoAnnotations.openMocks(this);
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        when(connection.zSetCommands()).thenReturn(zSetCommands);
+        tracker = new HotKeyTracker(redisTemplate, 1024, 3, 2, 0.5, Duration.ofDays(1));
+    }
+
+    @Test
+    void testSnapshotPersistsHottestKeysWithDecay() {
+        record(CacheNames.USER_CACHE, "1", 3);
+        record(CacheNames.USER_CACHE, "2", 1);
+        record(CacheNames.USER_CACHE, "3", 2);
+
+        tracker.snapshot();
+
+        runPipeline();
+        byte[] rawKey = USER_KEY.getBytes(StandardCharsets.UTF_8);
+        verify(zSetCommands).zUnionStore(rawKey, Aggregate.SUM, Weights.of(0.5), rawKey);
+        verify(connection).zIncrBy(USER_KEY, 3, "1");
+        verify(connection).zIncrBy(USER_KEY, 2, "3");
+        verify(connection, never()).zIncrBy(USER_KEY, 1, "2");
+        verify(connection).zRemRange(USER_KEY, 0, -3);
+        verify(connection).expire(USER_KEY, Duration.ofDays(1).toSeconds());
+    }
+
+    @Test
+    void testSnapshotResetsCounts() {
+        record(CacheNames.USER_CACHE, "1", 1);
+        tracker.snapshot();
+
+        tracker.snapshot();
+
+        verify(redisTemplate, times(1)).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    void testRecordIgnoresOtherCachesAndReplacesLeastReadTopKey() {
+        record(CacheNames.USER_EMAIL_CACHE, "a@b.com", 1);
+        for (int key = 1; key <= 4; key++) {
+            record(CacheNames.USER_CACHE, String.valueOf(key), 5 - key);
+        }
+        assertFalse(tracker.isHot(CacheNames.USER_CACHE, "4"));
+        record(CacheNames.USER_CACHE, "4", 10);
+
+        assertTrue(tracker.isHot(CacheNames.USER_CACHE, "4"));
+        assertFalse(tracker.isHot(CacheNames.USER_CACHE, "3"));
+        assertFalse(tracker.isHot(CacheNames.USER_EMAIL_CACHE, "a@b.com"));
+        tracker.snapshot();
+
+        runPipeline();
+        verify(connection).zIncrBy(USER_KEY, 11, "4");
+        verify(connection).zIncrBy(USER_KEY, 4, "1");
+        verify(connection, never()).zIncrBy(eq(USER_KEY), anyDouble(), eq("3"));
+        verify(connection, never()).zIncrBy(startsWith("hot-keys:" + CacheNames.USER_EMAIL_CACHE), anyDouble(),
+                anyString());
+    }
+
+    @Test
+    void testHotKeysReportsTopKeysAndSkew() {
+        HotKeyTracker tracker = new HotKeyTracker(redisTemplate, 4096, 50, 2, 0.5, Duration.ofDays(1));
+        for (int rank = 1; rank <= 50; rank++) {
+            for (int i = 0; i < 1000 / rank; i++) {
+                tracker.record(CacheNames.CARD_CACHE, String.valueOf(rank));
+            }
+        }
+
+        HotKeyTracker.HotKeys hotKeys = tracker.hotKeys(CacheNames.CARD_CACHE, 2);
+
+        assertEquals(List.of(new HotKeyTracker.HotKey("1", 1000), new HotKeyTracker.HotKey("2", 500)),
+                hotKeys.keys());
+        assertEquals(1.0, hotKeys.zipfExponent(), 0.05);
+        assertEquals(1.0, hotKeys.topShare(), 0.01);
+        assertEquals(0, tracker.hotKeys(CacheNames.USER_CACHE, 2).total());
+        assertNull(tracker.hotKeys(CacheNames.MISSING_ID_CACHE, 2));
+    }
+
+    @Test
+    void testHotIdsSkipsMalformedMembers() {
+        when(zSetOperations.reverseRange(USER_KEY, 0, 9))
+                .thenReturn(new LinkedHashSet<>(List.of("7", "oops", "3")));
+
+        assertEquals(List.of(7L, 3L), tracker.hotIds(CacheNames.USER_CACHE, 10));
+    }
+
+    private void record(String cacheName, String key, int times) {
+        for (int i = 0; i < times; i++) {
+            tracker.record(cacheName, key);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runPipeline() {
+        ArgumentCaptor<RedisCallback<Object>> callback = ArgumentCaptor.forClass(RedisCallback.class);
+        verify(redisTemplate).executePipelined(callback.capture());
+        callback.getValue().doInRedis(connection);
+    }
+}
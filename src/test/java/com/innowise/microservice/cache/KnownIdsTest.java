@@ -0,0 +1,130 @@
+package com.innowise.microservice.cache;
+
+import com.innowise.microservice.repository.CardInfoRepository;
+import com.innowise.microservice.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.domain.Limit;
+
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class KnownIdsTest {
+
+    private static final int BATCH_SIZE = 2;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private CardInfoRepository cardRepository;
+
+    private KnownIds knownIds;
+
+    @BeforeEach
+    void setUpKnownIds() {
+        MockitoAnnotations.openMocks(this);
+        when(userRepository.findIdsAfter(Long.MIN_VALUE, Limit.of(BATCH_SIZE))).thenReturn(List.of(1L, 2L));
+        when(userRepository.findIdsAfter(2L, Limit.of(BATCH_SIZE))).thenReturn(List.of(5L));
+        when(cardRepository.findIdsAfter(anyLong(), any())).thenReturn(List.of());
+        knownIds = new KnownIds(userRepository, cardRepository, new ConcurrentMapCacheManager(), 1000, 0.01,
+                BATCH_SIZE);
+    }
+
+    @Test
+    void testEverythingMightExistBeforeBuild() {
+        assertFalse(knownIds.isKnownMissing(CacheNames.USER_CACHE, 3L));
+    }
+
+    @Test
+    void testFilterIsBuiltInBatches() {
+        knownIds.rebuild();
+
+        assertFalse(knownIds.isKnownMissing(CacheNames.USER_CACHE, 1L));
+        assertFalse(knownIds.isKnownMissing(CacheNames.USER_CACHE, 2L));
+        assertFalse(knownIds.isKnownMissing(CacheNames.USER_CACHE, 5L));
+        assertTrue(knownIds.isKnownMissing(CacheNames.CARD_CACHE, 1L));
+    }
+
+    @Test
+    void testCreatedIdIsNoLongerMissing() {
+        knownIds.rebuild();
+        knownIds.markMissing(CacheNames.CARD_CACHE, 7L);
+
+        knownIds.markExisting(CacheNames.CARD_CACHE, 7L);
+
+        assertFalse(knownIds.isKnownMissing(CacheNames.CARD_CACHE, 7L));
+    }
+
+    @Test
+    void testCreatedBatchIsAddedToFilter() {
+        knownIds.rebuild();
+
+        knownIds.markAllExisting(CacheNames.CARD_CACHE, List.of(7L, 8L));
+
+        assertFalse(knownIds.isKnownMissing(CacheNames.CARD_CACHE, 7L));
+        assertFalse(knownIds.isKnownMissing(CacheNames.CARD_CACHE, 8L));
+    }
+
+    @Test
+    void testDeletedIdIsMissing() {
+        knownIds.rebuild();
+
+        knownIds.markMissing(CacheNames.USER_CACHE, 1L);
+
+        assertTrue(knownIds.isKnownMissing(CacheNames.USER_CACHE, 1L));
+    }
+
+    @Test
+    void testRemoteChangeIsAddedToFilter() {
+        knownIds.rebuild();
+
+        knownIds.onRemoteChange(CacheNames.CARD_CACHE, "9");
+
+        assertFalse(knownIds.isKnownMissing(CacheNames.CARD_CACHE, 9L));
+    }
+
+    @Test
+    void testFilterMissIsAnsweredWithoutDatabase() {
+        knownIds.rebuild();
+
+        assertTrue(knownIds.isKnownMissing(CacheNames.CARD_CACHE, 4L));
+        verify(cardRepository, never()).existsById(any());
+    }
+
+    @Test
+    void testFilterMissIsNotSharedWithOtherNodes() {
+        ConcurrentMapCacheManager sharedCaches = new ConcurrentMapCacheManager();
+        KnownIds nodeA = new KnownIds(userRepository, cardRepository, sharedCaches, 1000, 0.01, BATCH_SIZE);
+        KnownIds nodeB = new KnownIds(userRepository, cardRepository, sharedCaches, 1000, 0.01, BATCH_SIZE);
+        nodeA.rebuild();
+        nodeB.rebuild();
+
+        nodeA.markExisting(CacheNames.USER_CACHE, 8L);
+        assertTrue(nodeB.isKnownMissing(CacheNames.USER_CACHE, 8L));
+        nodeB.onRemoteChange(CacheNames.USER_CACHE, "8");
+
+        assertFalse(nodeA.isKnownMissing(CacheNames.USER_CACHE, 8L));
+        assertFalse(nodeB.isKnownMissing(CacheNames.USER_CACHE, 8L));
+    }
+
+    @Test
+    void testBloomFilterHasNoFalseNegativesAndFewFalsePositives() {
+        IdBloomFilter filter = new IdBloomFilter(10_000, 0.01);
+        LongStream.rangeClosed(1, 10_000).forEach(filter::add);
+
+        assertTrue(LongStream.rangeClosed(1, 10_000).allMatch(filter::mightContain));
+        long falsePositives = LongStream.rangeClosed(10_001, 110_000).filter(filter::mightContain).count();
+        assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+    }
+}
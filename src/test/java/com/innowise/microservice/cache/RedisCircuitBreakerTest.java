@@ -0,0 +1,194 @@
+package com.innowise.microservice.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class RedisCircuitBreakerTest {
+
+    private static final int FAILURE_THRESHOLD = 3;
+    private static final Duration COMMAND_TIMEOUT = Duration.ofMillis(100);
+
+    private SlowRedisServer server;
+    private LettuceConnectionFactory connectionFactory;
+    private RedisCircuitBreaker breaker;
+    private Cache cache;
+
+    @BeforeEach
+    void setUpRedis() throws Exception {
+        server = new SlowRedisServer();
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration("localhost", server.getPort()),
+                LettuceClientConfiguration.builder().commandTimeout(COMMAND_TIMEOUT).build());
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        breaker = new RedisCircuitBreaker(connectionFactory, FAILURE_THRESHOLD, new SimpleMeterRegistry());
+        RedisCacheManager cacheManager = RedisCacheManager.builder(connectionFactory)
+                .cacheDefaults(RedisCacheConfiguration.defaultCacheConfig())
+                .build();
+        cacheManager.afterPropertiesSet();
+        cache = new CircuitBreakingCache(cacheManager.getCache(CacheNames.USER_CACHE), breaker, 100);
+        assertNull(cache.get(0L));
+    }
+
+    @AfterEach
+    void tearDownRedis() throws Exception {
+        connectionFactory.destroy();
+        server.close();
+    }
+
+    @Test
+    void testSlowRedisOpensBreakerAndReadsGoToDatabase() {
+        server.setLatencyMillis(500);
+
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+            long start = System.nanoTime();
+            assertEquals("user", cache.get(1L, () -> "user"));
+            assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofMillis(400)) < 0);
+        }
+        assertTrue(breaker.isOpen());
+
+        int reads = server.getReads();
+        long start = System.nanoTime();
+        assertEquals("user", cache.get(1L, () -> "user"));
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofMillis(50)) < 0);
+        assertEquals(reads, server.getReads());
+    }
+
+    @Test
+    void testProbeClosesBreakerOnceRedisRecovers() throws InterruptedException {
+        server.setLatencyMillis(500);
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+            cache.get(1L);
+        }
+        breaker.probe();
+        assertTrue(breaker.isOpen());
+
+        server.setLatencyMillis(0);
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (breaker.isOpen() && System.nanoTime() < deadline) {
+            breaker.probe();
+            Thread.sleep(100);
+        }
+
+        assertFalse(breaker.isOpen());
+        int reads = server.getReads();
+        assertNull(cache.get(1L));
+        assertEquals(reads + 1, server.getReads());
+    }
+
+    @Test
+    void testWritesDroppedWhileOpenAreEvictedOnRecovery() {
+        Cache delegate = mock(Cache.class);
+        RedisCircuitBreaker breaker = openBreaker();
+        CircuitBreakingCache cache = new CircuitBreakingCache(delegate, breaker, 100);
+
+        cache.put(1L, "updated user");
+        cache.evict(2L);
+        assertNull(cache.get(3L));
+        breaker.probe();
+
+        assertFalse(breaker.isOpen());
+        verify(delegate).evict(1L);
+        verify(delegate).evict(2L);
+        verify(delegate, never()).put(any(), any());
+        verify(delegate, never()).get(any());
+    }
+
+    @Test
+    void testTooManyDroppedWritesClearCacheOnRecovery() {
+        Cache delegate = mock(Cache.class);
+        RedisCircuitBreaker breaker = openBreaker();
+        CircuitBreakingCache cache = new CircuitBreakingCache(delegate, breaker, 2);
+
+        for (long id = 1; id <= 3; id++) {
+            cache.put(id, "user");
+        }
+        breaker.probe();
+
+        verify(delegate).clear();
+        verify(delegate, never()).evict(any());
+    }
+
+    @Test
+    void testFailedEvictionKeepsBreakerOpen() {
+        Cache delegate = mock(Cache.class);
+        RedisCircuitBreaker breaker = openBreaker();
+        CircuitBreakingCache cache = new CircuitBreakingCache(delegate, breaker, 100);
+        cache.evict(1L);
+        doThrow(new QueryTimeoutException("timeout")).doNothing().when(delegate).evict(1L);
+
+        breaker.probe();
+        assertTrue(breaker.isOpen());
+        breaker.probe();
+
+        assertFalse(breaker.isOpen());
+        verify(delegate, times(2)).evict(1L);
+    }
+
+    @Test
+    void testBatchReadsGetTheirOwnTimeout() throws Exception {
+        LettuceConnectionFactory batchConnectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration("localhost", server.getPort()),
+                LettuceClientConfiguration.builder().commandTimeout(Duration.ofSeconds(2)).build());
+        batchConnectionFactory.afterPropertiesSet();
+        batchConnectionFactory.start();
+        RedisBatchCacheOperations batch = new RedisBatchCacheOperations(connectionFactory, batchConnectionFactory,
+                RedisCacheConfiguration.defaultCacheConfig(), Map.of(), breaker, Duration.ofSeconds(5));
+        server.setLatencyMillis(300);
+
+        try {
+            int reads = server.getReads();
+            for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+                assertEquals(Arrays.asList(null, null), batch.getAll(CacheNames.USER_CACHE, List.of(1L, 2L)));
+            }
+            assertFalse(breaker.isOpen());
+            assertEquals(reads + FAILURE_THRESHOLD, server.getReads());
+
+            for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+                batch.getAll(CacheNames.USER_CACHE, List.of(1L));
+            }
+            assertTrue(breaker.isOpen());
+        } finally {
+            batchConnectionFactory.destroy();
+        }
+    }
+
+    @Test
+    void testBatchOperationsSkipRedisWhileOpen() {
+        RedisConnectionFactory connectionFactory = mock(RedisConnectionFactory.class);
+        RedisBatchCacheOperations batch = new RedisBatchCacheOperations(connectionFactory, connectionFactory,
+                RedisCacheConfiguration.defaultCacheConfig(), Map.of(), openBreaker(), Duration.ofSeconds(5));
+
+        assertEquals(Arrays.asList(null, null), batch.getAll(CacheNames.USER_CACHE, List.of(1L, 2L)));
+        batch.putAll(CacheNames.USER_CACHE, Map.of(1L, "user"));
+
+        verifyNoInteractions(connectionFactory);
+    }
+
+    private static RedisCircuitBreaker openBreaker() {
+        RedisConnectionFactory connectionFactory = mock(RedisConnectionFactory.class);
+        when(connectionFactory.getConnection()).thenReturn(mock(RedisConnection.class));
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(connectionFactory, 1, new SimpleMeterRegistry());
+        breaker.recordFailure(new QueryTimeoutException("timeout"));
+        return breaker;
+    }
+}
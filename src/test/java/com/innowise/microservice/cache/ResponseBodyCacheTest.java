@@ -0,0 +1,89 @@
+package com.innowise.microservice.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.innowise.microservice.dto.UserResponseDto;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResponseBodyCacheTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    @Test
+    void testSameDtoIsSerializedOnce() {
+        ResponseBodyCache cache = new ResponseBodyCache(OBJECT_MAPPER, true, 100);
+        UserResponseDto user = user("hanna00@gmail.com");
+
+        ResponseBodyCache.Body body = cache.get(user);
+
+        assertSame(body, cache.get(user));
+        assertEquals("{\"id\":1,\"name\":\"Hanna\",\"surname\":\"Montana\",\"birthDate\":\"2000-03-20\","
+                + "\"email\":\"hanna00@gmail.com\"}", new String(body.json(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testNewDtoInstanceIsSerializedAgain() {
+        ResponseBodyCache cache = new ResponseBodyCache(OBJECT_MAPPER, true, 100);
+
+        ResponseBodyCache.Body cached = cache.get(user("hanna00@gmail.com"));
+        ResponseBodyCache.Body same = cache.get(user("hanna00@gmail.com"));
+        ResponseBodyCache.Body changed = cache.get(user("hanna@yahoo.com"));
+
+        assertNotSame(cached, same);
+        assertEquals(cached.eTag(), same.eTag());
+        assertNotEquals(cached.eTag(), changed.eTag());
+    }
+
+    @Test
+    void testDisabledCacheSerializesEveryTime() {
+        ResponseBodyCache cache = new ResponseBodyCache(OBJECT_MAPPER, false, 100);
+        UserResponseDto user = user("hanna00@gmail.com");
+
+        assertNotSame(cache.get(user), cache.get(user));
+    }
+
+    @Test
+    void testWrittenBodyIsNotKept() {
+        ResponseBodyCache cache = new ResponseBodyCache(OBJECT_MAPPER, true, 100);
+        UserResponseDto user = user("hanna00@gmail.com");
+
+        ResponseBodyCache.Body written = cache.write(user);
+
+        assertNotSame(written, cache.get(user));
+        assertEquals(written.eTag(), cache.get(user).eTag());
+    }
+
+    @Test
+    void testComposedBodyIsKeptPerSourceAndPart() {
+        ResponseBodyCache cache = new ResponseBodyCache(OBJECT_MAPPER, true, 100);
+        Object source = new Object();
+        UserResponseDto owner = user("hanna00@gmail.com");
+        UserResponseDto changedOwner = user("hanna@yahoo.com");
+
+        ResponseBodyCache.Body alone = cache.get(source, null, () -> user("alone@gmail.com"));
+        ResponseBodyCache.Body withOwner = cache.get(source, owner, () -> owner);
+
+        assertSame(alone, cache.get(source, null, () -> fail("body should be kept")));
+        assertSame(withOwner, cache.get(source, owner, () -> fail("body should be kept")));
+        assertNotEquals(withOwner.eTag(), cache.get(source, changedOwner, () -> changedOwner).eTag());
+        assertNotSame(alone, cache.get(new Object(), null, () -> user("alone@gmail.com")));
+    }
+
+    private static UserResponseDto user(String email) {
+        UserResponseDto user = new UserResponseDto();
+        user.setId(1L);
+        user.setName("Hanna");
+        user.setSurname("Montana");
+        user.setBirthDate(LocalDate.of(2000, 3, 20));
+        user.setEmail(email);
+        return user;
+    }
+}
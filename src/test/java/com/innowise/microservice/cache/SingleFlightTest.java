@@ -0,0 +1,103 @@
+package com.innowise.microservice.cache;
+
+import com.innowise.microservice.exception.UserNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    private SimpleMeterRegistry meterRegistry;
+    private SingleFlight singleFlight;
+
+    @BeforeEach
+    void setUpSingleFlight() {
+        meterRegistry = new SimpleMeterRegistry();
+        singleFlight = new SingleFlight(meterRegistry);
+    }
+
+    @Test
+    void testConcurrentLoadsOfSameKeyShareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoad = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            Future<String> leader = executor.submit(() -> singleFlight.load(CacheNames.USER_CACHE, 1L, () -> {
+                loads.incrementAndGet();
+                loadStarted.countDown();
+                await(releaseLoad);
+                return "user";
+            }));
+            assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+
+            List<Future<String>> followers = new ArrayList<>();
+            for (int i = 1; i < CALLERS; i++) {
+                followers.add(executor.submit(() -> singleFlight.load(CacheNames.USER_CACHE, 1L, () -> {
+                    loads.incrementAndGet();
+                    return "other";
+                })));
+            }
+            awaitCoalesced(CALLERS - 1);
+            releaseLoad.countDown();
+
+            assertEquals("user", leader.get(5, TimeUnit.SECONDS));
+            for (Future<String> follower : followers) {
+                assertEquals("user", follower.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(1, count("leader"));
+        assertEquals(CALLERS - 1, count("coalesced"));
+    }
+
+    @Test
+    void testSequentialLoadsAreNotCoalesced() {
+        assertEquals("first", singleFlight.load(CacheNames.CARD_CACHE, 1L, () -> "first"));
+        assertEquals("second", singleFlight.load(CacheNames.CARD_CACHE, 1L, () -> "second"));
+        assertEquals(0, meterRegistry.counter("cache.loads", "cache", CacheNames.CARD_CACHE, "role", "coalesced")
+                .count());
+    }
+
+    @Test
+    void testLoadFailureIsRethrown() {
+        assertThrows(UserNotFoundException.class, () -> singleFlight.load(CacheNames.USER_CACHE, 5L, () -> {
+            throw new UserNotFoundException(5L);
+        }));
+        assertEquals("user", singleFlight.load(CacheNames.USER_CACHE, 5L, () -> "user"));
+    }
+
+    private void awaitCoalesced(int expected) throws InterruptedException {
+        for (int attempt = 0; attempt < 500 && count("coalesced") < expected; attempt++) {
+            Thread.sleep(10);
+        }
+    }
+
+    private double count(String role) {
+        return meterRegistry.counter("cache.loads", "cache", CacheNames.USER_CACHE, "role", role).count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
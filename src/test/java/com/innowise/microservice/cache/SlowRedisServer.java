@@ -0,0 +1,135 @@
+package com.innowise.microservice.cache;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stand-in Redis for tests that speaks just enough RESP2 for a cache: every key is missing, writes succeed.
+ * Every reply is delayed by {@link #setLatencyMillis(long)}, replies on one connection keep their order.
+ */
+class SlowRedisServer implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final List<Socket> sockets = new ArrayList<>();
+    private final AtomicInteger reads = new AtomicInteger();
+    private volatile long latencyMillis;
+
+    SlowRedisServer() throws IOException {
+        serverSocket = new ServerSocket(0);
+        Thread acceptor = new Thread(this::accept, "slow-redis-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * @return number of GET and MGET commands received so far
+     */
+    int getReads() {
+        return reads.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        synchronized (sockets) {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                synchronized (sockets) {
+                    sockets.add(socket);
+                }
+                Thread handler = new Thread(() -> serve(socket), "slow-redis-connection");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (InputStream in = new BufferedInputStream(socket.getInputStream());
+             OutputStream out = socket.getOutputStream()) {
+            List<String> command;
+            while ((command = readCommand(in)) != null) {
+                String reply = reply(command);
+                Thread.sleep(latencyMillis);
+                out.write(reply.getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+        } catch (IOException | InterruptedException e) {
+            // connection closed by the client or by close()
+        }
+    }
+
+    private String reply(List<String> command) {
+        String name = command.get(0).toUpperCase(Locale.ROOT);
+        return switch (name) {
+            case "HELLO" -> "-ERR unknown command 'HELLO'\r\n";
+            case "PING" -> "+PONG\r\n";
+            case "GET" -> {
+                reads.incrementAndGet();
+                yield "$-1\r\n";
+            }
+            case "MGET" -> {
+                reads.incrementAndGet();
+                yield "*" + (command.size() - 1) + "\r\n" + "$-1\r\n".repeat(command.size() - 1);
+            }
+            case "DEL", "UNLINK", "PUBLISH" -> ":0\r\n";
+            default -> "+OK\r\n";
+        };
+    }
+
+    private static List<String> readCommand(InputStream in) throws IOException {
+        String header = readLine(in);
+        if (header == null) {
+            return null;
+        }
+        int count = Integer.parseInt(header.substring(1));
+        List<String> command = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int length = Integer.parseInt(readLine(in).substring(1));
+            byte[] argument = in.readNBytes(length + 2);
+            command.add(new String(argument, 0, length, StandardCharsets.UTF_8));
+        }
+        return command;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int current;
+        while ((current = in.read()) != -1) {
+            if (current == '\r') {
+                in.read();
+                return line.toString(StandardCharsets.UTF_8);
+            }
+            line.write(current);
+        }
+        return null;
+    }
+}
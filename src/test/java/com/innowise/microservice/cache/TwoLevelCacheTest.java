@@ -0,0 +1,307 @@
+package com.innowise.microservice.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class TwoLevelCacheTest {
+
+    @Mock
+    private Cache remote;
+
+    @Mock
+    private RedisBatchCacheOperations remoteBatch;
+
+    @Mock
+    private CacheInvalidationPublisher publisher;
+
+    @Mock
+    private HotKeyTracker hotKeyTracker;
+
+    private TwoLevelCache cache;
+
+    @BeforeEach
+    void setUpCache() {
+        MockitoAnnotations.openMocks(this);
+        cache = new TwoLevelCache(CacheNames.USER_CACHE, Caffeine.newBuilder().maximumSize(100).build(),
+                remote, remoteBatch, publisher, new EarlyRefresh(100, Runnable::run, 0),
+                hotKeyTracker, new TransactionalCacheWrites(remoteBatch));
+    }
+
+    private TwoLevelCache eagerlyRefreshingCache() {
+        return new TwoLevelCache(CacheNames.USER_CACHE, Caffeine.newBuilder().maximumSize(100).build(),
+                remote, remoteBatch, publisher, new EarlyRefresh(100, Runnable::run, 1e12),
+                hotKeyTracker, new TransactionalCacheWrites(remoteBatch));
+    }
+
+    @Test
+    void testGetFillsLocalLevelFromRemote() {
+        when(remote.get(1L)).thenReturn(new SimpleValueWrapper("user"));
+
+        assertEquals("user", cache.get(1L).get());
+        assertEquals("user", cache.get(1L).get());
+
+        verify(remote, times(1)).get(1L);
+        verify(hotKeyTracker, times(2)).record(CacheNames.USER_CACHE, "1");
+    }
+
+    @Test
+    void testGetMissOnBothLevels() {
+        when(remote.get(1L)).thenReturn(null);
+
+        assertNull(cache.get(1L));
+        verify(remote).get(1L);
+    }
+
+    @Test
+    void testGetWithLoaderStoresLoadedValue() {
+        when(remote.get(1L)).thenReturn(null);
+        when(remoteBatch.putIfAbsent(CacheNames.USER_CACHE, 1L, "user")).thenReturn(true);
+
+        assertEquals("user", cache.get(1L, () -> "user"));
+        assertEquals("user", cache.get(1L, () -> "other"));
+
+        verify(remoteBatch).putIfAbsent(CacheNames.USER_CACHE, 1L, "user");
+        verify(remote, never()).put(any(), any());
+        verify(publisher, never()).publishEvict(anyString(), anyString());
+    }
+
+    @Test
+    void testGetWithLoaderDropsValueWhenRedisHoldsKey() {
+        when(remote.get(1L)).thenReturn(null);
+        when(remoteBatch.putIfAbsent(CacheNames.USER_CACHE, 1L, "stale user")).thenReturn(false);
+
+        assertEquals("stale user", cache.get(1L, () -> "stale user"));
+
+        assertNull(cache.get(1L));
+    }
+
+    @Test
+    void testGetWithLoaderRefreshesEntryCloseToExpiry() {
+        TwoLevelCache cache = eagerlyRefreshingCache();
+        when(remote.get(1L)).thenReturn(null);
+        when(remoteBatch.timeToLive(eq(CacheNames.USER_CACHE), eq(1L), any())).thenReturn(Duration.ofMinutes(10));
+        when(remoteBatch.putIfAbsent(CacheNames.USER_CACHE, 1L, "user")).thenReturn(true);
+        cache.get(1L, () -> "user");
+
+        assertEquals("user", cache.get(1L, () -> "updated user"));
+
+        assertEquals("updated user", cache.get(1L).get());
+        verify(remote).put(1L, "updated user");
+    }
+
+    @Test
+    void testGetWithLoaderKeepsEntryWhenRefreshFails() {
+        TwoLevelCache cache = eagerlyRefreshingCache();
+        when(remote.get(1L)).thenReturn(null);
+        when(remoteBatch.timeToLive(eq(CacheNames.USER_CACHE), eq(1L), any())).thenReturn(Duration.ofMinutes(10));
+        when(remoteBatch.putIfAbsent(CacheNames.USER_CACHE, 1L, "user")).thenReturn(true);
+        cache.get(1L, () -> "user");
+
+        assertEquals("user", cache.get(1L, () -> {
+            throw new IllegalStateException("database is down");
+        }));
+
+        assertEquals("user", cache.get(1L).get());
+    }
+
+    @Test
+    void testGetWithLoaderDoesNotRefreshEntryOfUnknownExpiry() {
+        TwoLevelCache cache = eagerlyRefreshingCache();
+        when(remote.get(1L)).thenReturn(new SimpleValueWrapper("user"));
+
+        assertEquals("user", cache.get(1L, () -> "updated user"));
+
+        verify(remote, never()).put(any(), any());
+    }
+
+    @Test
+    void testJitteredTtlIsStablePerKeyAndSpread() {
+        JitteredTtlFunction ttlFunction = new JitteredTtlFunction(Duration.ofMinutes(10), 0.1, CacheNames.USER_CACHE);
+        Set<Duration> ttls = new HashSet<>();
+
+        for (long id = 0; id < 100; id++) {
+            Duration ttl = ttlFunction.getTimeToLive(id, "user");
+            assertEquals(ttl, ttlFunction.getTimeToLive(String.valueOf(id), "other user"));
+            assertTrue(ttl.compareTo(Duration.ofMinutes(9)) >= 0 && ttl.compareTo(Duration.ofMinutes(10)) <= 0);
+            ttls.add(ttl);
+        }
+
+        assertTrue(ttls.size() > 90);
+    }
+
+    @Test
+    void testPutWritesBothLevelsAndBroadcasts() {
+        cache.put(1L, "user");
+
+        assertEquals("user", cache.get(1L).get());
+        verify(remote).put(1L, "user");
+        verify(remote, never()).get(any());
+        verify(publisher).publishEvict(CacheNames.USER_CACHE, "1");
+    }
+
+    @Test
+    void testEvictDropsBothLevelsAndBroadcasts() {
+        cache.put(1L, "user");
+
+        cache.evict(1L);
+
+        assertNull(cache.get(1L));
+        verify(remoteBatch).writeAll(List.of(new RedisBatchCacheOperations.Write(CacheNames.USER_CACHE, 1L, null)));
+        verify(remote).evict(1L);
+        verify(publisher, times(2)).publishEvict(CacheNames.USER_CACHE, "1");
+    }
+
+    @Test
+    void testClearBroadcasts() {
+        cache.clear();
+
+        verify(remote).clear();
+        verify(publisher).publishClear(CacheNames.USER_CACHE);
+    }
+
+    @Test
+    void testEvictLocalKeepsRemote() {
+        cache.put(1L, "user");
+        when(remote.get(1L)).thenReturn(new SimpleValueWrapper("updated user"));
+
+        cache.evictLocal("1");
+
+        assertEquals("updated user", cache.get(1L).get());
+        verify(remote, never()).evict(any());
+    }
+
+    @Test
+    void testGetAllReadsOnlyLocalMissesFromRemote() {
+        cache.put(1L, "user");
+        when(remoteBatch.getAll(CacheNames.USER_CACHE, List.of(2L, 3L))).thenReturn(Arrays.asList("user2", null));
+
+        Map<Object, Object> found = cache.getAll(List.of(1L, 2L, 3L));
+
+        assertEquals(Map.of(1L, "user", 2L, "user2"), found);
+        assertEquals("user2", cache.get(2L).get());
+        verify(remote, never()).get(any());
+    }
+
+    @Test
+    void testPutAllWritesBothLevelsWithoutBroadcast() {
+        cache.putAll(Map.of(1L, "user"));
+
+        assertEquals("user", cache.get(1L).get());
+        verify(remoteBatch).putAll(CacheNames.USER_CACHE, Map.of(1L, "user"));
+        verify(publisher, never()).publishEvict(anyString(), anyString());
+    }
+
+    @Test
+    void testWritesInTransactionWaitForCommitAndGoInOnePipeline() {
+        when(remoteBatch.writeAll(anyList())).thenReturn(true);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.put(1L, "user");
+            cache.put(2L, "user2");
+            cache.put(1L, "updated user");
+            cache.evict(2L);
+
+            assertNull(cache.get(1L));
+            verifyNoInteractions(remoteBatch, publisher);
+
+            TransactionSynchronizationUtils.triggerAfterCommit();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(remoteBatch).writeAll(List.of(
+                new RedisBatchCacheOperations.Write(CacheNames.USER_CACHE, 1L, "updated user"),
+                new RedisBatchCacheOperations.Write(CacheNames.USER_CACHE, 2L, null)));
+        verify(remote, never()).put(any(), any());
+        verify(remote, never()).evict(any());
+        assertEquals("updated user", cache.get(1L).get());
+        verify(publisher).publishEvict(CacheNames.USER_CACHE, "1");
+        verify(publisher).publishEvict(CacheNames.USER_CACHE, "2");
+    }
+
+    @Test
+    void testWritesInRolledBackTransactionAreDropped() {
+        cache.put(1L, "user");
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.put(1L, "updated user");
+            cache.evict(1L);
+
+            TransactionSynchronizationUtils.invokeAfterCompletion(
+                    TransactionSynchronizationManager.getSynchronizations(),
+                    TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals("user", cache.get(1L).get());
+        verify(remote).put(1L, "user");
+        verify(remote, never()).evict(any());
+        verify(remoteBatch, never()).writeAll(anyList());
+    }
+
+    @Test
+    void testCommittedWritesSkippedByRedisGoThroughRemoteCache() {
+        when(remoteBatch.writeAll(anyList())).thenReturn(false);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.put(1L, "user");
+            cache.evict(2L);
+            TransactionSynchronizationUtils.triggerAfterCommit();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(remote).put(1L, "user");
+        verify(remote).evict(2L);
+        assertEquals("user", cache.get(1L).get());
+    }
+
+    @Test
+    void testEvictChangedDeletesInOnePipelineWithoutBroadcast() {
+        cache.put(1L, "user");
+        when(remoteBatch.writeAll(anyList())).thenReturn(true);
+
+        cache.evictChanged(List.of(1L, 2L));
+
+        assertNull(cache.get(1L));
+        verify(remoteBatch).writeAll(List.of(
+                new RedisBatchCacheOperations.Write(CacheNames.USER_CACHE, 1L, null),
+                new RedisBatchCacheOperations.Write(CacheNames.USER_CACHE, 2L, null)));
+        verify(remote, never()).evict(any());
+        verify(publisher, times(1)).publishEvict(CacheNames.USER_CACHE, "1");
+    }
+
+    @Test
+    void testInvalidationMessageRoundTrip() {
+        CacheInvalidationMessage evict = CacheInvalidationMessage.decode(
+                CacheInvalidationMessage.evict("node", CacheNames.USER_EMAIL_CACHE, "a@b.com").encode());
+        CacheInvalidationMessage clear = CacheInvalidationMessage.decode(
+                CacheInvalidationMessage.clear("node", CacheNames.CARD_CACHE).encode());
+
+        assertEquals("node", evict.origin());
+        assertEquals(CacheNames.USER_EMAIL_CACHE, evict.cacheName());
+        assertEquals("a@b.com", evict.key());
+        assertFalse(evict.isClear());
+        assertEquals(CacheNames.CARD_CACHE, clear.cacheName());
+        assertTrue(clear.isClear());
+    }
+}
@@ -0,0 +1,91 @@
+package com.innowise.microservice.integration;
+
+import com.innowise.microservice.entity.CardInfo;
+import com.innowise.microservice.entity.User;
+import com.innowise.microservice.repository.CardInfoRepository;
+import com.innowise.microservice.repository.UserRepository;
+import com.innowise.microservice.service.CardNumberFingerprint;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that ids come from pooled sequences, so Hibernate can send inserts in JDBC batches.
+ */
+public class BatchInsertIntegrationTest extends AbstractIntegrationTest {
+
+    private static final int BATCH_SIZE = 50;
+    private static final int ROWS = 120;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardInfoRepository cardRepository;
+
+    @Autowired
+    private CardNumberFingerprint fingerprints;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUpStatistics() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+    }
+
+    @Test
+    void testSaveAllUsersInBatches() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            users.add(new User(null, "Batch", "User", LocalDate.of(2000, 1, 1), "batch" + i + "@gmail.com"));
+        }
+
+        userRepository.saveAll(users);
+
+        assertEquals(ROWS, statistics.getEntityInsertCount());
+        assertTrue(statistics.getPrepareStatementCount() <= expectedStatements(),
+                "Prepared " + statistics.getPrepareStatementCount() + " statements for " + ROWS + " users");
+        assertEquals(ROWS, users.stream().map(User::getId).distinct().count());
+    }
+
+    @Test
+    void testSaveAllCardsInBatches() {
+        User user = userRepository.save(new User(null, "Card", "Owner", LocalDate.of(2000, 1, 1),
+                "card.owner@gmail.com"));
+        List<CardInfo> cards = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            String number = String.format("9999%012d", i);
+            cards.add(new CardInfo(null, user, number, fingerprints.of(number), "Card Owner",
+                    LocalDate.of(2030, 1, 1)));
+        }
+        statistics.clear();
+
+        cardRepository.saveAll(cards);
+
+        assertEquals(ROWS, statistics.getEntityInsertCount());
+        assertTrue(statistics.getPrepareStatementCount() <= expectedStatements(),
+                "Prepared " + statistics.getPrepareStatementCount() + " statements for " + ROWS + " cards");
+    }
+
+    /**
+     * One insert per batch plus one sequence call per block of ids.
+     */
+    private static long expectedStatements() {
+        long batches = (ROWS + BATCH_SIZE - 1) / BATCH_SIZE;
+        return batches * 2;
+    }
+}
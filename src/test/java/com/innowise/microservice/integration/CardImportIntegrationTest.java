@@ -0,0 +1,58 @@
+package com.innowise.microservice.integration;
+
+import com.innowise.microservice.dto.CardImportResultDto;
+import com.innowise.microservice.entity.CardInfo;
+import com.innowise.microservice.entity.User;
+import com.innowise.microservice.repository.CardInfoRepository;
+import com.innowise.microservice.repository.UserRepository;
+import com.innowise.microservice.service.CardImportService;
+import com.innowise.microservice.service.CardNumberFingerprint;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CardImportIntegrationTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private CardImportService importService;
+
+    @Autowired
+    private CardInfoRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardNumberFingerprint fingerprints;
+
+    @Test
+    void testImportCsv() {
+        User user = userRepository.save(new User(null, "Import", "Owner", LocalDate.of(1990, 1, 1),
+                "import.owner@gmail.com"));
+        cardRepository.save(new CardInfo(null, user, "5555000000000001", fingerprints.of("5555000000000001"),
+                "IMPORT OWNER", LocalDate.of(2030, 1, 1)));
+        String csv = "user_id,number,holder,expiration_date\n" +
+                user.getId() + ",5555000000000002,IMPORT OWNER,2030-01-01\n" +
+                user.getId() + ",5555000000000002,IMPORT OWNER,2031-01-01\n" +
+                user.getId() + ",5555000000000001,IMPORT OWNER,2030-01-01\n" +
+                "999999,5555000000000003,IMPORT OWNER,2030-01-01\n" +
+                user.getId() + ",55550000,IMPORT OWNER,2030-01-01\n";
+
+        CardImportResultDto result = importService.importCards(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), CardImportService.Format.CSV);
+
+        assertEquals(5, result.getReceived());
+        assertEquals(1, result.getAccepted());
+        assertEquals(1, result.getRejectedInvalid());
+        assertEquals(1, result.getRejectedUnknownOwner());
+        assertEquals(2, result.getRejectedDuplicateNumber());
+        CardInfo imported = cardRepository.findByNumberFingerprint(fingerprints.of("5555000000000002"))
+                .orElseThrow();
+        assertEquals(LocalDate.of(2030, 1, 1), imported.getExpirationDate());
+    }
+}
@@ -2,6 +2,7 @@ package com.innowise.microservice.integration;
 
 import com.innowise.microservice.dto.CardInfoRequestDto;
 import com.innowise.microservice.dto.CardInfoResponseDto;
+import com.innowise.microservice.dto.CardPageDto;
 import com.innowise.microservice.entity.User;
 import com.innowise.microservice.exception.CardNotFoundException;
 import com.innowise.microservice.exception.CardNumberExistsException;
@@ -40,7 +41,7 @@ public class CardInfoServiceIntegrationTest extends AbstractIntegrationTest {
         cardInfoRequestDto.setHolder("Hanna Montana");
         cardInfoRequestDto.setExpirationDate(LocalDate.of(2027, 11, 10));
 
-        CardInfoResponseDto createdCard = service.createCard(cardInfoRequestDto);
+        CardInfoResponseDto createdCard = service.createCard(cardInfoRequestDto, true);
 
         assertNotNull(createdCard);
         assertEquals(user.getId(), createdCard.getUserId().getId());
@@ -48,7 +49,7 @@ public class CardInfoServiceIntegrationTest extends AbstractIntegrationTest {
         assertEquals("Hanna Montana", createdCard.getHolder());
         assertEquals(LocalDate.of(2027, 11, 10), createdCard.getExpirationDate());
 
-        CardInfoResponseDto foundCard = service.getCardById(createdCard.getId());
+        CardInfoResponseDto foundCard = service.getCardById(createdCard.getId(), false);
 
         assertEquals(createdCard.getUserId().getId(), foundCard.getUserId().getId());
         assertEquals(createdCard.getNumber(), foundCard.getNumber());
@@ -56,10 +57,35 @@ public class CardInfoServiceIntegrationTest extends AbstractIntegrationTest {
         assertEquals(createdCard.getExpirationDate(), foundCard.getExpirationDate());
     }
 
+    @Test
+    void testGetCardsByOwnerPageByPage() {
+        User user = userRepository.save(new User(null, "Page", "Owner", LocalDate.of(1990, 1, 1),
+                "page.owner@gmail.com"));
+        for (int i = 0; i < 5; i++) {
+            CardInfoRequestDto cardDto = new CardInfoRequestDto();
+            cardDto.setUserId(user);
+            cardDto.setNumber("600000000000000" + i);
+            cardDto.setHolder("PAGE OWNER");
+            cardDto.setExpirationDate(LocalDate.of(2030, 1, 1));
+            service.createCard(cardDto, true);
+        }
+
+        CardPageDto firstPage = service.getCardsByOwner(user.getId(), null, 2, false);
+        CardPageDto secondPage = service.getCardsByOwner(user.getId(), firstPage.getNextAfterId(), 2, false);
+        CardPageDto lastPage = service.getCardsByOwner(user.getId(), secondPage.getNextAfterId(), 2, false);
+
+        assertEquals(2, firstPage.getCards().size());
+        assertEquals(2, secondPage.getCards().size());
+        assertEquals(1, lastPage.getCards().size());
+        assertNull(lastPage.getNextAfterId());
+        assertTrue(firstPage.getCards().get(1).getId() < secondPage.getCards().get(0).getId());
+        assertEquals("6000000000000004", lastPage.getCards().get(0).getNumber());
+    }
+
     @Test
     void testGetCardByNonExistingId() {
         Long nonExistingId = 105L;
-        assertThrows(CardNotFoundException.class, () -> service.getCardById(nonExistingId));
+        assertThrows(CardNotFoundException.class, () -> service.getCardById(nonExistingId, false));
     }
 
     @Test
@@ -74,7 +100,7 @@ public class CardInfoServiceIntegrationTest extends AbstractIntegrationTest {
         cardInfoRequestDto.setHolder("Patrick Wong");
         cardInfoRequestDto.setExpirationDate(LocalDate.of(2027, 12, 9));
 
-        CardInfoResponseDto createdCard = service.createCard(cardInfoRequestDto);
+        CardInfoResponseDto createdCard = service.createCard(cardInfoRequestDto, true);
         assertNotNull(createdCard);
 
         CardInfoRequestDto updatedCard = new CardInfoRequestDto();
@@ -83,7 +109,7 @@ public class CardInfoServiceIntegrationTest extends AbstractIntegrationTest {
         updatedCard.setHolder("Patrick Wang");
         updatedCard.setExpirationDate(LocalDate.of(2027, 12, 8));
 
-        CardInfoResponseDto updatedResponseCard = service.updateCardById(createdCard.getId(), updatedCard);
+        CardInfoResponseDto updatedResponseCard = service.updateCardById(createdCard.getId(), updatedCard, true);
 
         assertNotNull(updatedResponseCard);
         assertEquals(createdCard.getId(), updatedResponseCard.getId());
@@ -96,7 +122,7 @@ public class CardInfoServiceIntegrationTest extends AbstractIntegrationTest {
     @Test
     void testGetCardsByIdsEmpty() {
         List<Long> ids = List.of(100L, 101L);
-        assertThrows(EmptyCardListException.class, () -> service.getCardsByIds(ids));
+        assertThrows(EmptyCardListException.class, () -> service.getCardsByIds(ids, false));
     }
 
     @Test
@@ -110,7 +136,7 @@ public class CardInfoServiceIntegrationTest extends AbstractIntegrationTest {
         cardInfoRequestDto.setNumber("1111222233334444");
         cardInfoRequestDto.setHolder("Tom Young");
         cardInfoRequestDto.setExpirationDate(LocalDate.of(2027, 10, 1));
-        service.createCard(cardInfoRequestDto);
+        service.createCard(cardInfoRequestDto, true);
 
         CardInfoRequestDto cardInfoRequestDto2 = new CardInfoRequestDto();
         cardInfoRequestDto2.setUserId(user);
@@ -118,7 +144,7 @@ public class CardInfoServiceIntegrationTest extends AbstractIntegrationTest {
         cardInfoRequestDto2.setHolder("Tom Young");
         cardInfoRequestDto2.setExpirationDate(LocalDate.of(2027, 10, 2));
 
-        assertThrows(CardNumberExistsException.class, () -> service.createCard(cardInfoRequestDto2));
+        assertThrows(CardNumberExistsException.class, () -> service.createCard(cardInfoRequestDto2, true));
     }
 
     @Test
@@ -133,11 +159,11 @@ public class CardInfoServiceIntegrationTest extends AbstractIntegrationTest {
         cardInfoRequestDto.setHolder("Mary Alice");
         cardInfoRequestDto.setExpirationDate(LocalDate.of(2028, 1, 11));
 
-        CardInfoResponseDto createdCard = service.createCard(cardInfoRequestDto);
+        CardInfoResponseDto createdCard = service.createCard(cardInfoRequestDto, true);
         assertNotNull(createdCard);
 
         service.deleteCardById(createdCard.getId());
 
-        assertThrows(CardNotFoundException.class, () -> service.getCardById(createdCard.getId()));
+        assertThrows(CardNotFoundException.class, () -> service.getCardById(createdCard.getId(), false));
     }
 }
@@ -0,0 +1,115 @@
+package com.innowise.microservice.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.innowise.microservice.dto.CardInfoResponseDto;
+import com.innowise.microservice.dto.UserResponseDto;
+import com.innowise.microservice.entity.CardInfo;
+import com.innowise.microservice.entity.User;
+import com.innowise.microservice.repository.CardInfoRepository;
+import com.innowise.microservice.repository.UserRepository;
+import com.innowise.microservice.service.CardInfoService;
+import com.innowise.microservice.service.CardNumberFingerprint;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks with Hibernate statistics that reading cards takes the same number of statements however many cards and
+ * owners are read, and that writing the response does not load anything. Caches are off in tests, so every read
+ * goes to the database.
+ */
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+public class CardReadStatementsIntegrationTest extends AbstractIntegrationTest {
+
+    private static final int OWNERS = 20;
+
+    @Autowired
+    private CardInfoService service;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardInfoRepository cardRepository;
+
+    @Autowired
+    private CardNumberFingerprint fingerprints;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void testGetCardsByIdsWithOwnerIdsTakesOneStatement() throws Exception {
+        assertEquals(1, statementsToRead(createCards(10, "8100"), false));
+        assertEquals(1, statementsToRead(createCards(200, "8200"), false));
+    }
+
+    @Test
+    void testGetCardsByIdsWithExpandedOwnersTakesTwoStatements() throws Exception {
+        assertEquals(2, statementsToRead(createCards(10, "8300"), true));
+        assertEquals(2, statementsToRead(createCards(200, "8400"), true));
+    }
+
+    @Test
+    void testGetCardByIdWritesOwnerIdOnly() throws Exception {
+        CardInfo card = cardRepository.findAllById(createCards(1, "8500")).get(0);
+
+        JsonNode owner = objectMapper.valueToTree(service.getCardById(card.getId(), false)).get("userId");
+
+        assertEquals(card.getUserId().getId(), owner.get("id").asLong());
+        assertEquals(1, owner.size());
+        assertTrue(objectMapper.valueToTree(new UserResponseDto(1L, null, null, null, null)).has("email"));
+        assertEquals("Statement", service.getCardById(card.getId(), true).getUserId().getName());
+    }
+
+    /**
+     * Reads the cards and writes them as JSON, returning the number of statements both took.
+     */
+    private long statementsToRead(List<Long> ids, boolean expandOwner) throws Exception {
+        statistics.clear();
+        List<CardInfoResponseDto> cards = service.getCardsByIds(ids, expandOwner);
+        objectMapper.writeValueAsBytes(cards);
+        assertEquals(ids.size(), cards.size());
+        return statistics.getPrepareStatementCount();
+    }
+
+    /**
+     * Creates cards spread over new owners, numbered from the given four-digit prefix.
+     */
+    private List<Long> createCards(int count, String prefix) {
+        List<User> owners = new ArrayList<>(OWNERS);
+        for (int i = 0; i < OWNERS; i++) {
+            owners.add(new User(null, "Statement", "Owner", LocalDate.of(2000, 1, 1),
+                    "statement" + prefix + "." + i + "@gmail.com"));
+        }
+        owners = userRepository.saveAll(owners);
+        List<CardInfo> cards = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String number = prefix + String.format("%012d", i);
+            cards.add(new CardInfo(null, owners.get(i % OWNERS), number, fingerprints.of(number), "STATEMENT OWNER",
+                    LocalDate.of(2030, 1, 31)));
+        }
+        return cardRepository.saveAll(cards).stream().map(CardInfo::getId).toList();
+    }
+}
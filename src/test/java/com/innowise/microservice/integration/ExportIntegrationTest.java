@@ -0,0 +1,134 @@
+package com.innowise.microservice.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.innowise.microservice.entity.CardInfo;
+import com.innowise.microservice.entity.User;
+import com.innowise.microservice.repository.CardInfoRepository;
+import com.innowise.microservice.repository.UserRepository;
+import com.innowise.microservice.service.CardNumberFingerprint;
+import com.innowise.microservice.service.ExportService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that exports are streamed: heap use while writing a large table stays well below the size of its export.
+ */
+public class ExportIntegrationTest extends AbstractIntegrationTest {
+
+    private static final int SYNTHETIC_USERS = 300_000;
+    private static final long SAMPLE_EVERY_BYTES = 4L * 1024 * 1024;
+    private static final long MAX_HEAP_GROWTH = 16L * 1024 * 1024;
+
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardInfoRepository cardRepository;
+
+    @Autowired
+    private CardNumberFingerprint fingerprints;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void testExportUsersInConstantMemory() throws Exception {
+        jdbcTemplate.update("INSERT INTO users (id, name, surname, birth_date, email) " +
+                "SELECT nextval('users_id_seq'), 'Export', 'User', DATE '2000-01-01', 'export' || g || '@gmail.com' " +
+                "FROM generate_series(1, ?) g", SYNTHETIC_USERS);
+        HeapSamplingOutputStream output = new HeapSamplingOutputStream();
+
+        try {
+            exportService.exportUsers(output);
+        } finally {
+            jdbcTemplate.update("DELETE FROM users WHERE surname = 'User' AND email LIKE 'export%'");
+        }
+
+        assertTrue(output.lines >= SYNTHETIC_USERS, "Exported " + output.lines + " lines");
+        assertTrue(output.bytes > 2 * MAX_HEAP_GROWTH, "Exported only " + output.bytes + " bytes");
+        assertTrue(output.maxHeapGrowth < MAX_HEAP_GROWTH,
+                "Heap grew by " + output.maxHeapGrowth + " bytes while exporting " + output.bytes + " bytes");
+    }
+
+    @Test
+    void testExportCardsCanBeImported() throws Exception {
+        User user = userRepository.save(new User(null, "Export", "Owner", LocalDate.of(2000, 1, 1),
+                "export.owner@gmail.com"));
+        CardInfo card = cardRepository.save(new CardInfo(null, user, "7777000000000001",
+                fingerprints.of("7777000000000001"), "EXPORT OWNER", LocalDate.of(2030, 1, 31)));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        exportService.exportCards(output);
+
+        JsonNode line = null;
+        for (String text : output.toString(StandardCharsets.UTF_8).split("\n")) {
+            JsonNode node = objectMapper.readTree(text);
+            if (node.get("id").asLong() == card.getId()) {
+                line = node;
+            }
+        }
+        assertNotNull(line);
+        assertEquals(user.getId(), line.get("userId").asLong());
+        assertEquals("7777000000000001", line.get("number").asText());
+        assertEquals("EXPORT OWNER", line.get("holder").asText());
+        assertEquals("2030-01-31", line.get("expirationDate").asText());
+    }
+
+    /**
+     * Discards the export while counting it, and measures the heap after a collection every few megabytes.
+     */
+    private static class HeapSamplingOutputStream extends OutputStream {
+
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private final long baseline;
+        private long bytes;
+        private long lines;
+        private long nextSample = SAMPLE_EVERY_BYTES;
+        private long maxHeapGrowth;
+
+        HeapSamplingOutputStream() {
+            baseline = usedHeap();
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                if (buffer[i] == '\n') {
+                    lines++;
+                }
+            }
+            bytes += length;
+            if (bytes >= nextSample) {
+                nextSample += SAMPLE_EVERY_BYTES;
+                maxHeapGrowth = Math.max(maxHeapGrowth, usedHeap() - baseline);
+            }
+        }
+
+        private long usedHeap() {
+            System.gc();
+            return memory.getHeapMemoryUsage().getUsed();
+        }
+    }
+}
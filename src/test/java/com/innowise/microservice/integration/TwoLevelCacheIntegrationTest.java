@@ -0,0 +1,208 @@
+package com.innowise.microservice.integration;
+
+import com.innowise.microservice.cache.CacheInvalidationListener;
+import com.innowise.microservice.cache.CacheInvalidationPublisher;
+import com.innowise.microservice.cache.CacheNames;
+import com.innowise.microservice.cache.HotKeyTracker;
+import com.innowise.microservice.cache.KnownIds;
+import com.innowise.microservice.cache.RedisBatchCacheOperations;
+import com.innowise.microservice.cache.RedisCircuitBreaker;
+import com.innowise.microservice.cache.TwoLevelCache;
+import com.innowise.microservice.cache.TwoLevelCacheManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs two cache managers against one Redis, as two replicas of the service would.
+ */
+@Testcontainers
+public class TwoLevelCacheIntegrationTest {
+
+    private static final String CHANNEL = "cache-invalidation-test";
+
+    @Container
+    static GenericContainer<?> redis = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    private LettuceConnectionFactory connectionFactory;
+    private RedisMessageListenerContainer firstListener;
+    private RedisMessageListenerContainer secondListener;
+    private TwoLevelCacheManager firstNode;
+    private TwoLevelCacheManager secondNode;
+
+    @BeforeEach
+    void setUpNodes() {
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(redis.getHost(), redis.getMappedPort(6379)));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        connectionFactory.getConnection().serverCommands().flushAll();
+
+        CacheInvalidationPublisher firstPublisher = publisher();
+        CacheInvalidationPublisher secondPublisher = publisher();
+        firstNode = cacheManager(firstPublisher);
+        secondNode = cacheManager(secondPublisher);
+        firstListener = listener(firstNode, firstPublisher);
+        secondListener = listener(secondNode, secondPublisher);
+    }
+
+    @AfterEach
+    void tearDownNodes() throws Exception {
+        firstListener.destroy();
+        secondListener.destroy();
+        firstNode.destroy();
+        secondNode.destroy();
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void testPutOnOneNodeInvalidatesLocalLevelOfOtherNode() throws InterruptedException {
+        Cache first = firstNode.getCache(CacheNames.USER_CACHE);
+        Cache second = secondNode.getCache(CacheNames.USER_CACHE);
+
+        first.put(1L, "Hanna");
+        assertEquals("Hanna", second.get(1L).get());
+
+        first.put(1L, "Patrick");
+
+        assertTrue(awaitValue(second, 1L, "Patrick"));
+    }
+
+    @Test
+    void testEvictOnOneNodeInvalidatesLocalLevelOfOtherNode() throws InterruptedException {
+        Cache first = firstNode.getCache(CacheNames.CARD_CACHE);
+        Cache second = secondNode.getCache(CacheNames.CARD_CACHE);
+
+        first.put(7L, "card");
+        assertEquals("card", second.get(7L).get());
+
+        first.evict(7L);
+
+        assertTrue(awaitValue(second, 7L, null));
+    }
+
+    @Test
+    void testLocalLevelServesReadsWithoutRedis() {
+        Cache first = firstNode.getCache(CacheNames.USER_CACHE);
+        first.put(2L, "Tom");
+
+        connectionFactory.getConnection().serverCommands().flushAll();
+
+        assertEquals("Tom", first.get(2L).get());
+    }
+
+    @Test
+    void testBatchReadMixesLocalAndRedisEntries() {
+        TwoLevelCache first = (TwoLevelCache) firstNode.getCache(CacheNames.USER_CACHE);
+        TwoLevelCache second = (TwoLevelCache) secondNode.getCache(CacheNames.USER_CACHE);
+
+        first.putAll(Map.of(1L, "Hanna", 2L, "Patrick"));
+        second.put(3L, "Tom");
+
+        Map<Object, Object> found = second.getAll(List.of(1L, 2L, 3L, 4L));
+
+        assertEquals(Map.of(1L, "Hanna", 2L, "Patrick", 3L, "Tom"), found);
+    }
+
+    @Test
+    void testBatchWriteKeepsNewerRedisEntries() throws Exception {
+        TwoLevelCache first = (TwoLevelCache) firstNode.getCache(CacheNames.USER_CACHE);
+        TwoLevelCache second = (TwoLevelCache) secondNode.getCache(CacheNames.USER_CACHE);
+
+        second.put(1L, "Hanna");
+        first.putAll(Map.of(1L, "Stale Hanna", 2L, "Patrick"));
+
+        TwoLevelCacheManager thirdNode = cacheManager(publisher());
+        try {
+            Map<Object, Object> found = ((TwoLevelCache) thirdNode.getCache(CacheNames.USER_CACHE))
+                    .getAll(List.of(1L, 2L));
+
+            assertEquals(Map.of(1L, "Hanna", 2L, "Patrick"), found);
+        } finally {
+            thirdNode.destroy();
+        }
+    }
+
+    @Test
+    void testValueLoadedBeforeEvictionIsNotWrittenBack() {
+        TwoLevelCache first = (TwoLevelCache) firstNode.getCache(CacheNames.USER_CACHE);
+        TwoLevelCache second = (TwoLevelCache) secondNode.getCache(CacheNames.USER_CACHE);
+        first.put(1L, "Hanna");
+        first.evict(1L);
+
+        assertEquals("Stale Hanna", second.get(1L, () -> "Stale Hanna"));
+
+        assertNull(first.get(1L));
+        assertNull(second.get(1L));
+    }
+
+    private boolean awaitValue(Cache cache, Object key, Object expected) throws InterruptedException {
+        for (int attempt = 0; attempt < 50; attempt++) {
+            Cache.ValueWrapper value = cache.get(key);
+            Object actual = value == null ? null : value.get();
+            if (expected == null ? actual == null : expected.equals(actual)) {
+                return true;
+            }
+            Thread.sleep(100);
+        }
+        return false;
+    }
+
+    private CacheInvalidationPublisher publisher() {
+        return new CacheInvalidationPublisher(new StringRedisTemplate(connectionFactory), CHANNEL,
+                new RedisCircuitBreaker(connectionFactory, 5, new SimpleMeterRegistry()));
+    }
+
+    private TwoLevelCacheManager cacheManager(CacheInvalidationPublisher publisher) {
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(connectionFactory, 5, new SimpleMeterRegistry());
+        RedisCacheConfiguration configuration = RedisCacheConfiguration.defaultCacheConfig()
+                .disableCachingNullValues()
+                .serializeValuesWith(RedisSerializationContext.SerializationPair
+                        .fromSerializer(new GenericJackson2JsonRedisSerializer()));
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(connectionFactory)
+                .cacheDefaults(configuration)
+                .build();
+        redisCacheManager.afterPropertiesSet();
+        return new TwoLevelCacheManager(redisCacheManager,
+                new RedisBatchCacheOperations(connectionFactory, connectionFactory, configuration, Map.of(),
+                        breaker, Duration.ofSeconds(5)), publisher,
+                Set.of(CacheNames.USER_CACHE, CacheNames.USER_EMAIL_CACHE, CacheNames.CARD_CACHE),
+                100, Duration.ofMinutes(1), Executors.newSingleThreadExecutor(), 1.0,
+                mock(HotKeyTracker.class), Duration.ofMinutes(10), breaker, 100);
+    }
+
+    private RedisMessageListenerContainer listener(TwoLevelCacheManager cacheManager,
+                                                   CacheInvalidationPublisher publisher) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(new CacheInvalidationListener(cacheManager, mock(KnownIds.class),
+                publisher.getNodeId()),
+                new ChannelTopic(publisher.getChannel()));
+        container.afterPropertiesSet();
+        container.start();
+        return container;
+    }
+}
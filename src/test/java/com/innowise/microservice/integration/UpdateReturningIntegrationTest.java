@@ -0,0 +1,127 @@
+package com.innowise.microservice.integration;
+
+import com.innowise.microservice.dto.CardInfoRequestDto;
+import com.innowise.microservice.dto.CardInfoResponseDto;
+import com.innowise.microservice.dto.UserRequestDto;
+import com.innowise.microservice.dto.UserResponseDto;
+import com.innowise.microservice.entity.CardInfo;
+import com.innowise.microservice.entity.User;
+import com.innowise.microservice.exception.CardNumberExistsException;
+import com.innowise.microservice.exception.UserEmailExistsException;
+import com.innowise.microservice.repository.CardInfoRepository;
+import com.innowise.microservice.repository.UserRepository;
+import com.innowise.microservice.service.CardInfoService;
+import com.innowise.microservice.service.CardNumberFingerprint;
+import com.innowise.microservice.service.UserService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that updates write and read back the row with one statement.
+ */
+public class UpdateReturningIntegrationTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private CardInfoService cardService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardInfoRepository cardRepository;
+
+    @Autowired
+    private CardNumberFingerprint fingerprints;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private User user;
+
+    @BeforeEach
+    void setUpStatistics() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        user = userRepository.save(new User(null, "Update", "Owner", LocalDate.of(1990, 1, 1),
+                "update.owner." + System.nanoTime() + "@gmail.com"));
+        statistics.clear();
+    }
+
+    @Test
+    void testUpdateUserIsOneStatement() {
+        UserRequestDto userDto = new UserRequestDto();
+        userDto.setName("Updated");
+        userDto.setSurname("Owner");
+        userDto.setBirthDate(LocalDate.of(1991, 1, 1));
+        userDto.setEmail("updated." + user.getEmail());
+
+        UserResponseDto updatedUser = userService.updateUserById(user.getId(), userDto);
+
+        assertEquals("Updated", updatedUser.getName());
+        assertEquals(userDto.getEmail(), updatedUser.getEmail());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void testUpdateUserTakenEmail() {
+        User otherUser = userRepository.save(new User(null, "Other", "Owner", LocalDate.of(1990, 1, 1),
+                "other." + user.getEmail()));
+        UserRequestDto userDto = new UserRequestDto();
+        userDto.setName("Update");
+        userDto.setSurname("Owner");
+        userDto.setBirthDate(LocalDate.of(1990, 1, 1));
+        userDto.setEmail(otherUser.getEmail());
+
+        assertThrows(UserEmailExistsException.class, () -> userService.updateUserById(user.getId(), userDto));
+    }
+
+    @Test
+    void testUpdateCardWritesOnce() {
+        String number = String.format("7%015d", System.nanoTime() % 1_000_000_000_000_000L);
+        CardInfo card = cardRepository.save(new CardInfo(null, user, number, fingerprints.of(number),
+                "UPDATE OWNER", LocalDate.of(2030, 1, 1)));
+        statistics.clear();
+        CardInfoRequestDto cardDto = new CardInfoRequestDto();
+        cardDto.setUserId(user);
+        cardDto.setNumber(number);
+        cardDto.setHolder("UPDATED OWNER");
+        cardDto.setExpirationDate(LocalDate.of(2031, 1, 1));
+
+        CardInfoResponseDto updatedCard = cardService.updateCardById(card.getId(), cardDto, true);
+
+        assertEquals("UPDATED OWNER", updatedCard.getHolder());
+        assertEquals(user.getId(), updatedCard.getUserId().getId());
+        // the owner is read through USER_CACHE, which the test profile disables
+        assertTrue(statistics.getPrepareStatementCount() <= 2,
+                "Prepared " + statistics.getPrepareStatementCount() + " statements");
+    }
+
+    @Test
+    void testUpdateCardTakenNumber() {
+        String number = String.format("8%015d", System.nanoTime() % 1_000_000_000_000_000L);
+        CardInfo card = cardRepository.save(new CardInfo(null, user, number, fingerprints.of(number),
+                "UPDATE OWNER", LocalDate.of(2030, 1, 1)));
+        String otherNumber = String.valueOf(Long.parseLong(number) + 1);
+        CardInfo otherCard = cardRepository.save(new CardInfo(null, user, otherNumber, fingerprints.of(otherNumber),
+                "UPDATE OWNER", LocalDate.of(2030, 1, 1)));
+        CardInfoRequestDto cardDto = new CardInfoRequestDto();
+        cardDto.setUserId(user);
+        cardDto.setNumber(otherCard.getNumber());
+        cardDto.setHolder("UPDATE OWNER");
+        cardDto.setExpirationDate(LocalDate.of(2030, 1, 1));
+
+        assertThrows(CardNumberExistsException.class, () -> cardService.updateCardById(card.getId(), cardDto, true));
+    }
+}
@@ -1,7 +1,10 @@
 package com.innowise.microservice.integration;
 
+import com.innowise.microservice.dto.UserBatchResultDto;
+import com.innowise.microservice.dto.UserPageDto;
 import com.innowise.microservice.dto.UserRequestDto;
 import com.innowise.microservice.dto.UserResponseDto;
+import com.innowise.microservice.entity.User;
 import com.innowise.microservice.exception.EmptyUserListException;
 import com.innowise.microservice.exception.UserEmailExistsException;
 import com.innowise.microservice.exception.UserNotFoundException;
@@ -13,7 +16,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataIntegrityViolationException;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -46,6 +54,25 @@ public class UserServiceIntegrationTest extends AbstractIntegrationTest {
         assertEquals(userResponseDto.getId(), foundUserResponseDto.getId());
     }
 
+    @Test
+    void testListUsersVisitsEveryUserOnce() {
+        for (int i = 0; i < 7; i++) {
+            repository.save(new User(null, "List", "User", LocalDate.of(2000, 1, 1), "list" + i + "@gmail.com"));
+        }
+        List<Long> listedIds = new ArrayList<>();
+
+        String cursor = null;
+        do {
+            UserPageDto page = service.listUsers(cursor, 3);
+            assertTrue(page.getUsers().size() <= 3);
+            page.getUsers().forEach(user -> listedIds.add(user.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        List<Long> allIds = repository.findAll().stream().map(User::getId).sorted().toList();
+        assertEquals(allIds, listedIds);
+    }
+
     @Test
     void testGetUserByNonExistingId() {
         Long nonExistingId = 105L;
@@ -121,4 +148,55 @@ public class UserServiceIntegrationTest extends AbstractIntegrationTest {
 
         assertThrows(UserNotFoundException.class, () -> service.getUserById(userResponseDto.getId()));
     }
+
+    @Test
+    void testCreateUsersSkipsTakenEmails() {
+        UserRequestDto existingUserDto = new UserRequestDto();
+        existingUserDto.setName("Anna");
+        existingUserDto.setSurname("Stone");
+        existingUserDto.setBirthDate(LocalDate.of(1999, 4, 4));
+        existingUserDto.setEmail("anna.stone@gmail.com");
+        service.createUser(existingUserDto);
+
+        UserRequestDto newUserDto = new UserRequestDto();
+        newUserDto.setName("Mark");
+        newUserDto.setSurname("Stone");
+        newUserDto.setBirthDate(LocalDate.of(1998, 8, 8));
+        newUserDto.setEmail("mark.stone@gmail.com");
+
+        List<UserBatchResultDto> results = service.createUsers(List.of(newUserDto, existingUserDto));
+
+        assertEquals(201, results.get(0).getStatus());
+        assertEquals(409, results.get(1).getStatus());
+        assertEquals("mark.stone@gmail.com", service.getUserById(results.get(0).getUser().getId()).getEmail());
+        assertEquals(LocalDate.of(1998, 8, 8), results.get(0).getUser().getBirthDate());
+        assertEquals("User with email anna.stone@gmail.com already exists", results.get(1).getMessage());
+    }
+
+    @Test
+    void testConcurrentCreatesWithSameEmail() throws Exception {
+        UserRequestDto userRequestDto = new UserRequestDto();
+        userRequestDto.setName("Rose");
+        userRequestDto.setSurname("Hill");
+        userRequestDto.setBirthDate(LocalDate.of(1997, 7, 7));
+        userRequestDto.setEmail("rose.hill@gmail.com");
+
+        List<Future<UserResponseDto>> creates = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            creates.add(executor.submit(() -> service.createUser(userRequestDto)));
+        }
+        executor.shutdown();
+
+        int created = 0;
+        for (Future<UserResponseDto> create : creates) {
+            try {
+                create.get();
+                created++;
+            } catch (ExecutionException e) {
+                assertInstanceOf(UserEmailExistsException.class, e.getCause());
+            }
+        }
+        assertEquals(1, created);
+    }
 }
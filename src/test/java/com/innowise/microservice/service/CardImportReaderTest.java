@@ -0,0 +1,67 @@
+package com.innowise.microservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CardImportReaderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+    private final CardNumberFingerprint fingerprints = new CardNumberFingerprint("test-key");
+    private final ByteArrayOutputStream copied = new ByteArrayOutputStream();
+
+    @Test
+    void testReadNdjson() throws Exception {
+        CardImportReader reader = read(CardImportService.Format.NDJSON, """
+                {"userId":1,"number":"1234123412341234","holder":"HANNA MONTANA","expirationDate":"2027-11-10"}
+
+                {"userId":2,"number":"1234","holder":"PATRICK WONG","expirationDate":"2027-12-09"}
+                not json
+                {"userId":3,"number":"4321432143214321","holder":"TOM YOUNG","expirationDate":"2028-01-01"}
+                """, 10);
+
+        assertEquals(4, reader.received());
+        assertEquals(2, reader.invalid());
+        assertEquals(List.of("line 3: number must match \"\\d{16}\"", "line 4: cannot be parsed"), reader.errors());
+        assertEquals(copyRow(1, 1, "1234123412341234", "HANNA MONTANA", "2027-11-10")
+                        + copyRow(5, 3, "4321432143214321", "TOM YOUNG", "2028-01-01"),
+                copied.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testReadCsvSkipsHeader() throws Exception {
+        CardImportReader reader = read(CardImportService.Format.CSV, """
+                user_id,number,holder,expiration_date
+                1,1234123412341234,HANNA MONTANA,2027-11-10
+                x,1234123412341234,HANNA MONTANA,2027-11-10
+                2,4321432143214321,PATRICK WONG
+                """, 1);
+
+        assertEquals(3, reader.received());
+        assertEquals(2, reader.invalid());
+        assertEquals(List.of("line 3: cannot be parsed"), reader.errors());
+        assertEquals(copyRow(2, 1, "1234123412341234", "HANNA MONTANA", "2027-11-10"),
+                copied.toString(StandardCharsets.UTF_8));
+    }
+
+    private CardImportReader read(CardImportService.Format format, String input, int maxErrors) throws Exception {
+        CardImportReader reader = new CardImportReader(objectMapper, validator, fingerprints, format, maxErrors);
+        reader.read(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), copied::write);
+        return reader;
+    }
+
+    private String copyRow(long line, long userId, String number, String holder, String expirationDate) {
+        return line + "," + userId + "," + number + ",\\x" + fingerprints.hexOf(number) + ",\"" + holder + "\","
+                + expirationDate + "\n";
+    }
+}
@@ -1,19 +1,37 @@
 package com.innowise.microservice.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.innowise.microservice.cache.KnownIds;
+import com.innowise.microservice.cache.OwnerCardIds;
+import com.innowise.microservice.cache.ResponseBodyCache;
+import com.innowise.microservice.cache.SingleFlight;
+import com.innowise.microservice.dto.CardInfoCacheEntry;
 import com.innowise.microservice.dto.CardInfoRequestDto;
 import com.innowise.microservice.dto.CardInfoResponseDto;
+import com.innowise.microservice.dto.CardPageDto;
+import com.innowise.microservice.dto.OwnerIdDto;
+import com.innowise.microservice.dto.UserResponseDto;
 import com.innowise.microservice.entity.CardInfo;
 import com.innowise.microservice.entity.User;
 import com.innowise.microservice.exception.CardNotFoundException;
 import com.innowise.microservice.exception.CardNumberExistsException;
+import com.innowise.microservice.exception.CardWithNumberNotFoundException;
 import com.innowise.microservice.exception.EmptyCardListException;
 import com.innowise.microservice.mapper.CardInfoMapper;
 import com.innowise.microservice.repository.CardInfoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
@@ -21,16 +39,41 @@ import java.util.Optional;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.Mockito.*;
 
 public class CardInfoServiceTest {
 
+    private static final String FINGERPRINT_KEY = "test-key";
+
     @Mock
     private CardInfoMapper mapper;
 
     @Mock
     private CardInfoRepository repository;
 
+    @Mock
+    private KnownIds knownIds;
+
+    @Mock
+    private UserService userService;
+
+    @Spy
+    private CacheManager cacheManager = new ConcurrentMapCacheManager();
+
+    @Spy
+    private SingleFlight singleFlight = new SingleFlight(new SimpleMeterRegistry());
+
+    @Spy
+    private OwnerCardIds ownerCardIds = new OwnerCardIds(cacheManager, true, 2);
+
+    @Spy
+    private CardNumberFingerprint fingerprints = new CardNumberFingerprint(FINGERPRINT_KEY);
+
+    @Spy
+    private ResponseBodyCache responseBodies = new ResponseBodyCache(
+            new ObjectMapper().registerModule(new JavaTimeModule()), true, 100);
+
     @InjectMocks
     private CardInfoService service;
 
@@ -38,6 +81,10 @@ public class CardInfoServiceTest {
     private User user2;
     private CardInfo card;
     private CardInfo card2;
+    private UserResponseDto userDto;
+    private UserResponseDto userDto2;
+    private CardInfoCacheEntry cachedCard;
+    private CardInfoCacheEntry cachedCard2;
     private CardInfoRequestDto requestCardDto;
     private CardInfoResponseDto responseCardDto;
     private CardInfoResponseDto responseCardDto2;
@@ -50,7 +97,7 @@ public class CardInfoServiceTest {
 
         user = new User(1L, "Hanna", "Montana", LocalDate.of(2000, 3, 20)
                 , "hanna00@gmail.com");
-        card = new CardInfo(1L, user, "1234123412341234", "Hanna Montana",
+        card = new CardInfo(1L, user, "1234123412341234", null, "Hanna Montana",
                 LocalDate.of(2027, 11, 10));
 
         requestCardDto = new CardInfoRequestDto();
@@ -59,9 +106,12 @@ public class CardInfoServiceTest {
         requestCardDto.setHolder("Hanna Montana");
         requestCardDto.setExpirationDate(LocalDate.of(2027, 11, 10));
 
+        userDto = userDto(user);
+        cachedCard = cachedCard(card);
+
         responseCardDto = new CardInfoResponseDto();
         responseCardDto.setId(1L);
-        responseCardDto.setUserId(user);
+        responseCardDto.setUserId(userDto);
         responseCardDto.setNumber("1234123412341234");
         responseCardDto.setHolder("Hanna Montana");
         responseCardDto.setExpirationDate(LocalDate.of(2027, 11, 10));
@@ -69,101 +119,240 @@ public class CardInfoServiceTest {
         user2 = new User(2L, "Patrick", "Wong", LocalDate.of(1995, 5, 15)
                 , "pat@gmail.com");
 
-        card2 = new CardInfo(2L, user2, "4444888844449999", "Patrick Wong",
+        card2 = new CardInfo(2L, user2, "4444888844449999", null, "Patrick Wong",
                 LocalDate.of(2027, 12, 9));
 
+        userDto2 = userDto(user2);
+        cachedCard2 = cachedCard(card2);
+
         responseCardDto2 = new CardInfoResponseDto();
         responseCardDto2.setId(2L);
-        responseCardDto2.setUserId(user2);
+        responseCardDto2.setUserId(userDto2);
         responseCardDto2.setNumber("4444888844449999");
         responseCardDto2.setHolder("Patrick Wong");
         responseCardDto2.setExpirationDate(LocalDate.of(2027, 12, 9));
+
+        when(mapper.toCardInfoCacheEntry(card)).thenReturn(cachedCard);
+        when(mapper.toCardInfoCacheEntry(card2)).thenReturn(cachedCard2);
+        when(mapper.toCardInfoResponseDto(cachedCard, userDto)).thenReturn(responseCardDto);
+        when(mapper.toCardInfoResponseDto(cachedCard2, userDto2)).thenReturn(responseCardDto2);
+        when(userService.findUsersByIds(List.of(1L))).thenReturn(List.of(userDto));
+        when(userService.findUsersByIds(List.of(2L))).thenReturn(List.of(userDto2));
+        when(userService.findUsersByIds(List.of(1L, 2L))).thenReturn(List.of(userDto, userDto2));
+        when(userService.findUsersByIds(List.of(2L, 1L))).thenReturn(List.of(userDto2, userDto));
     }
 
     @Test
     void testCreateCard() {
-        when(repository.findByNumber(requestCardDto.getNumber())).thenReturn(Optional.empty());
+        when(repository.findByNumberFingerprint(fingerprint(requestCardDto.getNumber()))).thenReturn(Optional.empty());
         when(mapper.toCardInfo(requestCardDto)).thenReturn(card);
         when(repository.save(card)).thenReturn(card);
-        when(mapper.toCardInfoResponseDto(card)).thenReturn(responseCardDto);
 
-        CardInfoResponseDto resultResponseCardDto = service.createCard(requestCardDto);
+        CardInfoResponseDto resultResponseCardDto = service.createCard(requestCardDto, true);
 
         assertNotNull(resultResponseCardDto);
         assertEquals(responseCardDto.getId(), resultResponseCardDto.getId());
         assertEquals(responseCardDto.getNumber(), resultResponseCardDto.getNumber());
-        verify(repository).findByNumber(requestCardDto.getNumber());
+        verify(repository).findByNumberFingerprint(fingerprint(requestCardDto.getNumber()));
         verify(repository).save(card);
+        assertArrayEquals(fingerprints.of(requestCardDto.getNumber()), card.getNumberFingerprint());
+        verify(knownIds).markExisting("CARD_CACHE", card.getId());
         verify(mapper).toCardInfo(requestCardDto);
-        verify(mapper).toCardInfoResponseDto(card);
+        verify(mapper).toCardInfoCacheEntry(card);
+    }
+
+    @Test
+    void testCreateCardWithOwnerIdOnly() {
+        CardInfoResponseDto createdCard = new CardInfoResponseDto();
+        when(repository.findByNumberFingerprint(any())).thenReturn(Optional.empty());
+        when(mapper.toCardInfo(requestCardDto)).thenReturn(card);
+        when(repository.save(card)).thenReturn(card);
+        when(mapper.toCardInfoResponseDto(cachedCard, new OwnerIdDto(1L)))
+                .thenReturn(createdCard);
+
+        assertSame(createdCard, service.createCard(requestCardDto, false));
+        verify(userService, never()).findUsersByIds(any());
     }
 
     @Test
     void testCreateCardNumberExists() {
-        when(repository.findByNumber(requestCardDto.getNumber())).thenReturn(Optional.of(card));
+        when(repository.findByNumberFingerprint(fingerprint(requestCardDto.getNumber()))).thenReturn(Optional.of(card));
 
-        assertThrows(CardNumberExistsException.class, () -> service.createCard(requestCardDto));
-        verify(repository).findByNumber(requestCardDto.getNumber());
+        assertThrows(CardNumberExistsException.class, () -> service.createCard(requestCardDto, true));
         verify(repository, never()).save(any());
         verify(mapper, never()).toCardInfo(any());
-        verify(mapper, never()).toCardInfoResponseDto(any());
+        verify(mapper, never()).toCardInfoResponseDto(any(), any());
+    }
+
+    @Test
+    void testCreateCardNumberTakenConcurrently() {
+        when(repository.findByNumberFingerprint(any())).thenReturn(Optional.empty());
+        when(mapper.toCardInfo(requestCardDto)).thenReturn(card);
+        when(repository.save(card)).thenThrow(new DataIntegrityViolationException("duplicate key",
+                new ConstraintViolationException("duplicate key", null, "uc_card_info_number_fingerprint")));
+
+        assertThrows(CardNumberExistsException.class, () -> service.createCard(requestCardDto, true));
+        verify(knownIds, never()).markExisting(any(), any());
+        verify(ownerCardIds, never()).evict(any());
     }
 
     @Test
     void testGetCardById() {
-        when(repository.findById(1L)).thenReturn(Optional.of(card));
-        when(mapper.toCardInfoResponseDto(card)).thenReturn(responseCardDto);
+        when(repository.findEntryById(1L)).thenReturn(Optional.of(cachedCard));
 
-        CardInfoResponseDto resultResponseCardDto = service.getCardById(1L);
+        CardInfoResponseDto resultResponseCardDto = service.getCardById(1L, true);
 
         assertNotNull(resultResponseCardDto);
         assertEquals(responseCardDto.getId(), resultResponseCardDto.getId());
         assertEquals(responseCardDto.getNumber(), resultResponseCardDto.getNumber());
         assertEquals(responseCardDto.getHolder(), resultResponseCardDto.getHolder());
         assertEquals(responseCardDto.getExpirationDate(), resultResponseCardDto.getExpirationDate());
-        verify(repository).findById(1L);
-        verify(mapper).toCardInfoResponseDto(card);
+        verify(repository).findEntryById(1L);
+        verify(repository, never()).findById(any());
+        verify(mapper, never()).toCardInfoCacheEntry(any());
     }
 
     @Test
     void testGetCardByIdNotFound() {
-        when(repository.findById(100L)).thenReturn(Optional.empty());
+        when(repository.findEntryById(100L)).thenReturn(Optional.empty());
 
-        CardNotFoundException ex = assertThrows(CardNotFoundException.class, () -> service.getCardById(100L));
+        CardNotFoundException ex = assertThrows(CardNotFoundException.class, () -> service.getCardById(100L, true));
         assertEquals("Card with id 100 not found", ex.getMessage());
-        verify(repository).findById(100L);
-        verify(mapper, never()).toCardInfoResponseDto(any());
+        verify(repository).findEntryById(100L);
+        verify(knownIds).markMissing("CARD_CACHE", 100L);
+        verify(mapper, never()).toCardInfoResponseDto(any(), any());
+    }
+
+    @Test
+    void testGetCardByIdKnownMissing() {
+        when(knownIds.isKnownMissing("CARD_CACHE", 100L)).thenReturn(true);
+
+        assertThrows(CardNotFoundException.class, () -> service.getCardById(100L, true));
+        verify(repository, never()).findEntryById(any());
     }
 
     @Test
     void testGetCardsByIds() {
         List<Long> ids = List.of(1L, 2L);
-        List<CardInfo> cards = List.of(card, card2);
 
-        when(repository.findAllById(ids)).thenReturn(cards);
-        when(mapper.toCardInfoResponseDto(card)).thenReturn(responseCardDto);
-        when(mapper.toCardInfoResponseDto(card2)).thenReturn(responseCardDto2);
+        when(repository.findEntriesByIds(ids)).thenReturn(List.of(cachedCard2, cachedCard));
 
-        List<CardInfoResponseDto> resultList = service.getCardsByIds(ids);
+        List<CardInfoResponseDto> resultList = service.getCardsByIds(ids, true);
 
         assertNotNull(resultList);
         assertEquals(CARD_LIST_SIZE, resultList.size());
         assertEquals("Hanna Montana", resultList.get(0).getHolder());
         assertEquals("Patrick Wong", resultList.get(1).getHolder());
-        verify(repository).findAllById(ids);
-        verify(mapper).toCardInfoResponseDto(card);
-        verify(mapper).toCardInfoResponseDto(card2);
+        verify(repository).findEntriesByIds(ids);
+        verify(repository, never()).findAllById(any());
+        verify(mapper, never()).toCardInfoCacheEntry(any());
+    }
+
+    @Test
+    void testGetCardsByIdsLoadsOnlyUncachedCards() {
+        cacheManager.getCache("CARD_CACHE").put(2L, cachedCard2);
+
+        when(repository.findEntriesByIds(List.of(1L))).thenReturn(List.of(cachedCard));
+
+        List<CardInfoResponseDto> resultList = service.getCardsByIds(List.of(2L, 1L), true);
+
+        assertEquals(List.of(responseCardDto2, responseCardDto), resultList);
+        assertEquals(cachedCard, cacheManager.getCache("CARD_CACHE").get(1L).get());
+        verify(repository).findEntriesByIds(List.of(1L));
+    }
+
+    @Test
+    void testGetCardByIdCachesCardWithoutOwner() {
+        when(repository.findEntryById(1L)).thenReturn(Optional.of(cachedCard));
+
+        service.getCardById(1L, true);
+        CardInfoResponseDto cachedResult = service.getCardById(1L, true);
+
+        assertSame(responseCardDto, cachedResult);
+        assertSame(cachedCard, cacheManager.getCache("CARD_CACHE").get(1L).get());
+        verify(repository, times(1)).findEntryById(1L);
+        verify(userService, times(2)).findUsersByIds(List.of(1L));
+        verify(mapper, times(2)).toCardInfoResponseDto(cachedCard, userDto);
+    }
+
+    @Test
+    void testGetCardByIdComposesChangedOwner() {
+        cacheManager.getCache("CARD_CACHE").put(1L, cachedCard);
+        service.getCardById(1L, true);
+        UserResponseDto renamedUser = userDto(new User(1L, "Hannah", "Montana", LocalDate.of(2000, 3, 20),
+                "hanna00@gmail.com"));
+        CardInfoResponseDto renamedCard = new CardInfoResponseDto();
+        renamedCard.setUserId(renamedUser);
+        when(userService.findUsersByIds(List.of(1L))).thenReturn(List.of(renamedUser));
+        when(mapper.toCardInfoResponseDto(cachedCard, renamedUser)).thenReturn(renamedCard);
+
+        assertSame(renamedCard, service.getCardById(1L, true));
+        verify(repository, never()).findEntryById(any());
+    }
+
+    @Test
+    void testGetCardBodyByIdIsWrittenOncePerCardAndOwner() {
+        cacheManager.getCache("CARD_CACHE").put(1L, cachedCard);
+
+        ResponseBodyCache.Body body = service.getCardBodyById(1L, true);
+
+        assertSame(body, service.getCardBodyById(1L, true));
+        verify(mapper, times(1)).toCardInfoResponseDto(cachedCard, userDto);
+
+        UserResponseDto renamedUser = userDto(new User(1L, "Hannah", "Montana", LocalDate.of(2000, 3, 20),
+                "hanna00@gmail.com"));
+        CardInfoResponseDto renamedCard = new CardInfoResponseDto();
+        renamedCard.setUserId(renamedUser);
+        when(userService.findUsersByIds(List.of(1L))).thenReturn(List.of(renamedUser));
+        when(mapper.toCardInfoResponseDto(cachedCard, renamedUser)).thenReturn(renamedCard);
+
+        assertNotEquals(body.eTag(), service.getCardBodyById(1L, true).eTag());
+    }
+
+    @Test
+    void testGetCardBodyByIdWithOwnerIdIsKeptApart() {
+        cacheManager.getCache("CARD_CACHE").put(1L, cachedCard);
+        CardInfoResponseDto cardWithOwnerId = new CardInfoResponseDto();
+        cardWithOwnerId.setId(1L);
+        when(mapper.toCardInfoResponseDto(cachedCard, new OwnerIdDto(1L)))
+                .thenReturn(cardWithOwnerId);
+
+        ResponseBodyCache.Body ownerId = service.getCardBodyById(1L, false);
+        ResponseBodyCache.Body owner = service.getCardBodyById(1L, true);
+
+        assertSame(ownerId, service.getCardBodyById(1L, false));
+        assertSame(owner, service.getCardBodyById(1L, true));
+        assertNotEquals(ownerId.eTag(), owner.eTag());
+        verify(userService, times(2)).findUsersByIds(List.of(1L));
     }
 
     @Test
     void testGetCardsByIdsEmpty() {
         List<Long> ids = List.of(100L, 101L);
 
-        when(repository.findAllById(ids)).thenReturn(new ArrayList<>());
-        EmptyCardListException ex = assertThrows(EmptyCardListException.class, () -> service.getCardsByIds(ids));
+        when(repository.findEntriesByIds(ids)).thenReturn(new ArrayList<>());
+        EmptyCardListException ex = assertThrows(EmptyCardListException.class, () -> service.getCardsByIds(ids, true));
         assertEquals("No cards found with ids: [100, 101]", ex.getMessage());
-        verify(repository).findAllById(ids);
-        verify(mapper, never()).toCardInfoResponseDto(any());
+        verify(repository).findEntriesByIds(ids);
+        verify(mapper, never()).toCardInfoResponseDto(any(), any());
+    }
+
+    @Test
+    void testGetCardsByIdsWithOwnerIdsOnly() {
+        UserResponseDto ownerId = new OwnerIdDto(1L);
+        UserResponseDto ownerId2 = new OwnerIdDto(2L);
+        CardInfoResponseDto card1WithOwnerId = new CardInfoResponseDto();
+        CardInfoResponseDto card2WithOwnerId = new CardInfoResponseDto();
+        when(repository.findEntriesByIds(List.of(1L, 2L))).thenReturn(List.of(cachedCard, cachedCard2));
+        when(mapper.toCardInfoResponseDto(cachedCard, ownerId)).thenReturn(card1WithOwnerId);
+        when(mapper.toCardInfoResponseDto(cachedCard2, ownerId2)).thenReturn(card2WithOwnerId);
+
+        List<CardInfoResponseDto> result = service.getCardsByIds(List.of(1L, 2L), false);
+
+        assertSame(card1WithOwnerId, result.get(0));
+        assertSame(card2WithOwnerId, result.get(1));
+        verify(repository).findEntriesByIds(List.of(1L, 2L));
+        verify(userService, never()).findUsersByIds(any());
     }
 
     @Test
@@ -173,24 +362,22 @@ public class CardInfoServiceTest {
         requestCardDto.setHolder("Patrick Wong");
         requestCardDto.setExpirationDate(LocalDate.of(2027, 12, 9));
 
-        when(repository.findByNumber(requestCardDto.getNumber())).thenReturn(Optional.empty());
-        when(repository.updateCardInfo(eq(1L), any(), anyString(), anyString(), any())).thenReturn(1);
-        when(repository.findById(1L)).thenReturn(Optional.of(card2));
-        when(mapper.toCardInfoResponseDto(card2)).thenReturn(responseCardDto2);
+        when(repository.updateCardInfo(eq(1L), any(), anyString(), any(), anyString(), any()))
+                .thenReturn(Optional.of(card2));
 
-        CardInfoResponseDto resultCardResponseDto = service.updateCardById(1L, requestCardDto);
+        CardInfoResponseDto resultCardResponseDto = service.updateCardById(1L, requestCardDto, true);
 
         assertNotNull(resultCardResponseDto);
-        assertEquals(user2, resultCardResponseDto.getUserId());
+        assertEquals(userDto2, resultCardResponseDto.getUserId());
         assertEquals("4444888844449999", resultCardResponseDto.getNumber());
         assertEquals("Patrick Wong", resultCardResponseDto.getHolder());
         assertEquals(LocalDate.of(2027, 12, 9), resultCardResponseDto.getExpirationDate());
 
-        verify(repository).findByNumber("4444888844449999");
-        verify(repository).updateCardInfo(1L, user2.getId(), "4444888844449999", "Patrick Wong",
-                LocalDate.of(2027, 12, 9));
-        verify(repository).findById(1L);
-        verify(mapper).toCardInfoResponseDto(card2);
+        verify(repository).updateCardInfo(eq(1L), eq(user2.getId()), eq("4444888844449999"),
+                fingerprint("4444888844449999"), eq("Patrick Wong"), eq(LocalDate.of(2027, 12, 9)));
+        verify(repository, never()).findByNumberFingerprint(any());
+        verify(repository, never()).findEntryById(any());
+        verify(mapper).toCardInfoCacheEntry(card2);
     }
 
     @Test
@@ -200,16 +387,23 @@ public class CardInfoServiceTest {
         requestCardDto.setHolder("Patrick Bom");
         requestCardDto.setExpirationDate(LocalDate.of(2027, 11, 10));
 
-        CardInfo sameNumberCard = new CardInfo(3L, user2, "4444888844449999", "Patrick Bom",
-                LocalDate.of(2028, 3, 25));
-
-        when(repository.findByNumber(requestCardDto.getNumber())).thenReturn(Optional.of(sameNumberCard));
+        when(repository.updateCardInfo(anyLong(), any(), anyString(), any(), anyString(), any()))
+                .thenThrow(new DataIntegrityViolationException("duplicate key",
+                        new ConstraintViolationException("duplicate key", null, "uc_card_info_number_fingerprint")));
 
         CardNumberExistsException ex = assertThrows(CardNumberExistsException.class,
-                () -> service.updateCardById(2L, requestCardDto));
+                () -> service.updateCardById(2L, requestCardDto, true));
         assertEquals("Card with number 4444888844449999 already exists", ex.getMessage());
-        verify(repository).findByNumber("4444888844449999");
-        verify(repository, never()).updateCardInfo(anyLong(), any(), anyString(), anyString(), any());
+        verify(repository, never()).findByNumberFingerprint(any());
+    }
+
+    @Test
+    void testUpdateCardNumberExistsByPlainIndex() {
+        when(repository.updateCardInfo(anyLong(), any(), anyString(), any(), anyString(), any()))
+                .thenThrow(new DataIntegrityViolationException("duplicate key",
+                        new ConstraintViolationException("duplicate key", null, "uc_card_info_number")));
+
+        assertThrows(CardNumberExistsException.class, () -> service.updateCardById(2L, requestCardDto, true));
     }
 
     @Test
@@ -219,33 +413,153 @@ public class CardInfoServiceTest {
         requestCardDto.setHolder("Patrick Bom");
         requestCardDto.setExpirationDate(LocalDate.of(2028, 3, 25));
 
-        when(repository.findByNumber(requestCardDto.getNumber())).thenReturn(Optional.empty());
         when(repository.updateCardInfo(eq(2L), eq(requestCardDto.getUserId().getId()),
-                eq(requestCardDto.getNumber()), eq(requestCardDto.getHolder()),
-                eq(requestCardDto.getExpirationDate()))).thenReturn(1);
-        when(repository.findById(2L)).thenReturn(Optional.empty());
+                eq(requestCardDto.getNumber()), any(), eq(requestCardDto.getHolder()),
+                eq(requestCardDto.getExpirationDate()))).thenReturn(Optional.empty());
 
         CardNotFoundException ex = assertThrows(CardNotFoundException.class,
-                () -> service.updateCardById(2L, requestCardDto));
+                () -> service.updateCardById(2L, requestCardDto, true));
         assertEquals("Card with id 2 not found", ex.getMessage());
-        verify(repository).findByNumber("4444888844448888");
-        verify(repository).updateCardInfo(2L, user2.getId(), "4444888844448888", "Patrick Bom",
-                LocalDate.of(2028, 3, 25));
-        verify(repository).findById(2L);
-        verify(mapper, never()).toCardInfoResponseDto(any());
+        verify(repository).updateCardInfo(eq(2L), eq(user2.getId()), eq("4444888844448888"),
+                fingerprint("4444888844448888"), eq("Patrick Bom"), eq(LocalDate.of(2028, 3, 25)));
+        verify(mapper, never()).toCardInfoResponseDto(any(), any());
+    }
+
+    @Test
+    void testGetCardByNumber() {
+        when(repository.findEntryByNumberFingerprint(fingerprint(card.getNumber())))
+                .thenReturn(Optional.of(cachedCard));
+
+        assertSame(responseCardDto, service.getCardByNumber(card.getNumber(), true));
+        assertSame(responseCardDto, service.getCardByNumber(card.getNumber(), true));
+
+        verify(repository, times(1)).findEntryByNumberFingerprint(any());
+        assertEquals(1L, cacheManager.getCache("CARD_NUMBER_CACHE").get(fingerprints.hexOf(card.getNumber())).get());
+        assertSame(cachedCard, cacheManager.getCache("CARD_CACHE").get(1L).get());
+    }
+
+    @Test
+    void testGetCardByNumberReloadsChangedNumber() {
+        cacheManager.getCache("CARD_NUMBER_CACHE").put(fingerprints.hexOf(card.getNumber()), 2L);
+        cacheManager.getCache("CARD_CACHE").put(2L, cachedCard2);
+        when(repository.findEntryByNumberFingerprint(fingerprint(card.getNumber())))
+                .thenReturn(Optional.of(cachedCard));
+
+        assertSame(responseCardDto, service.getCardByNumber(card.getNumber(), true));
+        assertEquals(1L, cacheManager.getCache("CARD_NUMBER_CACHE").get(fingerprints.hexOf(card.getNumber())).get());
+    }
+
+    @Test
+    void testGetCardByNumberNotFound() {
+        when(repository.findEntryByNumberFingerprint(any())).thenReturn(Optional.empty());
+
+        assertThrows(CardWithNumberNotFoundException.class, () -> service.getCardByNumber("0000000000000000", true));
+    }
+
+    @Test
+    void testGetCardsByOwner() {
+        CardInfo card3 = new CardInfo(3L, user, "5555666677778888", null, "Hanna Montana", LocalDate.of(2029, 1, 1));
+        CardInfoCacheEntry cachedCard3 = cachedCard(card3);
+        CardInfoResponseDto responseCardDto3 = new CardInfoResponseDto();
+        when(mapper.toCardInfoResponseDto(cachedCard3, userDto)).thenReturn(responseCardDto3);
+        when(userService.getUserById(1L)).thenReturn(userDto);
+        when(repository.findEntriesByOwnerAfter(1L, 0L, Limit.of(3))).thenReturn(List.of(cachedCard, cachedCard3));
+
+        CardPageDto firstPage = service.getCardsByOwner(1L, null, 1, true);
+        CardPageDto secondPage = service.getCardsByOwner(1L, firstPage.getNextAfterId(), 1, true);
+
+        assertEquals(List.of(responseCardDto), firstPage.getCards());
+        assertEquals(1L, firstPage.getNextAfterId());
+        assertEquals(List.of(responseCardDto3), secondPage.getCards());
+        assertNull(secondPage.getNextAfterId());
+        assertArrayEquals(new long[]{1L, 3L}, ownerCardIds.get(1L));
+        verify(repository, times(1)).findEntriesByOwnerAfter(any(), any(), any());
+        verify(repository, never()).findEntriesByIds(any());
+    }
+
+    @Test
+    void testGetCardsByOwnerPastCachedIds() {
+        ownerCardIds.put(1L, new long[]{1L, 3L, 5L});
+        when(userService.getUserById(1L)).thenReturn(userDto);
+        when(repository.findEntriesByOwnerAfter(1L, 3L, Limit.of(2))).thenReturn(List.of());
+
+        CardPageDto page = service.getCardsByOwner(1L, 3L, 1, true);
+
+        assertTrue(page.getCards().isEmpty());
+        assertNull(page.getNextAfterId());
+        verify(repository).findEntriesByOwnerAfter(1L, 3L, Limit.of(2));
+    }
+
+    @Test
+    void testGetCardsByOwnerDropsMovedCard() {
+        ownerCardIds.put(1L, new long[]{1L, 2L});
+        cacheManager.getCache("CARD_CACHE").put(1L, cachedCard);
+        cacheManager.getCache("CARD_CACHE").put(2L, cachedCard2);
+        when(userService.getUserById(1L)).thenReturn(userDto);
+        when(repository.findEntriesByOwnerAfter(1L, 0L, Limit.of(11))).thenReturn(List.of(cachedCard));
+
+        CardPageDto page = service.getCardsByOwner(1L, null, 10, true);
+
+        assertEquals(List.of(responseCardDto), page.getCards());
+        assertNull(page.getNextAfterId());
+        assertArrayEquals(new long[]{1L}, ownerCardIds.get(1L));
+    }
+
+    @Test
+    void testCreateCardEvictsOwnerCards() {
+        ownerCardIds.put(1L, new long[]{2L});
+        when(repository.findByNumberFingerprint(any())).thenReturn(Optional.empty());
+        when(mapper.toCardInfo(requestCardDto)).thenReturn(card);
+        when(repository.save(card)).thenReturn(card);
+
+        service.createCard(requestCardDto, true);
+
+        assertNull(ownerCardIds.get(1L));
     }
 
     @Test
     void testDeleteCardById() {
+        ownerCardIds.put(1L, new long[]{1L});
+        when(repository.deleteCardInfo(1L)).thenReturn(Optional.of(1L));
+
         assertDoesNotThrow(() -> service.deleteCardById(1L));
-        verify(repository).deleteById(1L);
+        verify(repository).deleteCardInfo(1L);
+        assertNull(ownerCardIds.get(1L));
     }
 
     @Test
     void testDeleteCardByIdNotFound() {
-        doThrow(new org.springframework.dao.EmptyResultDataAccessException(1)).when(repository).deleteById(100L);
+        when(repository.deleteCardInfo(100L)).thenReturn(Optional.empty());
         CardNotFoundException ex = assertThrows(CardNotFoundException.class, () -> service.deleteCardById(100L));
         assertEquals("Card with id 100 not found", ex.getMessage());
-        verify(repository).deleteById(100L);
+        verify(repository).deleteCardInfo(100L);
+        verify(knownIds, never()).markMissing(any(), any());
+    }
+
+    private static UserResponseDto userDto(User user) {
+        UserResponseDto userDto = new UserResponseDto();
+        userDto.setId(user.getId());
+        userDto.setName(user.getName());
+        userDto.setSurname(user.getSurname());
+        userDto.setBirthDate(user.getBirthDate());
+        userDto.setEmail(user.getEmail());
+        return userDto;
+    }
+
+    private static CardInfoCacheEntry cachedCard(CardInfo card) {
+        CardInfoCacheEntry cachedCard = new CardInfoCacheEntry();
+        cachedCard.setId(card.getId());
+        cachedCard.setOwnerId(card.getUserId().getId());
+        cachedCard.setNumber(card.getNumber());
+        cachedCard.setHolder(card.getHolder());
+        cachedCard.setExpirationDate(card.getExpirationDate());
+        return cachedCard;
+    }
+
+    /**
+     * Matches the fingerprint of a number without calling the spy while matchers are collected.
+     */
+    private static byte[] fingerprint(String number) {
+        return aryEq(new CardNumberFingerprint(FINGERPRINT_KEY).of(number));
     }
 }
@@ -1,24 +1,40 @@
 package com.innowise.microservice.service;
 
+import com.innowise.microservice.cache.KnownIds;
+import com.innowise.microservice.cache.SingleFlight;
+import com.innowise.microservice.dto.UserBatchResultDto;
+import com.innowise.microservice.dto.UserPageDto;
 import com.innowise.microservice.dto.UserRequestDto;
 import com.innowise.microservice.dto.UserResponseDto;
 import com.innowise.microservice.entity.User;
 import com.innowise.microservice.exception.EmptyUserListException;
+import com.innowise.microservice.exception.InvalidCursorException;
 import com.innowise.microservice.exception.UserEmailExistsException;
 import com.innowise.microservice.exception.UserNotFoundException;
 import com.innowise.microservice.exception.UserWithEmailNotFoundException;
 import com.innowise.microservice.mapper.UserMapper;
 import com.innowise.microservice.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Optional;
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -31,6 +47,18 @@ public class UserServiceTest {
     @Mock
     private UserRepository repository;
 
+    @Mock
+    private KnownIds knownIds;
+
+    @Spy
+    private CacheManager cacheManager = new ConcurrentMapCacheManager();
+
+    @Spy
+    private SingleFlight singleFlight = new SingleFlight(new SimpleMeterRegistry());
+
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
     @InjectMocks
     private UserService service;
 
@@ -77,37 +105,102 @@ public class UserServiceTest {
 
     @Test
     void testCreateUserUniqueEmail() {
-        when(repository.findByEmail(requestUserDto.getEmail())).thenReturn(Optional.empty());
-        when(mapper.toUser(requestUserDto)).thenReturn(user);
-        when(repository.save(user)).thenReturn(user);
+        when(repository.insertIfEmailFree("Hanna", "Montana", LocalDate.of(2000, 3, 20), "hanna00@gmail.com"))
+                .thenReturn(Optional.of(user));
         when(mapper.toUserResponseDto(user)).thenReturn(responseUserDto);
 
         UserResponseDto resUserResponseDto = service.createUser(requestUserDto);
 
         assertNotNull(resUserResponseDto);
         assertEquals(responseUserDto.getEmail(), resUserResponseDto.getEmail());
-        verify(repository).findByEmail("hanna00@gmail.com");
-        verify(repository).save(user);
-        verify(mapper).toUser(requestUserDto);
+        verify(repository).insertIfEmailFree("Hanna", "Montana", LocalDate.of(2000, 3, 20), "hanna00@gmail.com");
+        verify(repository, never()).findDtoByEmail(any());
+        verify(knownIds).markExisting("USER_CACHE", 1L);
         verify(mapper).toUserResponseDto(user);
     }
 
     @Test
     void testCreateUserEmailExists() {
-        when(repository.findByEmail(requestUserDto.getEmail())).thenReturn(Optional.of(user));
+        when(repository.insertIfEmailFree(any(), any(), any(), any())).thenReturn(Optional.empty());
 
         UserEmailExistsException ex = assertThrows(UserEmailExistsException.class,
                 () -> service.createUser(requestUserDto));
         assertEquals("User with email hanna00@gmail.com already exists", ex.getMessage());
-        verify(repository).findByEmail("hanna00@gmail.com");
         verify(repository, never()).save(any());
+        verify(knownIds, never()).markExisting(any(), any());
     }
 
     @Test
-    void testGetUserByIdExists() {
-        when(repository.findById(1L)).thenReturn(Optional.of(user));
+    void testCreateUsersReportsEachUser() {
+        UserRequestDto invalidUserDto = new UserRequestDto();
+        invalidUserDto.setName("hanna");
+        invalidUserDto.setSurname("Montana");
+        invalidUserDto.setEmail("not an email");
+        UserRequestDto takenEmailUserDto = new UserRequestDto();
+        takenEmailUserDto.setName("Patrick");
+        takenEmailUserDto.setSurname("Wong");
+        takenEmailUserDto.setBirthDate(LocalDate.of(1995, 5, 5));
+        takenEmailUserDto.setEmail("pat@gmail.com");
+        List<UserRequestDto> userDtos = Arrays.asList(requestUserDto, invalidUserDto, requestUserDto,
+                takenEmailUserDto, null);
+
+        when(repository.insertAllIfEmailsFree(any(), any(), any(), any())).thenReturn(List.of(user));
         when(mapper.toUserResponseDto(user)).thenReturn(responseUserDto);
 
+        List<UserBatchResultDto> results = service.createUsers(userDtos);
+
+        assertEquals(5, results.size());
+        assertEquals(201, results.get(0).getStatus());
+        assertEquals(responseUserDto, results.get(0).getUser());
+        assertEquals(400, results.get(1).getStatus());
+        assertEquals("birthDate must not be null, email must be a well-formed email address, "
+                + "name must match \"[A-Z][a-z]*\"", results.get(1).getMessage());
+        assertEquals(409, results.get(2).getStatus());
+        assertEquals("User with email hanna00@gmail.com already exists", results.get(2).getMessage());
+        assertEquals(409, results.get(3).getStatus());
+        assertEquals(3, results.get(3).getIndex());
+        assertEquals("User with email pat@gmail.com already exists", results.get(3).getMessage());
+        assertNull(results.get(3).getUser());
+        assertEquals(400, results.get(4).getStatus());
+        assertEquals("user must not be null", results.get(4).getMessage());
+        assertEquals(responseUserDto, cacheManager.getCache("USER_CACHE").get(1L).get());
+        verify(repository).insertAllIfEmailsFree(any(), any(), any(), argThat(emails -> Set.of(emails)
+                .equals(Set.of("hanna00@gmail.com", "pat@gmail.com"))));
+        verify(repository, never()).findDtoByEmail(any());
+        verify(knownIds).markAllExisting("USER_CACHE", List.of(1L));
+        verify(knownIds, never()).markExisting(any(), any());
+    }
+
+    @Test
+    void testCreateUsersRejectsValuesTooLongForTable() {
+        UserRequestDto longNameUserDto = new UserRequestDto();
+        longNameUserDto.setName("H" + "a".repeat(50));
+        longNameUserDto.setSurname("Montana");
+        longNameUserDto.setBirthDate(LocalDate.of(2000, 3, 20));
+        longNameUserDto.setEmail("hanna00@gmail.com");
+
+        List<UserBatchResultDto> results = service.createUsers(List.of(longNameUserDto));
+
+        assertEquals(400, results.get(0).getStatus());
+        assertEquals("name size must be between 0 and 50", results.get(0).getMessage());
+        verify(repository, never()).insertAllIfEmailsFree(any(), any(), any(), any());
+    }
+
+    @Test
+    void testCreateUsersAllInvalid() {
+        UserRequestDto invalidUserDto = new UserRequestDto();
+
+        List<UserBatchResultDto> results = service.createUsers(List.of(invalidUserDto));
+
+        assertEquals(400, results.get(0).getStatus());
+        verify(repository, never()).insertAllIfEmailsFree(any(), any(), any(), any());
+        verify(repository, never()).saveAll(any());
+    }
+
+    @Test
+    void testGetUserByIdExists() {
+        when(repository.findDtoById(1L)).thenReturn(Optional.of(responseUserDto));
+
         UserResponseDto resultUserResponseDto = service.getUserById(1L);
 
         assertNotNull(resultUserResponseDto);
@@ -115,18 +208,34 @@ public class UserServiceTest {
         assertEquals("Hanna", resultUserResponseDto.getName());
         assertEquals("Montana", resultUserResponseDto.getSurname());
         assertEquals("hanna00@gmail.com", resultUserResponseDto.getEmail());
-        verify(repository).findById(1L);
-        verify(mapper).toUserResponseDto(user);
+        verify(repository).findDtoById(1L);
+        verify(repository, never()).findById(any());
+        verify(mapper, never()).toUserResponseDto(any());
     }
 
     @Test
     void testGetUserByIdNotFound() {
-        when(repository.findById(100L)).thenReturn(Optional.empty());
+        when(repository.findDtoById(100L)).thenReturn(Optional.empty());
 
         UserNotFoundException ex = assertThrows(UserNotFoundException.class, () -> service.getUserById(100L));
         assertEquals("User with id 100 not found", ex.getMessage());
-        verify(repository).findById(100L);
-        verify(mapper, never()).toUserResponseDto(any());
+        verify(repository).findDtoById(100L);
+    }
+
+    @Test
+    void testGetUserByIdKnownMissing() {
+        when(knownIds.isKnownMissing("USER_CACHE", 100L)).thenReturn(true);
+
+        assertThrows(UserNotFoundException.class, () -> service.getUserById(100L));
+        verify(repository, never()).findDtoById(any());
+    }
+
+    @Test
+    void testGetUserByIdNotFoundIsRemembered() {
+        when(repository.findDtoById(100L)).thenReturn(Optional.empty());
+
+        assertThrows(UserNotFoundException.class, () -> service.getUserById(100L));
+        verify(knownIds).markMissing("USER_CACHE", 100L);
     }
 
     @Test
@@ -141,11 +250,8 @@ public class UserServiceTest {
         userResponseDto2.setEmail(user2.getEmail());
 
         List<Long> ids = List.of(1L, 2L);
-        List<User> users = List.of(user, user2);
 
-        when(repository.findAllById(ids)).thenReturn(users);
-        when(mapper.toUserResponseDto(user)).thenReturn(responseUserDto);
-        when(mapper.toUserResponseDto(user2)).thenReturn(userResponseDto2);
+        when(repository.findDtosByIds(ids)).thenReturn(List.of(userResponseDto2, responseUserDto));
 
         List<UserResponseDto> resultUsers = service.getUsersByIds(ids);
 
@@ -160,27 +266,58 @@ public class UserServiceTest {
         assertEquals("hanna00@gmail.com", resultUsers.get(0).getEmail());
         assertEquals("pat@gmail.com", resultUsers.get(1).getEmail());
 
-        verify(repository).findAllById(ids);
-        verify(mapper).toUserResponseDto(user);
-        verify(mapper).toUserResponseDto(user2);
+        verify(repository).findDtosByIds(ids);
+        verify(repository, never()).findAllById(any());
+        verify(mapper, never()).toUserResponseDto(any());
+    }
+
+    @Test
+    void testGetUsersByIdsAllCached() {
+        cacheManager.getCache("USER_CACHE").put(1L, responseUserDto);
+
+        List<UserResponseDto> resultUsers = service.getUsersByIds(List.of(1L));
+
+        assertEquals(List.of(responseUserDto), resultUsers);
+        verify(repository, never()).findDtosByIds(any());
     }
 
     @Test
     void testGetUsersByIdsEmpty() {
         List<Long> ids = List.of(100L, 101L);
 
-        when(repository.findAllById(ids)).thenReturn(new ArrayList<>());
+        when(repository.findDtosByIds(ids)).thenReturn(new ArrayList<>());
 
         EmptyUserListException ex = assertThrows(EmptyUserListException.class, () -> service.getUsersByIds(ids));
         assertEquals("No users found with ids: [100, 101]", ex.getMessage());
-        verify(repository).findAllById(ids);
+        verify(repository).findDtosByIds(ids);
+    }
+
+    @Test
+    void testListUsers() {
+        when(repository.findPageAfter(0L, Limit.of(2))).thenReturn(List.of(responseUserDto, updatedResponseUserDto));
+        when(repository.findPageAfter(1L, Limit.of(2))).thenReturn(List.of(updatedResponseUserDto));
+
+        UserPageDto firstPage = service.listUsers(null, 1);
+        UserPageDto secondPage = service.listUsers(firstPage.getNextCursor(), 1);
+
+        assertEquals(List.of(responseUserDto), firstPage.getUsers());
+        assertNotNull(firstPage.getNextCursor());
+        assertEquals(List.of(updatedResponseUserDto), secondPage.getUsers());
+        assertNull(secondPage.getNextCursor());
+        verify(repository, never()).findAll();
         verify(mapper, never()).toUserResponseDto(any());
     }
 
+    @Test
+    void testListUsersInvalidCursor() {
+        assertThrows(InvalidCursorException.class, () -> service.listUsers("not-a-cursor", 10));
+        assertThrows(InvalidCursorException.class, () -> service.listUsers(PageCursor.encode(1L) + "AA", 10));
+        verify(repository, never()).findPageAfter(any(), any());
+    }
+
     @Test
     void testGetUserByEmail() {
-        when(repository.findByEmail(EXISTING_EMAIL)).thenReturn(Optional.of(user));
-        when(mapper.toUserResponseDto(user)).thenReturn(responseUserDto);
+        when(repository.findDtoByEmail(EXISTING_EMAIL)).thenReturn(Optional.of(responseUserDto));
 
         UserResponseDto resultUserResponseDto = service.getUserByEmail(EXISTING_EMAIL);
 
@@ -189,19 +326,48 @@ public class UserServiceTest {
         assertEquals("Hanna", resultUserResponseDto.getName());
         assertEquals("Montana", resultUserResponseDto.getSurname());
         assertEquals(LocalDate.of(2000, 3, 20), resultUserResponseDto.getBirthDate());
-        verify(repository).findByEmail(EXISTING_EMAIL);
-        verify(mapper).toUserResponseDto(user);
+        verify(repository).findDtoByEmail(EXISTING_EMAIL);
+    }
+
+    @Test
+    void testGetUserByEmailResolvesThroughUserCache() {
+        cacheManager.getCache("USER_CACHE").put(1L, responseUserDto);
+        cacheManager.getCache("USER_EMAIL_CACHE").put(EXISTING_EMAIL, 1L);
+
+        UserResponseDto resultUserResponseDto = service.getUserByEmail(EXISTING_EMAIL);
+
+        assertEquals(responseUserDto, resultUserResponseDto);
+        verify(repository, never()).findDtoByEmail(any());
+    }
+
+    @Test
+    void testGetUserByEmailStoresPointerOnly() {
+        when(repository.findDtoByEmail(EXISTING_EMAIL)).thenReturn(Optional.of(responseUserDto));
+
+        service.getUserByEmail(EXISTING_EMAIL);
+
+        assertEquals(1L, cacheManager.getCache("USER_EMAIL_CACHE").get(EXISTING_EMAIL).get());
+        assertEquals(responseUserDto, cacheManager.getCache("USER_CACHE").get(1L).get());
+    }
+
+    @Test
+    void testGetUserByEmailIgnoresStalePointer() {
+        cacheManager.getCache("USER_CACHE").put(1L, updatedResponseUserDto);
+        cacheManager.getCache("USER_EMAIL_CACHE").put(EXISTING_EMAIL, 1L);
+        when(repository.findDtoByEmail(EXISTING_EMAIL)).thenReturn(Optional.empty());
+
+        assertThrows(UserWithEmailNotFoundException.class, () -> service.getUserByEmail(EXISTING_EMAIL));
+        verify(repository).findDtoByEmail(EXISTING_EMAIL);
     }
 
     @Test
     void testGetUserByEmailNotFound() {
-        when(repository.findByEmail(NOT_EXISTING_EMAIL)).thenReturn(Optional.empty());
+        when(repository.findDtoByEmail(NOT_EXISTING_EMAIL)).thenReturn(Optional.empty());
 
         UserWithEmailNotFoundException ex = assertThrows(UserWithEmailNotFoundException.class,
                 () -> service.getUserByEmail(NOT_EXISTING_EMAIL));
         assertEquals("User with email abc@gmail.com not found", ex.getMessage());
-        verify(repository).findByEmail(NOT_EXISTING_EMAIL);
-        verify(mapper, never()).toUserResponseDto(any());
+        verify(repository).findDtoByEmail(NOT_EXISTING_EMAIL);
     }
 
     @Test
@@ -210,9 +376,8 @@ public class UserServiceTest {
         requestUserDto.setBirthDate(LocalDate.of(2001, 9, 29));
         requestUserDto.setEmail("hanna11@gmail.com");
 
-        when(repository.findByEmail(requestUserDto.getEmail())).thenReturn(Optional.empty());
-        when(repository.updateUser(eq(1L), anyString(), anyString(), any(), anyString())).thenReturn(1);
-        when(repository.findById(1L)).thenReturn(Optional.of(updatedUser));
+        when(repository.updateUser(eq(1L), anyString(), anyString(), any(), anyString()))
+                .thenReturn(Optional.of(updatedUser));
         when(mapper.toUserResponseDto(updatedUser)).thenReturn(updatedResponseUserDto);
 
         UserResponseDto resultUserResponseDto = service.updateUserById(1L, requestUserDto);
@@ -223,13 +388,32 @@ public class UserServiceTest {
         assertEquals(LocalDate.of(2001, 9, 29), resultUserResponseDto.getBirthDate());
         assertEquals("hanna11@gmail.com", resultUserResponseDto.getEmail());
 
-        verify(repository).findByEmail("hanna11@gmail.com");
         verify(repository).updateUser(1L, "Hanna", "Low"
                 , LocalDate.of(2001, 9, 29), "hanna11@gmail.com");
-        verify(repository).findById(1L);
+        verify(repository, never()).findDtoByEmail(any());
+        verify(repository, never()).findById(any());
         verify(mapper).toUserResponseDto(updatedUser);
     }
 
+    @Test
+    void testUpdateUserEvictsOnlyOwnEmails() {
+        cacheManager.getCache("USER_CACHE").put(1L, responseUserDto);
+        cacheManager.getCache("USER_EMAIL_CACHE").put(EXISTING_EMAIL, 1L);
+        cacheManager.getCache("USER_EMAIL_CACHE").put("pat@gmail.com", 2L);
+        requestUserDto.setSurname("Low");
+        requestUserDto.setBirthDate(LocalDate.of(2001, 9, 29));
+        requestUserDto.setEmail("hanna11@gmail.com");
+
+        when(repository.updateUser(eq(1L), anyString(), anyString(), any(), anyString()))
+                .thenReturn(Optional.of(updatedUser));
+        when(mapper.toUserResponseDto(updatedUser)).thenReturn(updatedResponseUserDto);
+
+        service.updateUserById(1L, requestUserDto);
+
+        assertNull(cacheManager.getCache("USER_EMAIL_CACHE").get(EXISTING_EMAIL));
+        assertEquals(2L, cacheManager.getCache("USER_EMAIL_CACHE").get("pat@gmail.com").get());
+    }
+
     @Test
     void testUpdateUserEmailExists() {
         requestUserDto.setEmail("hanna_new_email@gmail.com");
@@ -237,16 +421,22 @@ public class UserServiceTest {
         requestUserDto.setSurname("Lays");
         requestUserDto.setBirthDate(LocalDate.of(2000, 3, 20));
 
-        User sameEmailUser = new User(2L, "Patrick", "Wong"
-                , LocalDate.of(1995, 5, 15), "hanna_new_email@gmail.com");
-
-        when(repository.findByEmail(requestUserDto.getEmail())).thenReturn(Optional.of(sameEmailUser));
+        when(repository.updateUser(anyLong(), anyString(), anyString(), any(), anyString()))
+                .thenThrow(uniqueViolation("uc_users_email"));
 
         UserEmailExistsException ex = assertThrows(UserEmailExistsException.class,
                 () -> service.updateUserById(1L, requestUserDto));
         assertEquals("User with email hanna_new_email@gmail.com already exists", ex.getMessage());
-        verify(repository).findByEmail("hanna_new_email@gmail.com");
-        verify(repository, never()).updateUser(anyLong(), anyString(), anyString(), any(), anyString());
+        verify(repository, never()).findDtoByEmail(any());
+    }
+
+    @Test
+    void testUpdateUserOtherViolation() {
+        DataIntegrityViolationException violation = uniqueViolation("users_pkey");
+        when(repository.updateUser(anyLong(), anyString(), anyString(), any(), anyString())).thenThrow(violation);
+
+        assertSame(violation, assertThrows(DataIntegrityViolationException.class,
+                () -> service.updateUserById(1L, requestUserDto)));
     }
 
     @Test
@@ -256,18 +446,14 @@ public class UserServiceTest {
         requestUserDto.setSurname("Lays");
         requestUserDto.setBirthDate(LocalDate.of(2000, 3, 20));
 
-        when(repository.findByEmail(requestUserDto.getEmail())).thenReturn(Optional.empty());
         when(repository.updateUser(eq(1L), eq(requestUserDto.getName()), eq(requestUserDto.getSurname()),
-                eq(requestUserDto.getBirthDate()), eq(requestUserDto.getEmail()))).thenReturn(1);
-        when(repository.findById(1L)).thenReturn(Optional.empty());
+                eq(requestUserDto.getBirthDate()), eq(requestUserDto.getEmail()))).thenReturn(Optional.empty());
 
         UserNotFoundException ex = assertThrows(UserNotFoundException.class,
                 () -> service.updateUserById(1L, requestUserDto));
         assertEquals("User with id 1 not found", ex.getMessage());
-        verify(repository).findByEmail("hanna_new_email@gmail.com");
         verify(repository).updateUser(1L, "Hanna", "Lays",
                 LocalDate.of(2000, 3, 20), "hanna_new_email@gmail.com");
-        verify(repository).findById(1L);
         verify(mapper, never()).toUserResponseDto(any());
     }
 
@@ -284,4 +470,9 @@ public class UserServiceTest {
         assertEquals("User with id 100 not found", ex.getMessage());
         verify(repository).deleteById(100L);
     }
+
+    private static DataIntegrityViolationException uniqueViolation(String constraint) {
+        return new DataIntegrityViolationException("duplicate key",
+                new ConstraintViolationException("duplicate key", null, constraint));
+    }
 }